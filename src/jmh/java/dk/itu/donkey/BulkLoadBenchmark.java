@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+// IO utilities
+import java.io.File;
+
+// SQL utilities
+import java.sql.SQLException;
+
+// JMH annotations
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bulk load benchmarks.
+ *
+ * <p>
+ * The benchmarks load a batch of ticket-sized rows, either in bulk or one
+ * insert at a time. To benchmark COPY against a local PostgreSQL database
+ * named "test", run with <code>-p driver=POSTGRESQL</code>:
+ *
+ * <pre>
+ * gradle jmhJar
+ * java -jar build/libs/bookie-jmh.jar BulkLoadBenchmark -p driver=POSTGRESQL
+ * </pre>
+ *
+ * @version 1.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkLoadBenchmark {
+  /**
+   * The number of rows to load per operation.
+   */
+  private static final int ROWS = 1000;
+
+  /**
+   * The driver to benchmark.
+   */
+  @Param({"SQLITE"})
+  public String driver;
+
+  /**
+   * The database to benchmark against.
+   */
+  private Database db;
+
+  /**
+   * The rows to load.
+   */
+  private List<Row> rows = new ArrayList<>();
+
+  /**
+   * The columns to load.
+   */
+  private List<String> columns = new ArrayList<>();
+
+  /**
+   * Create the benchmark database and rows.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Setup
+  public void setup() throws SQLException {
+    Properties config = new Properties();
+
+    if (Driver.valueOf(this.driver) == Driver.POSTGRESQL) {
+      config.put("database", "test");
+      config.put("user", "postgres");
+    }
+    else {
+      File file = new File(System.getProperty("java.io.tmpdir"), "donkey-bulk");
+      new File(file.getPath() + ".db").delete();
+
+      config.put("database", file.getPath());
+    }
+
+    this.db = new Database(Driver.valueOf(this.driver), config);
+    this.db.execute("drop table if exists bench_tickets");
+    this.db.execute(
+      "create table bench_tickets (reservation integer, row integer, "
+      + "seat integer)"
+    );
+
+    this.columns.add("reservation");
+    this.columns.add("row");
+    this.columns.add("seat");
+
+    for (int i = 0; i < ROWS; i++) {
+      Row row = new Row();
+      row.put("reservation", i / 10);
+      row.put("row", i % 15);
+      row.put("seat", i % 25);
+      this.rows.add(row);
+    }
+  }
+
+  /**
+   * Benchmark loading the rows in bulk.
+   *
+   * @return The number of rows loaded.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Benchmark
+  public long bulkLoad() throws SQLException {
+    return this.db.bulkLoad(
+      "bench_tickets", this.columns, this.rows.iterator()
+    );
+  }
+
+  /**
+   * Benchmark loading the rows one insert at a time.
+   *
+   * @return The number of rows loaded.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Benchmark
+  public long insert() throws SQLException {
+    for (Row row: this.rows) {
+      this.db.table("bench_tickets").insert(row);
+    }
+
+    return this.rows.size();
+  }
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// JMH annotations
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// SQL grammars
+import dk.itu.donkey.grammar.SqliteGrammar;
+
+/**
+ * Grammar compilation benchmarks.
+ *
+ * <p>
+ * Each benchmark builds a grammar the way a {@link Query} would and compiles
+ * a single statement from it. The "legacy" benchmarks compile the very same
+ * statements using the previous approach of formatting every clause with
+ * <code>String.format()</code> and post-processing the result with regular
+ * expressions, and act as the baseline.
+ *
+ * <p>
+ * Run with the GC profiler to also measure per-query allocation:
+ *
+ * <pre>
+ * gradle jmhJar
+ * java -jar build/libs/bookie-jmh.jar GrammarBenchmark -prof gc
+ * </pre>
+ *
+ * @version 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GrammarBenchmark {
+  /**
+   * Columns to select, insert, or update.
+   */
+  private String[] columns = new String[] {
+    "showtimes.id as showtimes_id",
+    "showtimes.playingat as showtimes_playingat",
+    "movies.id as movies_id",
+    "movies.name as movies_name"
+  };
+
+  /**
+   * Build a grammar for a select statement.
+   *
+   * @return The grammar.
+   */
+  private Grammar selectGrammar() {
+    Grammar grammar = new SqliteGrammar();
+    grammar.addTable("showtimes");
+
+    for (String column: this.columns) {
+      grammar.addColumn(column);
+    }
+
+    grammar.addJoin(
+      "left outer", "movies", "showtimes.movie", "=", "movies.id"
+    );
+    grammar.addWhere("showtimes.playingat", ">", 1420070400000L, "and");
+    grammar.addWhere("movies.name", "=", "Interstellar", "and");
+    grammar.addOrder("movies.name", "asc");
+    grammar.addLimit(100);
+
+    return grammar;
+  }
+
+  /**
+   * Build a grammar for an insert or update statement.
+   *
+   * @return The grammar.
+   */
+  private Grammar writeGrammar() {
+    Grammar grammar = new SqliteGrammar();
+    grammar.addTable("showtimes");
+
+    for (String column: this.columns) {
+      grammar.addColumn(column);
+      grammar.addValue(column);
+    }
+
+    grammar.addWhere("id", "=", 1, "and");
+
+    return grammar;
+  }
+
+  /**
+   * Benchmark select statement compilation.
+   *
+   * @return The compiled statement.
+   */
+  @Benchmark
+  public String compileSelect() {
+    return this.selectGrammar().compileSelect();
+  }
+
+  /**
+   * Benchmark insert statement compilation.
+   *
+   * @return The compiled statement.
+   */
+  @Benchmark
+  public String compileInsert() {
+    return this.writeGrammar().compileInsert();
+  }
+
+  /**
+   * Benchmark update statement compilation.
+   *
+   * @return The compiled statement.
+   */
+  @Benchmark
+  public String compileUpdate() {
+    return this.writeGrammar().compileUpdate();
+  }
+
+  /**
+   * Benchmark delete statement compilation.
+   *
+   * @return The compiled statement.
+   */
+  @Benchmark
+  public String compileDelete() {
+    Grammar grammar = new SqliteGrammar();
+    grammar.addTable("showtimes");
+    grammar.addWhere("id", "=", 1, "and");
+
+    return grammar.compileDelete();
+  }
+
+  /**
+   * Benchmark legacy select statement compilation.
+   *
+   * @return The compiled statement.
+   */
+  @Benchmark
+  public String legacyCompileSelect() {
+    List<String> columns = new ArrayList<>();
+
+    for (String column: this.columns) {
+      columns.add(column.trim());
+    }
+
+    List<String> joins = new ArrayList<>();
+    joins.add(String.format("%s join %s on %s %s %s",
+      "left outer", "movies", "showtimes.movie", "=", "movies.id"
+    ));
+
+    List<String> wheres = new ArrayList<>();
+    wheres.add(String.format(
+      "%s %s %s %s", "and", "showtimes.playingat", ">", "?"
+    ));
+    wheres.add(String.format("%s %s %s %s", "and", "movies.name", "=", "?"));
+
+    List<String> orders = new ArrayList<>();
+    orders.add(String.format("%s %s", "movies.name", "asc"));
+
+    return String.format(
+      "select %s from %s %s %s %s %s %s",
+      String.join(", ", columns),
+      "showtimes",
+      String.join(" ", joins),
+      "where " + String.join(" ", wheres).replaceAll("^and |^or ", ""),
+      "order by " + String.join(", ", orders),
+      "limit " + 100,
+      ""
+    ).trim().replaceAll(" {2,}", " ");
+  }
+
+  /**
+   * Benchmark legacy insert statement compilation.
+   *
+   * @return The compiled statement.
+   */
+  @Benchmark
+  public String legacyCompileInsert() {
+    List<String> columns = new ArrayList<>();
+    List<String> values = new ArrayList<>();
+
+    for (String column: this.columns) {
+      columns.add(column.trim());
+      values.add("?");
+    }
+
+    return String.format(
+      "insert into %s (%s) values (%s)",
+      "showtimes",
+      String.join(", ", columns),
+      String.join(", ", values)
+    ).trim().replaceAll(" {2,}", " ");
+  }
+
+  /**
+   * Benchmark legacy update statement compilation.
+   *
+   * @return The compiled statement.
+   */
+  @Benchmark
+  public String legacyCompileUpdate() {
+    List<String> sets = new ArrayList<>();
+
+    for (String column: this.columns) {
+      sets.add(String.format("%s = %s", column.trim(), "?"));
+    }
+
+    List<String> wheres = new ArrayList<>();
+    wheres.add(String.format("%s %s %s %s", "and", "id", "=", "?"));
+
+    return String.format(
+      "update %s %s %s",
+      "showtimes",
+      "set " + String.join(", ", sets),
+      "where " + String.join(" ", wheres).replaceAll("^and |^or ", "")
+    ).trim().replaceAll(" {2,}", " ");
+  }
+
+  /**
+   * Benchmark legacy delete statement compilation.
+   *
+   * @return The compiled statement.
+   */
+  @Benchmark
+  public String legacyCompileDelete() {
+    List<String> wheres = new ArrayList<>();
+    wheres.add(String.format("%s %s %s %s", "and", "id", "=", "?"));
+
+    return String.format(
+      "delete from %s %s",
+      "showtimes",
+      "where " + String.join(" ", wheres).replaceAll("^and |^or ", "")
+    ).trim().replaceAll(" {2,}", " ");
+  }
+}
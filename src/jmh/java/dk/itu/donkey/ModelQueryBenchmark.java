@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+// SQL utilities
+import java.sql.SQLException;
+
+// JMH annotations
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Model query benchmarks.
+ *
+ * <p>
+ * The benchmarks load a set of shows, each with a hall, a list of bookings,
+ * and a list of tickets per booking, mirroring the showtimes, auditoriums,
+ * reservations, and tickets of Bookie.
+ *
+ * <p>
+ * Run with the GC profiler to also measure allocation:
+ *
+ * <pre>
+ * gradle jmhJar
+ * java -jar build/libs/bookie-jmh.jar ModelQueryBenchmark -prof gc
+ * </pre>
+ *
+ * @version 1.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelQueryBenchmark {
+  /**
+   * The number of shows to load.
+   */
+  private static final int SHOWS = 20;
+
+  /**
+   * The number of bookings per show.
+   */
+  private static final int BOOKINGS = 5;
+
+  /**
+   * The number of tickets per booking.
+   */
+  private static final int TICKETS = 10;
+
+  /**
+   * The database to benchmark against.
+   */
+  private static Database db;
+
+  /**
+   * Hall model.
+   */
+  public static final class Hall extends Model {
+    /**
+     * The name of the hall.
+     */
+    public String name;
+
+    /**
+     * The number of rows in the hall.
+     */
+    public int rows;
+
+    /**
+     * Initialize a hall.
+     */
+    public Hall() {
+      super("bench_halls", ModelQueryBenchmark.db);
+    }
+  }
+
+  /**
+   * Show model.
+   */
+  public static final class Show extends Model {
+    /**
+     * The name of the show.
+     */
+    public String name;
+
+    /**
+     * The time at which the show is playing.
+     */
+    public long playingAt;
+
+    /**
+     * The hall in which the show is playing.
+     */
+    public Hall hall;
+
+    /**
+     * The bookings of the show.
+     */
+    public List<Booking> bookings;
+
+    /**
+     * Initialize a show.
+     */
+    public Show() {
+      super("bench_shows", ModelQueryBenchmark.db);
+    }
+  }
+
+  /**
+   * Booking model.
+   */
+  public static final class Booking extends Model {
+    /**
+     * The phone number of the booking.
+     */
+    public int phoneNumber;
+
+    /**
+     * Whether or not the booking has been paid for.
+     */
+    public boolean bought;
+
+    /**
+     * The show that the booking is for.
+     */
+    public Show show;
+
+    /**
+     * The tickets of the booking.
+     */
+    public List<Seat> seats;
+
+    /**
+     * Initialize a booking.
+     */
+    public Booking() {
+      super("bench_bookings", ModelQueryBenchmark.db);
+    }
+  }
+
+  /**
+   * Seat model.
+   */
+  public static final class Seat extends Model {
+    /**
+     * The row of the seat.
+     */
+    public int row;
+
+    /**
+     * The seat number of the seat.
+     */
+    public int seat;
+
+    /**
+     * The booking that the seat is part of.
+     */
+    public Booking booking;
+
+    /**
+     * Initialize a seat.
+     */
+    public Seat() {
+      super("bench_seats", ModelQueryBenchmark.db);
+    }
+  }
+
+  /**
+   * Create and seed the in-memory benchmark database.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Setup
+  public void setup() throws SQLException {
+    Properties config = new Properties();
+    config.put("database", ":memory:");
+
+    ModelQueryBenchmark.db = new Database(Driver.SQLITE, config);
+
+    Hall hall = new Hall();
+    hall.name = "Hall";
+    hall.rows = 10;
+    hall.insert();
+
+    for (int i = 0; i < SHOWS; i++) {
+      Show show = new Show();
+      show.name = "Show " + i;
+      show.playingAt = i;
+      show.hall = hall;
+      show.insert();
+
+      for (int j = 0; j < BOOKINGS; j++) {
+        Booking booking = new Booking();
+        booking.phoneNumber = 10000000 + j;
+        booking.bought = j % 2 == 0;
+        booking.show = show;
+        booking.insert();
+
+        for (int k = 0; k < TICKETS; k++) {
+          Seat seat = new Seat();
+          seat.row = j;
+          seat.seat = k;
+          seat.booking = booking;
+          seat.insert();
+        }
+      }
+    }
+  }
+
+  /**
+   * Benchmark querying, hydrating, and wiring the full model graph.
+   *
+   * @return The loaded shows.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Benchmark
+  public List<Show> get() throws SQLException {
+    return Model.find(Show.class).orderBy("playingat").get();
+  }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+// SQL utilities
+import java.sql.SQLException;
+
+// JMH annotations
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SQL cache benchmarks.
+ *
+ * <p>
+ * Each benchmark builds a select query with columns, a join, two where
+ * clauses, an ordering, and a limit, with and without the {@link SqlCache}.
+ * A cache of size 0 compiles every query, which is the baseline.
+ *
+ * <pre>
+ * gradle jmhJar
+ * java -jar build/libs/bookie-jmh.jar SqlCacheBenchmark -prof gc
+ * </pre>
+ *
+ * @version 1.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlCacheBenchmark {
+  /**
+   * The maximum number of shapes to cache.
+   */
+  @Param({"0", "1024"})
+  public String sqlCache;
+
+  /**
+   * The database to benchmark against.
+   */
+  private Database db;
+
+  /**
+   * Create and seed the in-memory benchmark database.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Setup
+  public void setup() throws SQLException {
+    Properties config = new Properties();
+    config.put("database", ":memory:");
+    config.put("sql_cache", this.sqlCache);
+
+    this.db = new Database(Driver.SQLITE, config);
+
+    this.db.execute(
+      "create table bench_movies (id integer primary key, name text)"
+    );
+    this.db.execute(
+      "create table bench_showtimes ("
+    + " id integer primary key, playingat integer, movie integer"
+    + ")"
+    );
+
+    this.db.execute("insert into bench_movies values (1, 'Interstellar')");
+    this.db.execute("insert into bench_showtimes values (1, 1, 1)");
+  }
+
+  /**
+   * Close the benchmark database.
+   */
+  @TearDown
+  public void tearDown() {
+    this.db.close();
+  }
+
+  /**
+   * Build the benchmark query.
+   *
+   * @return The query.
+   */
+  private Query query() {
+    return this.db.table("bench_showtimes")
+      .select(
+        "bench_showtimes.id as showtimes_id",
+        "bench_showtimes.playingat as showtimes_playingat",
+        "bench_movies.id as movies_id",
+        "bench_movies.name as movies_name"
+      )
+      .join("bench_movies", "bench_showtimes.movie", "bench_movies.id")
+      .where("bench_showtimes.playingat", ">", 0)
+      .where("bench_movies.name", "Interstellar")
+      .orderBy("bench_movies.name")
+      .limit(100);
+  }
+
+  /**
+   * Benchmark building and compiling the query, which is what the cache
+   * saves.
+   *
+   * @return The prepared query.
+   */
+  @Benchmark
+  public PreparedQuery compile() {
+    return this.query().prepare();
+  }
+
+  /**
+   * Benchmark building the query and running it against the database.
+   *
+   * @return The resulting rows.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Benchmark
+  public List<Row> get() throws SQLException {
+    return this.query().get();
+  }
+}
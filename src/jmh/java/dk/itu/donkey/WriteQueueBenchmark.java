@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+// IO utilities
+import java.io.File;
+
+// SQL utilities
+import java.sql.SQLException;
+
+// JMH annotations
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Write queue benchmarks.
+ *
+ * <p>
+ * The benchmarks insert small rows into SQLite from several threads at once,
+ * with and without the write queue.
+ *
+ * <pre>
+ * gradle jmhJar
+ * java -jar build/libs/bookie-jmh.jar WriteQueueBenchmark
+ * </pre>
+ *
+ * @version 1.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class WriteQueueBenchmark {
+  /**
+   * Whether or not to use the write queue.
+   */
+  @Param({"false", "true"})
+  public String writeQueue;
+
+  /**
+   * The database to benchmark against.
+   */
+  private Database db;
+
+  /**
+   * Create the benchmark database.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Setup
+  public void setup() throws SQLException {
+    File file = new File(System.getProperty("java.io.tmpdir"), "donkey-write");
+    new File(file.getPath() + ".db").delete();
+
+    Properties config = new Properties();
+    config.put("database", file.getPath());
+    config.put("write_queue", this.writeQueue);
+    config.put("busy_timeout", "60000");
+
+    this.db = new Database(Driver.SQLITE, config);
+    this.db.execute("create table bench_writes (value integer)");
+  }
+
+  /**
+   * Stop the write queue, if any.
+   */
+  @TearDown
+  public void tearDown() {
+    this.db.close();
+  }
+
+  /**
+   * Benchmark inserting a single row.
+   *
+   * @return The generated keys.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Benchmark
+  public List<Row> insert() throws SQLException {
+    Row row = new Row();
+    row.put("value", 1);
+
+    return this.db.table("bench_writes").insert(row);
+  }
+}
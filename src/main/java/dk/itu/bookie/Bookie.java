@@ -7,11 +7,15 @@ package dk.itu.bookie;
 import java.sql.SQLException;
 import java.util.Properties;
 
+// Concurrency utilities
+import java.util.concurrent.Executor;
+
 // IO utilties
 import java.io.File;
 
 // JavaFX utilities
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.stage.Stage;
 import javafx.scene.Scene;
 import javafx.scene.Parent;
@@ -26,26 +30,57 @@ import dk.itu.donkey.Driver;
 // Controllers
 import dk.itu.bookie.controller.ErrorController;
 
+// Models
+import dk.itu.bookie.model.SeatAllocator;
+
 /**
  * Bookie class.
  *
  * @version 1.0.0
  */
 public final class Bookie extends Application {
+  /**
+   * Executor that runs tasks on the JavaFX application thread.
+   */
+  private static final Executor FX = (task) -> {
+    // Before the application has started, e.g. while seeding, nothing is
+    // bound to the UI yet and there is no JavaFX thread to hop to.
+    if (!Bookie.started || Platform.isFxApplicationThread()) {
+      task.run();
+    }
+    else {
+      Platform.runLater(task);
+    }
+  };
+
+  /**
+   * Whether or not the JavaFX application has started.
+   */
+  private static volatile boolean started;
+
   /**
    * Database instance for the application.
    */
   private static Database db;
 
+  /**
+   * Seat allocator for the application.
+   */
+  private static final SeatAllocator SEATS = new SeatAllocator();
+
   /**
    * Initialize database instance or get it if it's already set.
    *
+   * <p>
+   * The name of the database can be changed using the "bookie.database"
+   * system property, e.g. to ":memory:" for testing.
+   *
    * @return The database instance for the application.
    */
   public static Database db() {
     if (Bookie.db == null) {
       Properties config = new Properties();
-      config.put("database", "bookie");
+      config.put("database", System.getProperty("bookie.database", "bookie"));
 
       Bookie.db = new Database(Driver.SQLITE, config);
     }
@@ -53,6 +88,31 @@ public final class Bookie extends Application {
     return Bookie.db;
   }
 
+  /**
+   * Get the seat allocator through which seats are reserved.
+   *
+   * @return The seat allocator for the application.
+   */
+  public static SeatAllocator seats() {
+    return Bookie.SEATS;
+  }
+
+  /**
+   * Get an executor that runs tasks on the JavaFX application thread.
+   *
+   * <p>
+   * Tasks are run right away when already on the JavaFX application thread,
+   * or if the application hasn't started yet, and are otherwise queued using
+   * {@link Platform#runLater(Runnable)}. Use it for hopping back to the JavaFX
+   * thread from asynchronous database work, e.g.
+   * <code>future.thenAcceptAsync(..., Bookie.fx())</code>.
+   *
+   * @return The JavaFX application thread executor.
+   */
+  public static Executor fx() {
+    return Bookie.FX;
+  }
+
   /**
    * Launch the application.
    *
@@ -81,6 +141,8 @@ public final class Bookie extends Application {
    */
   @Override
   public void start(final Stage primaryStage) {
+    Bookie.started = true;
+
     Thread.currentThread().setUncaughtExceptionHandler(
       ErrorController::crash
     );
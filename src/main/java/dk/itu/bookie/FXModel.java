@@ -143,6 +143,37 @@ public class FXModel extends Model {
     }
   }
 
+  /**
+   * Increment an integer field of the model in memory.
+   *
+   * <p>
+   * Integer properties are incremented in place on the JavaFX thread so that
+   * anything bound to them is updated.
+   *
+   * @param field   The field to increment.
+   * @param amount  The amount to increment the field by.
+   */
+  @Override
+  protected void incrementField(final Field field, final int amount) {
+    if (!IntegerProperty.class.isAssignableFrom(field.getType())) {
+      super.incrementField(field, amount);
+      return;
+    }
+
+    IntegerProperty property;
+
+    try {
+      property = (IntegerProperty) field.get(this);
+    }
+    catch (IllegalAccessException ex) {
+      return;
+    }
+
+    Bookie.fx().execute(() -> {
+      property.set(property.get() + amount);
+    });
+  }
+
   /**
    * Parse an outgoing field value.
    *
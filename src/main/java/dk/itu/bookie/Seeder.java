@@ -4,15 +4,22 @@
 package dk.itu.bookie;
 
 // General utilities
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
 
 // SQL utilities
 import java.sql.SQLException;
 
+// Donkey utilities
+import dk.itu.donkey.Model;
+
 // Models
 import dk.itu.bookie.model.Auditorium;
+import dk.itu.bookie.model.Hold;
 import dk.itu.bookie.model.Movie;
 import dk.itu.bookie.model.Reservation;
+import dk.itu.bookie.model.SeatMap;
 import dk.itu.bookie.model.Ticket;
 import dk.itu.bookie.model.Showtime;
 
@@ -35,6 +42,7 @@ public final class Seeder {
    * @throws SQLException In case of a SQL error.
    */
   public static void reset() throws SQLException {
+    Bookie.db().schema().drop("holds");
     Bookie.db().schema().drop("tickets");
     Bookie.db().schema().drop("reservations");
     Bookie.db().schema().drop("showtimes");
@@ -88,6 +96,9 @@ public final class Seeder {
 
     Calendar cal = Calendar.getInstance();
 
+    // Tickets don't need their IDs during seeding so load them in bulk.
+    List<Ticket> tickets = new ArrayList<>();
+
     for (int i = 0; i < 100; i++) {
       Showtime showtime = new Showtime();
 
@@ -108,8 +119,17 @@ public final class Seeder {
 
       showtime.insert();
 
+      Auditorium auditorium = showtime.auditorium.get();
+
+      // The tickets are loaded in bulk, so mark their seats up front.
+      SeatMap reserved = new SeatMap(
+        auditorium.rows.get(), auditorium.seats.get()
+      );
+      SeatMap bought = new SeatMap(
+        auditorium.rows.get(), auditorium.seats.get()
+      );
+
       for (int j = 0; j <= (int) (Math.random() * 5); j++) {
-        Auditorium auditorium = showtime.auditorium.get();
 
         Reservation reservation = new Reservation();
         reservation.phoneNumber.set(
@@ -120,13 +140,34 @@ public final class Seeder {
         reservation.insert();
 
         for (int k = 0; k <= (int) (Math.random() * 10); k++) {
+          int row = (int) (Math.random() * auditorium.rows.get());
+          int seat = (int) (Math.random() * auditorium.seats.get());
+
+          // A seat can only have a single ticket.
+          if (reserved.get(row, seat) || bought.get(row, seat)) {
+            continue;
+          }
+
           Ticket ticket = new Ticket();
           ticket.reservation.set(reservation);
-          ticket.row.set((int) (Math.random() * auditorium.rows.get()));
-          ticket.seat.set((int) (Math.random() * auditorium.seats.get()));
-          ticket.insert();
+          ticket.showtime.set(showtime);
+          ticket.row.set(row);
+          ticket.seat.set(seat);
+          tickets.add(ticket);
+
+          SeatMap seats = (reservation.bought.get()) ? bought : reserved;
+          seats.set(row, seat);
         }
       }
+
+      showtime.reservedSeats.set(reserved.toBytes());
+      showtime.boughtSeats.set(bought.toBytes());
+      showtime.update();
     }
+
+    Model.insertAll(tickets);
+
+    // Holds are looked up by the seat maps of showtimes before any are made.
+    new Hold().createTable();
   }
 }
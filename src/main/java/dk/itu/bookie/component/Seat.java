@@ -41,6 +41,11 @@ public final class Seat extends Rectangle {
    */
   private BooleanProperty selected = new SimpleBooleanProperty(false);
 
+  /**
+   * Whether or not the seat is held by another cashier.
+   */
+  private BooleanProperty held = new SimpleBooleanProperty(false);
+
   /**
    * Initialize a seat.
    *
@@ -80,10 +85,19 @@ public final class Seat extends Rectangle {
       }
     });
 
+    this.held.addListener((ob, ov, nv) -> {
+      if (nv) {
+        this.getStyleClass().add("seat-held");
+      }
+      else {
+        this.getStyleClass().remove("seat-held");
+      }
+    });
+
     this.setOnMouseClicked(e -> {
-      // If this ticket has been either reserved or bought, don't allow that it
-      // be selected.
-      if (this.reserved.get() || this.bought.get()) {
+      // If this ticket has been either reserved, bought, or held, don't allow
+      // that it be selected.
+      if (this.reserved.get() || this.bought.get() || this.held.get()) {
         return;
       }
 
@@ -141,6 +155,40 @@ public final class Seat extends Rectangle {
     }
   }
 
+  /**
+   * Show whether a seat is held, reserved, or bought, leaving it selected
+   * only if it is free.
+   *
+   * <p>
+   * Only the states that change are updated, so updating a seat to the state
+   * it is already in does nothing.
+   *
+   * @param held      Whether or not the seat is held by another cashier.
+   * @param reserved  Whether or not the seat is reserved.
+   * @param bought    Whether or not the seat is bought.
+   */
+  public void update(
+    final boolean held,
+    final boolean reserved,
+    final boolean bought
+  ) {
+    if (held || reserved || bought) {
+      this.selected.set(false);
+    }
+
+    this.held.set(held);
+    this.reserved.set(reserved || bought);
+    this.bought.set(bought);
+  }
+
+  /**
+   * Hold a seat for another cashier.
+   */
+  public void hold() {
+    this.selected.set(false);
+    this.held.set(true);
+  }
+
   /**
    * Reserve a seat.
    */
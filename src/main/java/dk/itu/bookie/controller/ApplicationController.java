@@ -3,9 +3,6 @@
  */
 package dk.itu.bookie.controller;
 
-// SQL utilities
-import java.sql.SQLException;
-
 // JavaFX controls
 import javafx.scene.control.TabPane;
 
@@ -19,6 +16,10 @@ import javafx.fxml.FXML;
 
 // Donkey utilities
 import dk.itu.donkey.Model;
+import dk.itu.donkey.ModelQuery;
+
+// Main application
+import dk.itu.bookie.Bookie;
 
 // Models
 import dk.itu.bookie.model.Showtime;
@@ -93,51 +94,61 @@ public final class ApplicationController {
   /**
    * Fetch initial data from the database.
    *
-   * @throws SQLException In case of a SQL error.
+   * <p>
+   * The data is fetched in the background and added to the lists of showtimes
+   * and reservations on the JavaFX thread once ready.
    */
-  public static void fetchData() throws SQLException {
+  public static void fetchData() {
     if (ApplicationController.fetchedData) {
       return;
     }
 
-    ApplicationController.showtimes.addAll(
-      Model
-        .find(Showtime.class)
-        .where("playingat", ">", System.currentTimeMillis())
-        .orderBy("movies.name")
-        .orderBy("playingat")
-        .get()
-    );
-
-    for (Showtime showtime: ApplicationController.showtimes) {
-      ApplicationController.reservations.addAll(showtime.reservations);
-
-      showtime.reservations.addListener(
-        (ListChangeListener.Change<? extends Reservation> c)-> {
-          while (c.next()) {
-            if (c.wasAdded()) {
-              ApplicationController.reservations.addAll(c.getAddedSubList());
-            }
+    ApplicationController.fetchedData = true;
 
-            if (c.wasRemoved()) {
-              ApplicationController.reservations.removeAll(c.getRemoved());
+    ModelQuery<Showtime> query = Model.find(Showtime.class);
+
+    query
+      .where("playingat", ">", System.currentTimeMillis())
+      .orderBy("movies.name")
+      .orderBy("playingat");
+
+    query.getAsync().whenCompleteAsync((showtimes, ex) -> {
+      if (ex != null) {
+        ApplicationController.fetchedData = false;
+        ErrorController.tryAgain();
+        return;
+      }
+
+      ApplicationController.showtimes.addAll(showtimes);
+
+      for (Showtime showtime: showtimes) {
+        ApplicationController.reservations.addAll(showtime.reservations);
+
+        showtime.reservations.addListener(
+          (ListChangeListener.Change<? extends Reservation> c)-> {
+            while (c.next()) {
+              if (c.wasAdded()) {
+                ApplicationController.reservations.addAll(
+                  c.getAddedSubList()
+                );
+              }
+
+              if (c.wasRemoved()) {
+                ApplicationController.reservations.removeAll(c.getRemoved());
+              }
             }
           }
-        }
-      );
-    }
-
-    ApplicationController.fetchedData = true;
+        );
+      }
+    }, Bookie.fx());
   }
 
   /**
    * Grab all showtimes from the database.
    *
    * @return Observable list of showtimes.
-   *
-   * @throws SQLException In case of a SQL error.
    */
-  public static ObservableList<Showtime> showtimes() throws SQLException {
+  public static ObservableList<Showtime> showtimes() {
     ApplicationController.fetchData();
 
     return ApplicationController.showtimes;
@@ -147,10 +158,8 @@ public final class ApplicationController {
    * Grab all reservations from the database.
    *
    * @return Observable list of reservations.
-   *
-   * @throws SQLException In case of a SQL error.
    */
-  public static ObservableList<Reservation> reservations() throws SQLException {
+  public static ObservableList<Reservation> reservations() {
     ApplicationController.fetchData();
 
     return ApplicationController.reservations;
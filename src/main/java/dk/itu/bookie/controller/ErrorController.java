@@ -46,6 +46,28 @@ public final class ErrorController {
       .showError();
   }
 
+  /**
+   * Display a "Seats taken" error message.
+   */
+  public static void seatsTaken() {
+    Dialogs
+      .create()
+      .title("Hovsa!")
+      .masthead("Et eller flere af sæderne er allerede optaget.")
+      .showError();
+  }
+
+  /**
+   * Display a "Not enough seats" error message.
+   */
+  public static void noSeats() {
+    Dialogs
+      .create()
+      .title("Hovsa!")
+      .masthead("Der er ikke nok ledige sæder.")
+      .showError();
+  }
+
   /**
    * "Graceful" crash handling.
    *
@@ -27,7 +27,6 @@ import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
 
 // JavaFX properties
-import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 
 // JavaFX bindings
@@ -165,10 +164,10 @@ public final class ReservationController {
 
     this.reservations.setItems(sortedReservations);
 
+    // The ticket count is cached on the reservation so the tickets needn't be
+    // counted for every row.
     this.ticketColumn.setCellValueFactory((data) -> {
-      return new SimpleIntegerProperty(
-        data.getValue().tickets.size()
-      );
+      return data.getValue().ticketCount;
     });
 
     this.movieColumn.setCellValueFactory((data) -> {
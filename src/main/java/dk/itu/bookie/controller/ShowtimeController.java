@@ -4,11 +4,15 @@
 package dk.itu.bookie.controller;
 
 // General utilities
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
-// SQL utilities
-import java.sql.SQLException;
+// Concurrency utilities
+import java.util.concurrent.CompletableFuture;
 
 // JavaFX utilities
 import javafx.scene.Node;
@@ -49,13 +53,20 @@ import org.controlsfx.validation.ValidationSupport;
 import org.controlsfx.validation.Validator;
 import org.controlsfx.validation.Severity;
 
+// Main application
+import dk.itu.bookie.Bookie;
+
 // Components
 import dk.itu.bookie.component.Seat;
 
 // Models
 import dk.itu.bookie.model.Auditorium;
+import dk.itu.bookie.model.Hold;
 import dk.itu.bookie.model.Showtime;
 import dk.itu.bookie.model.Reservation;
+import dk.itu.bookie.model.SeatFinder;
+import dk.itu.bookie.model.SeatMap;
+import dk.itu.bookie.model.SeatsTakenException;
 import dk.itu.bookie.model.Ticket;
 
 /**
@@ -132,6 +143,18 @@ public final class ShowtimeController {
   @FXML
   private TextField phone;
 
+  /**
+   * The text field for inputting the size of a party to find seats for.
+   */
+  @FXML
+  private TextField party;
+
+  /**
+   * The button for finding the best available seats for a party.
+   */
+  @FXML
+  private Button suggest;
+
   /**
    * The currently active showtime.
    */
@@ -144,12 +167,33 @@ public final class ShowtimeController {
   private ReadOnlyObjectWrapper<Reservation> activeReservation =
     new ReadOnlyObjectWrapper();
 
+  /**
+   * The seats of the current auditorium, indexed by row and seat number.
+   */
+  private Seat[][] grid = new Seat[0][0];
+
+  /**
+   * The labels and seats that have been rendered, per auditorium layout.
+   */
+  private Map<String, Layout> layouts = new HashMap<>();
+
   /**
    * The list of selected seats.
    */
   private ObservableList<Seat> selectedSeats =
     FXCollections.observableArrayList();
 
+  /**
+   * The hold of the selected seats of the active showtime, if any.
+   */
+  private Hold hold;
+
+  /**
+   * The latest change to the hold of the selected seats.
+   */
+  private CompletableFuture<Void> holding =
+    CompletableFuture.completedFuture(null);
+
   /**
    * Get the singleton instance of the controller.
    *
@@ -222,7 +266,7 @@ public final class ShowtimeController {
 
     this.reserve.setOnAction((e) -> {
       if (this.activeReservation.isNull().get()) {
-        this.makeReservation(false);
+        this.makeReservation(false, null);
       }
       else {
         this.editReservation(false);
@@ -231,13 +275,17 @@ public final class ShowtimeController {
 
     this.buy.setOnAction((e) -> {
       if (this.activeReservation.isNull().get()) {
-        this.makeReservation(true);
+        this.makeReservation(true, null);
       }
       else {
         this.editReservation(true);
       }
     });
 
+    this.suggest.setOnAction((e) -> {
+      this.suggestSeats();
+    });
+
     ValidationSupport validationSupport = new ValidationSupport();
 
     validationSupport.registerValidator(
@@ -348,9 +396,12 @@ public final class ShowtimeController {
         height.subtract(60).divide(rows).subtract(4)
       );
 
+    this.grid = new Seat[rows][seats];
+
     for (int row = 2; row <= (rows + 1); row++) {
       for (int seat = 2; seat <= (seats + 1); seat++) {
         Seat auditoriumSeat = new Seat(row - 2, seat - 2);
+        this.grid[row - 2][seat - 2] = auditoriumSeat;
 
         auditoriumSeat.widthProperty().bind(size);
         auditoriumSeat.heightProperty().bind(size);
@@ -362,6 +413,8 @@ public final class ShowtimeController {
           else {
             this.selectedSeats.removeAll(auditoriumSeat);
           }
+
+          this.holdSeat(auditoriumSeat, nv);
         });
 
         this.auditorium.add(auditoriumSeat, seat, row);
@@ -370,24 +423,98 @@ public final class ShowtimeController {
   }
 
   /**
-   * Get the reserved seats of a showtime.
+   * Hold or stop holding a seat as it is selected or deselected.
    *
-   * @param showtime  The showtime whose reserved seats to get.
-   * @return          A double boolean array indicating reserved seats.
+   * <p>
+   * Seats are only held when making a new reservation. If the seat has been
+   * taken or held by another cashier in the meantime, it is shown as such.
+   *
+   * @param seat    The seat.
+   * @param selected Whether the seat was selected rather than deselected.
    */
-  private boolean[][] getSeats(final Showtime showtime) {
-    int rows = showtime.auditorium.get().rows.get();
-    int seats = showtime.auditorium.get().seats.get();
+  private void holdSeat(final Seat seat, final boolean selected) {
+    Hold hold = this.hold;
 
-    boolean[][] reservedSeats = new boolean[rows][seats];
+    if (hold == null || this.activeReservation.get() != null) {
+      return;
+    }
+
+    // Changes are made one after the other so that a seat that is quickly
+    // selected and deselected, e.g. when replacing a suggestion, ends up in
+    // the right state.
+    this.holding = this.holding
+      .handle((result, ex) -> (Void) null)
+      .thenCompose((result) -> Bookie.db().async(() -> {
+        if (selected) {
+          Bookie.seats().hold(hold, seat.getRow(), seat.getSeat());
+        }
+        else {
+          Bookie.seats().unhold(hold, seat.getRow(), seat.getSeat());
+        }
+
+        return null;
+      }));
+
+    this.holding.whenCompleteAsync((result, ex) -> {
+      // The seat may show another showtime by now.
+      if (ex == null || !selected || this.hold != hold) {
+        return;
+      }
 
-    for (Reservation reservation: showtime.reservations) {
-      for (Ticket ticket: reservation.tickets) {
-        reservedSeats[ticket.row.get()][ticket.seat.get()] = true;
+      if (ex.getCause() instanceof SeatsTakenException) {
+        seat.hold();
+      }
+      else {
+        seat.deselect();
+        ErrorController.tryAgain();
       }
+    }, Bookie.fx());
+  }
+
+  /**
+   * Start a new hold for the selected seats of a showtime, clearing the
+   * selection and releasing the current hold.
+   *
+   * @param showtime The showtime whose seats to hold.
+   */
+  private void resetHold(final Showtime showtime) {
+    Hold previous = this.hold;
+
+    // The current hold is released as a whole, so deselect its seats while
+    // there is no hold rather than unholding them one at a time.
+    this.hold = null;
+    this.clearSelectedSeats();
+
+    this.hold = this.newHold(showtime);
+
+    if (previous != null) {
+      this.releaseHold(previous);
     }
+  }
 
-    return reservedSeats;
+  /**
+   * Create an empty hold for the selected seats of a showtime.
+   *
+   * @param showtime  The showtime whose seats to hold.
+   * @return          The hold.
+   */
+  private Hold newHold(final Showtime showtime) {
+    // Once expired, the held seats have been released, so they can't stay
+    // selected.
+    return Bookie.seats().hold(showtime, () -> this.clearSelectedSeats());
+  }
+
+  /**
+   * Release a hold in the background.
+   *
+   * @param hold The hold to release.
+   */
+  private void releaseHold(final Hold hold) {
+    Bookie.db().async(() -> {
+      Bookie.seats().release(hold);
+
+      return null;
+    });
   }
 
   /**
@@ -442,67 +569,53 @@ public final class ShowtimeController {
   }
 
   /**
-   * Given a list of reserved seats, render them in the current auditorium.
+   * Get a seat from the current auditorium.
    *
-   * @param seats The list of reserved seats to render.
+   * @param row   The row of the seat.
+   * @param index The seat number of the seat.
+   * @return      The seat if found, otherwise null.
    */
-  private void renderReservedSeats(final boolean[][] seats) {
-    for (int i = 0; i < seats.length; i++) {
-      for (int j = 0; j < seats[i].length; j++) {
-        if (seats[i][j]) {
-          Seat seat = this.getSeat(i, j);
-
-          if (seat != null) {
-            seat.reserve();
-          }
-        }
-      }
+  private Seat getSeat(final int row, final int index) {
+    if (row < 0 || row >= this.grid.length) {
+      return null;
     }
-  }
 
-  /**
-   * Given a list of bought seats, render them in the current auditorium.
-   *
-   * @param seats The list of bought seats to render.
-   */
-  private void renderBoughtSeats(final boolean[][] seats) {
-    for (int i = 0; i < seats.length; i++) {
-      for (int j = 0; j < seats[i].length; j++) {
-        if (seats[i][j]) {
-          Seat seat = this.getSeat(i, j);
-
-          if (seat != null) {
-            seat.buy();
-          }
-        }
-      }
+    if (index < 0 || index >= this.grid[row].length) {
+      return null;
     }
+
+    return this.grid[row][index];
   }
 
   /**
-   * Get a seat from the current auditorium.
+   * Render the labels and seats of an auditorium.
    *
-   * @param row   The row of the seat.
-   * @param index The seat number of the seat.
-   * @return      The seat if found, otherwise null.
+   * <p>
+   * The nodes are kept per layout of auditorium, i.e. its number of rows and
+   * seats, and reused whenever an auditorium of the same layout is rendered.
+   * The states of the seats are left as they were.
+   *
+   * @param auditorium The auditorium to render.
    */
-  private Seat getSeat(final int row, final int index) {
-    Seat seat = null;
+  private void renderLayout(final Auditorium auditorium) {
+    String key = auditorium.rows.get() + "x" + auditorium.seats.get();
 
-    for (Node node: this.auditorium.getChildren()) {
-      if (!Seat.class.isAssignableFrom(node.getClass())) {
-        continue;
-      }
+    Layout layout = this.layouts.get(key);
 
-      if ((GridPane.getRowIndex(node) - 2) == row
-          && (GridPane.getColumnIndex(node) - 2) == index) {
-        seat = (Seat) node;
+    if (layout == null) {
+      this.auditorium.getChildren().clear();
 
-        break;
-      }
-    }
+      this.renderAuditoriumLabels(auditorium);
+      this.renderAuditoriumSeats(auditorium);
 
-    return seat;
+      this.layouts.put(key, new Layout(
+        new ArrayList<>(this.auditorium.getChildren()), this.grid
+      ));
+    }
+    else if (layout.seats != this.grid) {
+      this.auditorium.getChildren().setAll(layout.nodes);
+      this.grid = layout.seats;
+    }
   }
 
   /**
@@ -511,22 +624,49 @@ public final class ShowtimeController {
    * @param showtime The showtime whose auditorium to render.
    */
   private void renderShowtime(final Showtime showtime) {
-    this.auditorium.getChildren().clear();
+    // The seats are reused across showtimes, so the selection of the previous
+    // showtime is cleared along with its hold.
+    this.resetHold(showtime);
 
     this.clearPhone();
     this.enablePhone();
 
-    this.renderAuditoriumLabels(showtime.auditorium.get());
-    this.renderAuditoriumSeats(showtime.auditorium.get());
+    this.renderLayout(showtime.auditorium.get());
+
+    this.renderTakenSeats(showtime);
 
-    for (Reservation reservation: showtime.reservations) {
-      boolean[][] seats = this.getSeats(reservation);
+    // Catch up on seats taken from other terminals since the showtime was
+    // loaded, which only takes fetching its seat maps.
+    Bookie.db().async(() -> {
+      showtime.fetchSeats();
 
-      if (!reservation.bought.get()) {
-        this.renderReservedSeats(seats);
+      return null;
+    }).whenCompleteAsync((result, ex) -> {
+      if (ex == null && this.activeShowtime.get() == showtime) {
+        this.renderTakenSeats(showtime);
       }
-      else {
-        this.renderBoughtSeats(seats);
+    }, Bookie.fx());
+  }
+
+  /**
+   * Render the held, reserved and bought seats of a showtime from its seat
+   * maps.
+   *
+   * @param showtime The showtime whose taken seats to render.
+   */
+  private void renderTakenSeats(final Showtime showtime) {
+    // Seats held by this cashier are shown as selected instead.
+    SeatMap held = showtime.held().andNot(this.hold.held());
+    SeatMap reserved = showtime.reserved();
+    SeatMap bought = showtime.bought();
+
+    for (int row = 0; row < this.grid.length; row++) {
+      for (int seat = 0; seat < this.grid[row].length; seat++) {
+        this.grid[row][seat].update(
+          held.get(row, seat),
+          reserved.get(row, seat),
+          bought.get(row, seat)
+        );
       }
     }
   }
@@ -594,6 +734,48 @@ public final class ShowtimeController {
     this.setActiveReservation(this.activeReservation.get());
   }
 
+  /**
+   * Select the best available seats of the active showtime for the party
+   * size in the party input field, replacing the current selection.
+   */
+  private void suggestSeats() {
+    Showtime showtime = this.activeShowtime.get();
+
+    if (showtime == null || this.activeReservation.get() != null) {
+      return;
+    }
+
+    int party;
+
+    try {
+      party = Integer.parseInt(this.party.getText().trim());
+    }
+    catch (NumberFormatException ex) {
+      return;
+    }
+
+    if (party <= 0) {
+      return;
+    }
+
+    this.clearSelectedSeats();
+
+    // Seats held by this cashier were just released, so only count those held
+    // by others as taken.
+    SeatMap taken = showtime.reserved()
+      .or(showtime.bought())
+      .or(showtime.held().andNot(this.hold.held()));
+
+    SeatMap seats = SeatFinder.find(taken, party);
+
+    if (seats.isEmpty()) {
+      ErrorController.noSeats();
+      return;
+    }
+
+    this.renderSelectedSeats(seats.toArray());
+  }
+
   /**
    * Get the value of the phone input field as an integer.
    *
@@ -657,9 +839,15 @@ public final class ShowtimeController {
   /**
    * Reserve the currently selected seats.
    *
-   * @param buy Whether or not to mark the reservation as bought.
+   * <p>
+   * The reservation is written to the database in the background; the seats
+   * are marked as taken once it has been written. If any of the seats have
+   * been taken in the meantime, no seats are reserved.
+   *
+   * @param buy       Whether or not to mark the reservation as bought.
+   * @param replaced  The reservation to replace, if any.
    */
-  private void makeReservation(final boolean buy) {
+  private void makeReservation(final boolean buy, final Reservation replaced) {
     if (this.selectedSeats.isEmpty()) {
       return;
     }
@@ -676,29 +864,52 @@ public final class ShowtimeController {
       return;
     }
 
-    try {
-      Reservation reservation = new Reservation();
-      reservation.showtime.set(showtime);
-      reservation.phoneNumber.set(phoneNumber);
-      reservation.bought.set(buy);
-      reservation.insert();
+    // Take over the selected seats so that they can be selected anew while the
+    // reservation is being written.
+    List<Seat> seats = new ArrayList<>(this.selectedSeats);
+    this.selectedSeats.clear();
 
-      Iterator<Seat> seats = this.selectedSeats.iterator();
+    Auditorium auditorium = showtime.auditorium.get();
 
-      while (seats.hasNext()) {
-        // Grab the next seat.
-        Seat seat = seats.next();
+    SeatMap request = new SeatMap(
+      auditorium.rows.get(), auditorium.seats.get()
+    );
+
+    for (Seat seat: seats) {
+      request.set(seat.getRow(), seat.getSeat());
+    }
+
+    // The held seats are turned into tickets, so hold any further selection
+    // anew. Seats aren't held while editing a reservation.
+    Hold hold = this.hold;
+    this.hold = this.newHold(showtime);
+
+    // The replaced reservation is deleted along with writing the new one, so
+    // it's kept if the seats can't be reserved.
+    Bookie.db().async(() -> {
+      return Bookie.seats().allocate(
+        showtime, phoneNumber, buy, request, hold, replaced
+      );
+    }).whenCompleteAsync((reservation, ex) -> {
+      if (ex != null) {
+        this.releaseHold(hold);
 
-        // Remove the seat from the list of selected seats.
-        seats.remove();
+        if (ex.getCause() instanceof SeatsTakenException) {
+          ErrorController.seatsTaken();
 
-        Ticket ticket = new Ticket();
-        ticket.row.set(seat.getRow());
-        ticket.seat.set(seat.getSeat());
-        ticket.reservation.set(reservation);
-        ticket.insert();
-        reservation.tickets.add(ticket);
+          // Show the seats that were taken in the meantime.
+          if (this.activeShowtime.get() == showtime) {
+            this.renderShowtime(showtime);
+          }
+        }
+        else {
+          ErrorController.tryAgain();
+        }
 
+        return;
+      }
+
+      for (Seat seat: seats) {
         if (buy) {
           seat.buy();
         }
@@ -706,10 +917,7 @@ public final class ShowtimeController {
           seat.reserve();
         }
       }
-    }
-    catch (SQLException ex) {
-      ErrorController.tryAgain();
-    }
+    }, Bookie.fx());
 
     this.clearPhone();
     this.enablePhone();
@@ -722,15 +930,32 @@ public final class ShowtimeController {
    * @param buy Whether or not to mark the reservation as bought.
    */
   private void editReservation(final boolean buy) {
-    Reservation reservation = this.activeReservation.get();
+    this.makeReservation(buy, this.activeReservation.get());
+  }
 
-    try {
-      reservation.delete();
-    }
-    catch (SQLException ex) {
-      ErrorController.tryAgain();
+  /**
+   * The nodes of a rendered auditorium layout.
+   */
+  private static final class Layout {
+    /**
+     * The labels and seats of the layout, in the order they were added.
+     */
+    private final List<Node> nodes;
+
+    /**
+     * The seats of the layout, indexed by row and seat number.
+     */
+    private final Seat[][] seats;
+
+    /**
+     * Initialize a layout.
+     *
+     * @param nodes The labels and seats of the layout.
+     * @param seats The seats of the layout, indexed by row and seat number.
+     */
+    private Layout(final List<Node> nodes, final Seat[][] seats) {
+      this.nodes = nodes;
+      this.seats = seats;
     }
-
-    this.makeReservation(buy);
   }
 }
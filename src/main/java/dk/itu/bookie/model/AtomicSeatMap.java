@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager and Sigrið Gyldenkærne Dalsgarð.
+ */
+package dk.itu.bookie.model;
+
+// Concurrency utilities
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Atomic seat map class.
+ *
+ * <p>
+ * An atomic seat map has the same layout as a {@link SeatMap}, but its words
+ * can be changed by several threads at once without locking. Seats are claimed
+ * a word at a time using compare-and-set, so claiming a party of seats takes
+ * one atomic operation per row in the common case.
+ *
+ * @since 1.1.0 Atomic seat allocation.
+ */
+final class AtomicSeatMap {
+  /**
+   * The number of rows of the seat map.
+   */
+  private final int rows;
+
+  /**
+   * The number of seats per row of the seat map.
+   */
+  private final int seats;
+
+  /**
+   * The words of the seat map, row by row.
+   */
+  private final AtomicLongArray words;
+
+  /**
+   * Initialize an empty atomic seat map.
+   *
+   * @param rows  The number of rows.
+   * @param seats The number of seats per row.
+   */
+  AtomicSeatMap(final int rows, final int seats) {
+    this.rows = rows;
+    this.seats = seats;
+    this.words = new AtomicLongArray(new SeatMap(rows, seats).words().length);
+  }
+
+  /**
+   * Claim a set of seats, either all of them or none at all.
+   *
+   * <p>
+   * Words are claimed in order until one of them holds a seat that is
+   * already claimed, after which the words claimed so far are released
+   * again. As a failed claim briefly holds some of its seats, two claims
+   * racing for the same seats may in rare cases both fail.
+   *
+   * @param request The seats to claim.
+   * @return        The seats that were already claimed, which is empty if the
+   *                seats were claimed.
+   */
+  SeatMap claim(final SeatMap request) {
+    this.checkSize(request);
+
+    long[] claims = request.words();
+
+    SeatMap conflicts = new SeatMap(this.rows, this.seats);
+    long[] taken = conflicts.words();
+
+    // The index of the first word that couldn't be claimed, if any.
+    int failed = -1;
+
+    for (int i = 0; i < claims.length; i++) {
+      long claim = claims[i];
+
+      if (claim == 0) {
+        continue;
+      }
+
+      // Keep collecting conflicts past a failure so that all of them are
+      // reported at once.
+      if (failed != -1) {
+        taken[i] = this.words.get(i) & claim;
+        continue;
+      }
+
+      while (true) {
+        long word = this.words.get(i);
+
+        if ((word & claim) != 0) {
+          taken[i] = word & claim;
+          failed = i;
+          break;
+        }
+
+        if (this.words.compareAndSet(i, word, word | claim)) {
+          break;
+        }
+      }
+    }
+
+    if (failed != -1) {
+      this.release(claims, failed);
+    }
+
+    return conflicts;
+  }
+
+  /**
+   * Release a set of claimed seats.
+   *
+   * @param request The seats to release.
+   */
+  void release(final SeatMap request) {
+    this.checkSize(request);
+
+    long[] claims = request.words();
+
+    this.release(claims, claims.length);
+  }
+
+  /**
+   * Release the claimed seats of the first words of a request.
+   *
+   * @param claims  The words of the request.
+   * @param end     The index of the word at which to stop.
+   */
+  private void release(final long[] claims, final int end) {
+    for (int i = 0; i < end; i++) {
+      long claim = claims[i];
+
+      if (claim != 0) {
+        this.words.getAndUpdate(i, (word) -> word & ~claim);
+      }
+    }
+  }
+
+  /**
+   * Check that a seat map is of the same size as this one.
+   *
+   * @param other The seat map.
+   */
+  private void checkSize(final SeatMap other) {
+    if (other.rows() != this.rows || other.seats() != this.seats) {
+      throw new IllegalArgumentException("Seat maps differ in size");
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager and Sigrið Gyldenkærne Dalsgarð.
+ */
+package dk.itu.bookie.model;
+
+// JavaFX properties
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleLongProperty;
+import javafx.beans.property.SimpleObjectProperty;
+
+// Base model
+import dk.itu.bookie.FXModel;
+
+// Main application
+import dk.itu.bookie.Bookie;
+
+/**
+ * Hold class.
+ *
+ * <p>
+ * A hold keeps seats of a showtime from being taken by others for a short
+ * while, e.g. while a cashier is taking a phone number. Holds are managed
+ * through the {@link SeatAllocator}, which expires them unless renewed and
+ * turns them into tickets once reserved. They are stored so that other
+ * terminals can show the held seats until the hold expires.
+ *
+ * @since 1.1.0 Seat holds.
+ */
+public final class Hold extends FXModel {
+  /**
+   * The showtime whose seats are held.
+   */
+  public ObjectProperty<Showtime> showtime =
+    new SimpleObjectProperty<>();
+
+  /**
+   * The bytes of the {@link SeatMap} of held seats.
+   */
+  public ObjectProperty<byte[]> seats =
+    new SimpleObjectProperty<>(new byte[0]);
+
+  /**
+   * The time at which the hold expires, in milliseconds since the epoch.
+   */
+  public LongProperty expiresAt =
+    new SimpleLongProperty();
+
+  /**
+   * The seats held in memory, which the stored seats are kept in line with.
+   */
+  private SeatMap held;
+
+  /**
+   * The task to run on the JavaFX thread once the hold expires.
+   */
+  private Runnable expired;
+
+  /**
+   * The timeout after which the hold expires, if any seats are held.
+   */
+  private TimingWheel.Timeout timeout;
+
+  /**
+   * Whether or not the hold has been released or turned into tickets.
+   */
+  private boolean released;
+
+  /**
+   * Initialize a hold.
+   */
+  public Hold() {
+    super("holds", Bookie.db());
+  }
+
+  /**
+   * Initialize an empty hold of a showtime.
+   *
+   * @param showtime  The showtime whose seats to hold.
+   * @param expired   The task to run on the JavaFX thread once the hold
+   *                  expires.
+   */
+  Hold(final Showtime showtime, final Runnable expired) {
+    this();
+
+    Auditorium auditorium = showtime.auditorium.get();
+
+    this.showtime.set(showtime);
+    this.held = new SeatMap(auditorium.rows.get(), auditorium.seats.get());
+    this.expired = expired;
+  }
+
+  /**
+   * Get the seats that are held.
+   *
+   * @return A copy of the seat map of held seats.
+   */
+  public synchronized SeatMap held() {
+    return this.held.copy();
+  }
+
+  /**
+   * Get the seats that are held, for changing them.
+   *
+   * @return The seat map of held seats.
+   */
+  SeatMap map() {
+    return this.held;
+  }
+
+  /**
+   * Get the task to run on the JavaFX thread once the hold expires.
+   *
+   * @return The task to run.
+   */
+  Runnable expired() {
+    return this.expired;
+  }
+
+  /**
+   * Get the timeout after which the hold expires.
+   *
+   * @return The timeout, or null if no seats are held.
+   */
+  TimingWheel.Timeout timeout() {
+    return this.timeout;
+  }
+
+  /**
+   * Set the timeout after which the hold expires, cancelling the previous one.
+   *
+   * @param timeout The timeout, or null if no seats are held.
+   */
+  void timeout(final TimingWheel.Timeout timeout) {
+    if (this.timeout != null) {
+      this.timeout.cancel();
+    }
+
+    this.timeout = timeout;
+  }
+
+  /**
+   * Check if the hold has been released or turned into tickets.
+   *
+   * @return Whether or not the hold has been released.
+   */
+  boolean isReleased() {
+    return this.released;
+  }
+
+  /**
+   * Mark the hold as released, after which it can't hold seats anymore.
+   */
+  void release() {
+    this.released = true;
+    this.timeout(null);
+    this.held = new SeatMap(this.held.rows(), this.held.seats());
+  }
+}
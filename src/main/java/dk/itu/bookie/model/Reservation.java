@@ -59,6 +59,12 @@ public final class Reservation extends FXModel {
   public ObservableList<Ticket> tickets =
     FXCollections.observableArrayList();
 
+  /**
+   * The number of reserved tickets, kept up to date by the tickets.
+   */
+  public IntegerProperty ticketCount =
+    new SimpleIntegerProperty();
+
   /**
    * Initialize a reservation.
    */
@@ -81,7 +87,11 @@ public final class Reservation extends FXModel {
 
     boolean inserted = super.insert();
 
-    this.showtime.get().reservations.addAll(this);
+    // The reservations of a showtime are bound to the UI, which mustn't show
+    // reservations that are rolled back.
+    Bookie.db().afterCommit(() -> Bookie.fx().execute(() -> {
+      this.showtime.get().reservations.addAll(this);
+    }));
 
     return inserted;
   }
@@ -95,9 +105,22 @@ public final class Reservation extends FXModel {
    */
   @Override
   public boolean delete() throws SQLException {
-    boolean deleted = super.delete();
-
-    this.showtime.get().reservations.removeAll(this);
+    // Delete the tickets one by one rather than leaving it to the database so
+    // that their seats are freed.
+    boolean deleted = Bookie.db().transaction(() -> {
+      for (Ticket ticket: this.tickets) {
+        ticket.delete();
+      }
+
+      boolean result = super.delete();
+
+      // The reservations of a showtime are bound to the UI.
+      Bookie.db().afterCommit(() -> Bookie.fx().execute(() -> {
+        this.showtime.get().reservations.removeAll(this);
+      }));
+
+      return result;
+    });
 
     return deleted;
   }
@@ -0,0 +1,480 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager and Sigrið Gyldenkærne Dalsgarð.
+ */
+package dk.itu.bookie.model;
+
+// General utilities
+import java.util.ArrayList;
+import java.util.List;
+
+// SQL utilities
+import java.sql.SQLException;
+
+// Concurrency utilities
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+// Main application
+import dk.itu.bookie.Bookie;
+
+/**
+ * Seat allocator class.
+ *
+ * <p>
+ * The seat allocator turns a set of seats into a reservation with a ticket
+ * for each seat, such that no seat ever gets two tickets. The database has the
+ * final say through the unique key of tickets, which also covers the other
+ * terminals. Before going to the database, the seats are claimed in an
+ * {@link AtomicSeatMap} of the allocations in progress, so that allocations
+ * racing for the same seats on this terminal fail right away without ever
+ * blocking each other.
+ *
+ * <p>
+ * Seats can also be held for a while before being reserved, see
+ * {@link Hold}. Held seats stay claimed until the hold is released, turned
+ * into tickets, or expires after {@link #HOLD_TIME} without being renewed.
+ *
+ * @since 1.1.0 Atomic seat allocation.
+ */
+public final class SeatAllocator {
+  /**
+   * The number of milliseconds for which seats are held.
+   */
+  public static final long HOLD_TIME = TimeUnit.MINUTES.toMillis(2);
+
+  /**
+   * The number of seconds per tick of the wheel that expires holds.
+   */
+  private static final int HOLD_TICK = 1;
+
+  /**
+   * The number of ticks per turn of the wheel that expires holds.
+   */
+  private static final int HOLD_TICKS = 512;
+
+  /**
+   * The seats claimed by allocations in progress and holds, per showtime ID.
+   */
+  private final ConcurrentMap<Integer, AtomicSeatMap> claims =
+    new ConcurrentHashMap<>();
+
+  /**
+   * The timing wheel that expires holds.
+   */
+  private final TimingWheel holds;
+
+  /**
+   * The number of milliseconds for which seats are held.
+   */
+  private final long holdTime;
+
+  /**
+   * Initialize a seat allocator.
+   */
+  public SeatAllocator() {
+    this(new TimingWheel(
+      SeatAllocator.HOLD_TICK,
+      TimeUnit.SECONDS,
+      SeatAllocator.HOLD_TICKS,
+      (task) -> Bookie.db().executor().execute(task)
+    ), SeatAllocator.HOLD_TIME);
+  }
+
+  /**
+   * Initialize a seat allocator that expires holds using a given wheel.
+   *
+   * @param holds     The timing wheel that expires holds.
+   * @param holdTime  The number of milliseconds for which seats are held.
+   */
+  SeatAllocator(final TimingWheel holds, final long holdTime) {
+    this.holds = holds;
+    this.holdTime = holdTime;
+  }
+
+  /**
+   * Get the seats claimed for a showtime.
+   *
+   * @param showtime  The showtime.
+   * @param seats     Any seat map of the showtime, for its size.
+   * @return          The seats claimed for the showtime.
+   */
+  private AtomicSeatMap claims(final Showtime showtime, final SeatMap seats) {
+    return this.claims.computeIfAbsent(showtime.id(), (id) -> {
+      return new AtomicSeatMap(seats.rows(), seats.seats());
+    });
+  }
+
+  /**
+   * Reserve a set of seats of a showtime.
+   *
+   * <p>
+   * Either all of the seats are reserved or none of them are. The tickets of
+   * the reservation are added to it on the JavaFX thread.
+   *
+   * @param showtime    The showtime to reserve seats for.
+   * @param phoneNumber The phone number of the reservation.
+   * @param bought      Whether or not the reservation is bought.
+   * @param seats       The seats to reserve.
+   * @return            The reservation.
+   *
+   * @throws SQLException In case of a SQL error, or a
+   *                      {@link SeatsTakenException} holding exactly the
+   *                      seats that are taken if any of them are.
+   */
+  public Reservation allocate(
+    final Showtime showtime,
+    final int phoneNumber,
+    final boolean bought,
+    final SeatMap seats
+  ) throws SQLException {
+    return this.allocate(showtime, phoneNumber, bought, seats, null);
+  }
+
+  /**
+   * Reserve a set of seats of a showtime, some or all of which are held.
+   *
+   * <p>
+   * Either all of the seats are reserved or none of them are. Once reserved,
+   * the hold is turned into tickets: it is deleted and any of its seats that
+   * weren't reserved are released. If the seats can't be reserved, the hold
+   * is left as is.
+   *
+   * @param showtime    The showtime to reserve seats for.
+   * @param phoneNumber The phone number of the reservation.
+   * @param bought      Whether or not the reservation is bought.
+   * @param seats       The seats to reserve.
+   * @param hold        The hold of the seats, or null.
+   * @return            The reservation.
+   *
+   * @throws SQLException In case of a SQL error, or a
+   *                      {@link SeatsTakenException} holding exactly the
+   *                      seats that are taken if any of them are.
+   */
+  public Reservation allocate(
+    final Showtime showtime,
+    final int phoneNumber,
+    final boolean bought,
+    final SeatMap seats,
+    final Hold hold
+  ) throws SQLException {
+    return this.allocate(showtime, phoneNumber, bought, seats, hold, null);
+  }
+
+  /**
+   * Reserve a set of seats of a showtime in place of an existing
+   * reservation.
+   *
+   * <p>
+   * The existing reservation is deleted along with writing the tickets of
+   * the new one, so if the seats can't be reserved, the existing reservation
+   * is left as is. Its seats count as free to the new reservation.
+   *
+   * @param showtime    The showtime to reserve seats for.
+   * @param phoneNumber The phone number of the reservation.
+   * @param bought      Whether or not the reservation is bought.
+   * @param seats       The seats to reserve.
+   * @param hold        The hold of the seats, or null.
+   * @param replaced    The reservation to replace, or null.
+   * @return            The reservation.
+   *
+   * @throws SQLException In case of a SQL error, or a
+   *                      {@link SeatsTakenException} holding exactly the
+   *                      seats that are taken if any of them are.
+   */
+  public Reservation allocate(
+    final Showtime showtime,
+    final int phoneNumber,
+    final boolean bought,
+    final SeatMap seats,
+    final Hold hold,
+    final Reservation replaced
+  ) throws SQLException {
+    if (hold == null) {
+      return this.allocate(
+        showtime, phoneNumber, bought, seats, seats, null, replaced
+      );
+    }
+
+    synchronized (hold) {
+      // Only claim the seats that aren't already held.
+      SeatMap unheld = (hold.isReleased())
+        ? seats
+        : seats.copy().andNot(hold.map());
+
+      return this.allocate(
+        showtime, phoneNumber, bought, seats, unheld, hold, replaced
+      );
+    }
+  }
+
+  /**
+   * Reserve a set of seats of a showtime, claiming those that aren't held.
+   *
+   * @param showtime    The showtime to reserve seats for.
+   * @param phoneNumber The phone number of the reservation.
+   * @param bought      Whether or not the reservation is bought.
+   * @param seats       The seats to reserve.
+   * @param unheld      The seats to claim.
+   * @param hold        The hold of the seats, or null.
+   * @param replaced    The reservation to replace, or null.
+   * @return            The reservation.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  private Reservation allocate(
+    final Showtime showtime,
+    final int phoneNumber,
+    final boolean bought,
+    final SeatMap seats,
+    final SeatMap unheld,
+    final Hold hold,
+    final Reservation replaced
+  ) throws SQLException {
+    AtomicSeatMap claims = this.claims(showtime, seats);
+
+    SeatMap conflicts = claims.claim(unheld);
+
+    if (!conflicts.isEmpty()) {
+      throw new SeatsTakenException(conflicts);
+    }
+
+    Reservation reservation = new Reservation();
+    reservation.showtime.set(showtime);
+    reservation.phoneNumber.set(phoneNumber);
+    reservation.bought.set(bought);
+
+    List<Ticket> tickets = new ArrayList<>(seats.count());
+
+    try {
+      Bookie.db().transaction(() -> {
+        // Free the seats of the replaced reservation first, as the new
+        // reservation may keep some of them.
+        if (replaced != null) {
+          replaced.delete();
+        }
+
+        reservation.insert();
+
+        for (int row = 0; row < seats.rows(); row++) {
+          for (int seat = 0; seat < seats.seats(); seat++) {
+            if (!seats.get(row, seat)) {
+              continue;
+            }
+
+            Ticket ticket = new Ticket();
+            ticket.row.set(row);
+            ticket.seat.set(seat);
+            ticket.reservation.set(reservation);
+            ticket.showtime.set(showtime);
+            ticket.insert();
+            tickets.add(ticket);
+          }
+        }
+
+        // Delete the stored hold along with writing the tickets, but leave
+        // the hold itself be in case the tickets are rolled back.
+        if (hold != null && hold.id() != null) {
+          hold.query().where("id", hold.id()).delete();
+        }
+
+        return null;
+      });
+    }
+    catch (SQLException ex) {
+      // Tell seats taken by other terminals apart from other errors. The
+      // seats of the replaced reservation are taken again after the rollback,
+      // but by the reservation itself.
+      SeatMap taken = showtime.fetchTakenSeats().and(seats);
+
+      if (replaced != null) {
+        for (Ticket ticket: replaced.tickets) {
+          taken.clear(ticket.row.get(), ticket.seat.get());
+        }
+      }
+
+      if (!taken.isEmpty()) {
+        throw new SeatsTakenException(taken);
+      }
+
+      throw ex;
+    }
+    finally {
+      claims.release(unheld);
+    }
+
+    if (hold != null && !hold.isReleased()) {
+      claims.release(hold.map());
+      hold.release();
+    }
+
+    Bookie.fx().execute(() -> {
+      reservation.tickets.addAll(tickets);
+    });
+
+    return reservation;
+  }
+
+  /**
+   * Create an empty hold of seats of a showtime.
+   *
+   * @param showtime  The showtime whose seats to hold.
+   * @param expired   The task to run on the JavaFX thread if the hold
+   *                  expires.
+   * @return          The hold.
+   */
+  public Hold hold(final Showtime showtime, final Runnable expired) {
+    return new Hold(showtime, expired);
+  }
+
+  /**
+   * Add a seat to a hold, renewing the hold.
+   *
+   * @param hold  The hold to add the seat to.
+   * @param row   The row of the seat.
+   * @param seat  The seat number of the seat.
+   *
+   * @throws SQLException In case of a SQL error, or a
+   *                      {@link SeatsTakenException} if the seat is taken or
+   *                      held by another hold.
+   */
+  public void hold(
+    final Hold hold,
+    final int row,
+    final int seat
+  ) throws SQLException {
+    synchronized (hold) {
+      if (hold.isReleased() || hold.map().get(row, seat)) {
+        return;
+      }
+
+      SeatMap seats = new SeatMap(hold.map().rows(), hold.map().seats());
+      seats.set(row, seat);
+
+      AtomicSeatMap claims = this.claims(hold.showtime.get(), seats);
+
+      SeatMap conflicts = claims.claim(seats);
+
+      if (!conflicts.isEmpty()) {
+        throw new SeatsTakenException(conflicts);
+      }
+
+      try {
+        // The seat may have been taken by another terminal.
+        if (hold.showtime.get().fetchTakenSeats().get(row, seat)) {
+          throw new SeatsTakenException(seats);
+        }
+
+        hold.map().set(row, seat);
+        this.renew(hold);
+      }
+      catch (SQLException | RuntimeException ex) {
+        hold.map().clear(row, seat);
+        claims.release(seats);
+
+        throw ex;
+      }
+    }
+  }
+
+  /**
+   * Remove a seat from a hold, renewing the hold if any seats are left.
+   *
+   * @param hold  The hold to remove the seat from.
+   * @param row   The row of the seat.
+   * @param seat  The seat number of the seat.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  public void unhold(
+    final Hold hold,
+    final int row,
+    final int seat
+  ) throws SQLException {
+    synchronized (hold) {
+      if (hold.isReleased() || !hold.map().get(row, seat)) {
+        return;
+      }
+
+      SeatMap seats = new SeatMap(hold.map().rows(), hold.map().seats());
+      seats.set(row, seat);
+
+      hold.map().clear(row, seat);
+      this.claims(hold.showtime.get(), seats).release(seats);
+
+      if (hold.map().isEmpty()) {
+        hold.timeout(null);
+        hold.delete();
+      }
+      else {
+        this.renew(hold);
+      }
+    }
+  }
+
+  /**
+   * Release all seats of a hold, after which it can't hold seats anymore.
+   *
+   * @param hold The hold to release.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  public void release(final Hold hold) throws SQLException {
+    synchronized (hold) {
+      if (hold.isReleased()) {
+        return;
+      }
+
+      this.claims(hold.showtime.get(), hold.map()).release(hold.map());
+      hold.release();
+      hold.delete();
+    }
+  }
+
+  /**
+   * Store the seats of a hold and push back the time at which it expires.
+   *
+   * @param hold The hold to renew.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  private void renew(final Hold hold) throws SQLException {
+    hold.seats.set(hold.map().toBytes());
+    hold.expiresAt.set(System.currentTimeMillis() + this.holdTime);
+    hold.upsert();
+
+    hold.timeout(this.holds.schedule(
+      () -> this.expire(hold), this.holdTime, TimeUnit.MILLISECONDS
+    ));
+  }
+
+  /**
+   * Expire a hold that hasn't been renewed in time.
+   *
+   * @param hold The hold to expire.
+   */
+  private void expire(final Hold hold) {
+    synchronized (hold) {
+      // The hold may have been renewed while its timeout was being run, in
+      // which case its timeout is a new one.
+      if (hold.isReleased() || !hold.timeout().isExpired()) {
+        return;
+      }
+
+      this.claims(hold.showtime.get(), hold.map()).release(hold.map());
+      hold.release();
+
+      try {
+        hold.delete();
+      }
+      catch (SQLException ex) {
+        // The stored hold has expired regardless, which is all that other
+        // terminals look at.
+        return;
+      }
+      finally {
+        Bookie.fx().execute(hold.expired());
+      }
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager and Sigrið Gyldenkærne Dalsgarð.
+ */
+package dk.itu.bookie.model;
+
+/**
+ * Seat finder class.
+ *
+ * <p>
+ * The seat finder suggests the best available seats for a party, i.e. a block
+ * of free seats next to each other in a single row, as close to the center of
+ * the auditorium as possible. If no row has room for the entire party, it is
+ * split into as few blocks as possible, each placed as close to the center of
+ * the row of the first block as possible.
+ *
+ * <p>
+ * Rows are searched a 64-bit word at a time: the free seats of a row are
+ * shifted onto themselves so that only seats followed by enough free seats
+ * remain set, which takes a number of word operations logarithmic in the size
+ * of the party.
+ *
+ * @since 1.1.0 Seat suggestions.
+ */
+public final class SeatFinder {
+  /**
+   * The number of seats per word.
+   */
+  private static final int WORD_SIZE = 64;
+
+  /**
+   * Don't allow instantiating the class.
+   */
+  private SeatFinder() {
+    super();
+  }
+
+  /**
+   * Find the best available seats for a party.
+   *
+   * @param taken The seats that are taken.
+   * @param party The number of seats to find.
+   * @return      The seats found, which is empty if there aren't enough free
+   *              seats.
+   */
+  public static SeatMap find(final SeatMap taken, final int party) {
+    if (party <= 0) {
+      throw new IllegalArgumentException("A party needs at least one seat");
+    }
+
+    int rows = taken.rows();
+    int seats = taken.seats();
+
+    SeatMap found = new SeatMap(rows, seats);
+
+    if ((long) rows * seats - taken.count() < party) {
+      return found;
+    }
+
+    // Seats are marked as taken as blocks are found, so work on a copy.
+    SeatMap free = taken.copy();
+
+    int left = party;
+    int anchor = -1;
+    int size = Math.min(party, seats);
+
+    while (left > 0) {
+      int[] block = SeatFinder.findBlock(free, size, anchor);
+
+      // Try smaller blocks until one fits; there are enough free seats, so
+      // blocks of a single seat always do.
+      if (block == null) {
+        size--;
+        continue;
+      }
+
+      int row = block[0];
+
+      for (int seat = block[1]; seat < block[1] + size; seat++) {
+        free.set(row, seat);
+        found.set(row, seat);
+      }
+
+      if (anchor == -1) {
+        anchor = row;
+      }
+
+      left -= size;
+      size = Math.min(size, left);
+    }
+
+    return found;
+  }
+
+  /**
+   * Find the best block of free seats of a given size.
+   *
+   * @param taken   The seats that are taken.
+   * @param size    The number of seats in the block.
+   * @param anchor  The row to place the block close to, or -1 to place it
+   *                close to the center of the auditorium.
+   * @return        The row and first seat of the block, or null if there is
+   *                no such block.
+   */
+  private static int[] findBlock(
+    final SeatMap taken,
+    final int size,
+    final int anchor
+  ) {
+    int rows = taken.rows();
+    int seats = taken.seats();
+    int stride = (rows == 0) ? 0 : taken.words().length / rows;
+
+    long[] words = taken.words();
+    long[] starts = new long[stride];
+
+    int[] best = null;
+    long bestCost = Long.MAX_VALUE;
+
+    for (int row = 0; row < rows; row++) {
+      SeatFinder.findStarts(words, row * stride, stride, seats, size, starts);
+
+      // Distances are doubled so that centers between two seats are whole.
+      long dy = (anchor == -1) ? 2 * row - (rows - 1) : 2 * (row - anchor);
+
+      for (int w = 0; w < stride; w++) {
+        long bits = starts[w];
+
+        while (bits != 0) {
+          int seat = w * SeatFinder.WORD_SIZE
+                   + Long.numberOfTrailingZeros(bits);
+          bits &= bits - 1;
+
+          long dx = 2 * seat + size - 1 - (seats - 1);
+          long cost = dx * dx + dy * dy;
+
+          if (cost < bestCost) {
+            bestCost = cost;
+            best = new int[] {row, seat};
+          }
+        }
+      }
+    }
+
+    return best;
+  }
+
+  /**
+   * Find the seats of a row at which a block of free seats of a given size
+   * starts.
+   *
+   * @param words   The words of the taken seats.
+   * @param offset  The index of the first word of the row.
+   * @param stride  The number of words per row.
+   * @param seats   The number of seats per row.
+   * @param size    The number of seats in the block.
+   * @param starts  The words to set the starting seats in.
+   */
+  private static void findStarts(
+    final long[] words,
+    final int offset,
+    final int stride,
+    final int seats,
+    final int size,
+    final long[] starts
+  ) {
+    for (int w = 0; w < stride; w++) {
+      starts[w] = ~words[offset + w];
+    }
+
+    // Clear the bits past the last seat of the row.
+    int tail = seats % SeatFinder.WORD_SIZE;
+
+    if (stride > 0 && tail != 0) {
+      starts[stride - 1] &= (1L << tail) - 1;
+    }
+
+    // A seat is set once it's followed by run - 1 free seats; doubling the
+    // run each step gets there in a logarithmic number of steps.
+    int run = 1;
+
+    while (run < size) {
+      int shift = Math.min(run, size - run);
+      SeatFinder.andShifted(starts, shift);
+      run += shift;
+    }
+  }
+
+  /**
+   * And the bits of a row with the bits of the same row shifted towards its
+   * first seat.
+   *
+   * @param row   The words of the row.
+   * @param shift The number of seats to shift by.
+   */
+  private static void andShifted(final long[] row, final int shift) {
+    int words = shift / SeatFinder.WORD_SIZE;
+    int bits = shift % SeatFinder.WORD_SIZE;
+
+    // Going up through the row only reads words that haven't been changed
+    // yet, as the shifted bits come from further up.
+    for (int w = 0; w < row.length; w++) {
+      int from = w + words;
+
+      long shifted = (from < row.length) ? row[from] >>> bits : 0;
+
+      if (bits != 0 && from + 1 < row.length) {
+        shifted |= row[from + 1] << (SeatFinder.WORD_SIZE - bits);
+      }
+
+      row[w] &= shifted;
+    }
+  }
+}
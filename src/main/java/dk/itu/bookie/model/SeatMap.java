@@ -0,0 +1,304 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager and Sigrið Gyldenkærne Dalsgarð.
+ */
+package dk.itu.bookie.model;
+
+/**
+ * Seat map class.
+ *
+ * <p>
+ * A seat map is a bitmap with a bit for each seat of an auditorium, e.g. the
+ * seats that are reserved for a showtime. Each row of seats starts at a new
+ * 64-bit word so that a row can be scanned a word at a time, and the bitmap
+ * is stored as the little-endian bytes of its words.
+ *
+ * @since 1.1.0 Seat occupancy bitmaps.
+ */
+public final class SeatMap {
+  /**
+   * The number of seats per word.
+   */
+  private static final int WORD_SIZE = 64;
+
+  /**
+   * The number of rows of the seat map.
+   */
+  private final int rows;
+
+  /**
+   * The number of seats per row of the seat map.
+   */
+  private final int seats;
+
+  /**
+   * The number of words per row of the seat map.
+   */
+  private final int stride;
+
+  /**
+   * The words of the seat map, row by row.
+   */
+  private final long[] words;
+
+  /**
+   * Initialize an empty seat map.
+   *
+   * @param rows  The number of rows.
+   * @param seats The number of seats per row.
+   */
+  public SeatMap(final int rows, final int seats) {
+    if (rows < 0 || seats < 0) {
+      throw new IllegalArgumentException("Negative seat map size");
+    }
+
+    this.rows = rows;
+    this.seats = seats;
+    this.stride = (seats + SeatMap.WORD_SIZE - 1) / SeatMap.WORD_SIZE;
+    this.words = new long[rows * this.stride];
+  }
+
+  /**
+   * Initialize a seat map from its bytes.
+   *
+   * <p>
+   * Missing bytes are treated as empty seats, so an empty array gives an
+   * empty seat map.
+   *
+   * @param rows  The number of rows.
+   * @param seats The number of seats per row.
+   * @param bytes The bytes of the seat map, or null.
+   * @return      The seat map.
+   */
+  public static SeatMap fromBytes(
+    final int rows,
+    final int seats,
+    final byte[] bytes
+  ) {
+    SeatMap map = new SeatMap(rows, seats);
+
+    if (bytes == null) {
+      return map;
+    }
+
+    int length = Math.min(bytes.length, map.words.length * 8);
+
+    for (int i = 0; i < length; i++) {
+      map.words[i >> 3] |= (bytes[i] & 0xFFL) << ((i & 7) << 3);
+    }
+
+    return map;
+  }
+
+  /**
+   * Get the bytes of the seat map.
+   *
+   * @return The bytes of the seat map.
+   */
+  public byte[] toBytes() {
+    byte[] bytes = new byte[this.words.length * 8];
+
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) (this.words[i >> 3] >>> ((i & 7) << 3));
+    }
+
+    return bytes;
+  }
+
+  /**
+   * Get the number of rows of the seat map.
+   *
+   * @return The number of rows.
+   */
+  public int rows() {
+    return this.rows;
+  }
+
+  /**
+   * Get the number of seats per row of the seat map.
+   *
+   * @return The number of seats per row.
+   */
+  public int seats() {
+    return this.seats;
+  }
+
+  /**
+   * Get the words of the seat map, row by row.
+   *
+   * <p>
+   * The array is that of the seat map rather than a copy.
+   *
+   * @return The words of the seat map.
+   */
+  long[] words() {
+    return this.words;
+  }
+
+  /**
+   * Get the word holding a seat.
+   *
+   * @param row   The row of the seat.
+   * @param seat  The seat number of the seat.
+   * @return      The index of the word.
+   */
+  private int word(final int row, final int seat) {
+    if (row < 0 || row >= this.rows || seat < 0 || seat >= this.seats) {
+      throw new IndexOutOfBoundsException(
+        String.format("No seat %s in row %s", seat, row)
+      );
+    }
+
+    return row * this.stride + seat / SeatMap.WORD_SIZE;
+  }
+
+  /**
+   * Check if a seat is set.
+   *
+   * @param row   The row of the seat.
+   * @param seat  The seat number of the seat.
+   * @return      Whether or not the seat is set.
+   */
+  public boolean get(final int row, final int seat) {
+    // Shifting a long only uses the low 6 bits of the distance, which is the
+    // position of the seat within its word.
+    return (this.words[this.word(row, seat)] & (1L << seat)) != 0;
+  }
+
+  /**
+   * Set a seat.
+   *
+   * @param row   The row of the seat.
+   * @param seat  The seat number of the seat.
+   */
+  public void set(final int row, final int seat) {
+    this.words[this.word(row, seat)] |= 1L << seat;
+  }
+
+  /**
+   * Clear a seat.
+   *
+   * @param row   The row of the seat.
+   * @param seat  The seat number of the seat.
+   */
+  public void clear(final int row, final int seat) {
+    this.words[this.word(row, seat)] &= ~(1L << seat);
+  }
+
+  /**
+   * Set the seats that are set in another seat map of the same size.
+   *
+   * @param other The other seat map.
+   * @return      The current seat map, for chaining.
+   */
+  public SeatMap or(final SeatMap other) {
+    this.checkSize(other);
+
+    for (int i = 0; i < this.words.length; i++) {
+      this.words[i] |= other.words[i];
+    }
+
+    return this;
+  }
+
+  /**
+   * Clear the seats that aren't set in another seat map of the same size.
+   *
+   * @param other The other seat map.
+   * @return      The current seat map, for chaining.
+   */
+  public SeatMap and(final SeatMap other) {
+    this.checkSize(other);
+
+    for (int i = 0; i < this.words.length; i++) {
+      this.words[i] &= other.words[i];
+    }
+
+    return this;
+  }
+
+  /**
+   * Clear the seats that are set in another seat map of the same size.
+   *
+   * @param other The other seat map.
+   * @return      The current seat map, for chaining.
+   */
+  public SeatMap andNot(final SeatMap other) {
+    this.checkSize(other);
+
+    for (int i = 0; i < this.words.length; i++) {
+      this.words[i] &= ~other.words[i];
+    }
+
+    return this;
+  }
+
+  /**
+   * Copy the seat map.
+   *
+   * @return A seat map with the same seats set.
+   */
+  public SeatMap copy() {
+    SeatMap copy = new SeatMap(this.rows, this.seats);
+    System.arraycopy(this.words, 0, copy.words, 0, this.words.length);
+
+    return copy;
+  }
+
+  /**
+   * Check that another seat map is of the same size as this one.
+   *
+   * @param other The other seat map.
+   */
+  private void checkSize(final SeatMap other) {
+    if (other.rows != this.rows || other.seats != this.seats) {
+      throw new IllegalArgumentException("Seat maps differ in size");
+    }
+  }
+
+  /**
+   * Check if no seats are set.
+   *
+   * @return Whether or not the seat map is empty.
+   */
+  public boolean isEmpty() {
+    for (long word: this.words) {
+      if (word != 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Count the seats that are set.
+   *
+   * @return The number of seats that are set.
+   */
+  public int count() {
+    int count = 0;
+
+    for (long word: this.words) {
+      count += Long.bitCount(word);
+    }
+
+    return count;
+  }
+
+  /**
+   * Get the seat map as a two-dimensional array, indexed by row and seat.
+   *
+   * @return Whether or not each seat is set.
+   */
+  public boolean[][] toArray() {
+    boolean[][] array = new boolean[this.rows][this.seats];
+
+    for (int row = 0; row < this.rows; row++) {
+      for (int seat = 0; seat < this.seats; seat++) {
+        array[row][seat] = this.get(row, seat);
+      }
+    }
+
+    return array;
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager and Sigrið Gyldenkærne Dalsgarð.
+ */
+package dk.itu.bookie.model;
+
+// SQL utilities
+import java.sql.SQLException;
+
+/**
+ * Seats taken exception class.
+ *
+ * <p>
+ * Thrown when seats can't be allocated because some of them have been taken,
+ * either by a ticket or by another allocation in progress.
+ *
+ * @since 1.1.0 Atomic seat allocation.
+ */
+public final class SeatsTakenException extends SQLException {
+  /**
+   * The seats that were taken.
+   */
+  private final transient SeatMap seats;
+
+  /**
+   * Initialize a seats taken exception.
+   *
+   * @param seats The seats that were taken.
+   */
+  public SeatsTakenException(final SeatMap seats) {
+    super(String.format("%s of the seats are taken", seats.count()));
+
+    this.seats = seats;
+  }
+
+  /**
+   * Get the seats that were taken.
+   *
+   * @return The seats that were taken.
+   */
+  public SeatMap seats() {
+    return this.seats;
+  }
+}
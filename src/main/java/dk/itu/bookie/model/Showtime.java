@@ -5,8 +5,12 @@ package dk.itu.bookie.model;
 
 // General utilities
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
+// SQL utilities
+import java.sql.SQLException;
+
 // Text utilities
 import java.text.SimpleDateFormat;
 
@@ -19,13 +23,18 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
 // JavaFX properties
+import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.LongProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.StringProperty;
+import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleLongProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 
+// Donkey utilities
+import dk.itu.donkey.Row;
+
 // Base model
 import dk.itu.bookie.FXModel;
 
@@ -56,6 +65,32 @@ public final class Showtime extends FXModel {
   public ObservableList<Reservation> reservations =
     FXCollections.observableArrayList();
 
+  /**
+   * The number of seats taken by tickets, kept up to date by the tickets.
+   */
+  public IntegerProperty seatsTaken =
+    new SimpleIntegerProperty();
+
+  /**
+   * The bytes of the {@link SeatMap} of reserved seats, kept up to date by the
+   * tickets.
+   */
+  public ObjectProperty<byte[]> reservedSeats =
+    new SimpleObjectProperty<>(new byte[0]);
+
+  /**
+   * The bytes of the {@link SeatMap} of bought seats, kept up to date by the
+   * tickets.
+   */
+  public ObjectProperty<byte[]> boughtSeats =
+    new SimpleObjectProperty<>(new byte[0]);
+
+  /**
+   * The bytes of the {@link SeatMap} of seats held by any terminal, as of the
+   * last time the seats were fetched.
+   */
+  private byte[] heldSeats = new byte[0];
+
   /**
    * The time at which the movie is playing.
    */
@@ -69,6 +104,193 @@ public final class Showtime extends FXModel {
     super("showtimes", Bookie.db());
   }
 
+  /**
+   * Get the seats that are reserved but not bought.
+   *
+   * @return The seat map of reserved seats.
+   */
+  public SeatMap reserved() {
+    return this.seatMap(this.reservedSeats.get());
+  }
+
+  /**
+   * Get the seats that are bought.
+   *
+   * @return The seat map of bought seats.
+   */
+  public SeatMap bought() {
+    return this.seatMap(this.boughtSeats.get());
+  }
+
+  /**
+   * Get the seats that are held, including those held by this terminal.
+   *
+   * @return The seat map of held seats.
+   */
+  public SeatMap held() {
+    return this.seatMap(this.heldSeats);
+  }
+
+  /**
+   * Turn the bytes of a seat map into a seat map of the auditorium.
+   *
+   * @param bytes The bytes of the seat map.
+   * @return      The seat map.
+   */
+  private SeatMap seatMap(final byte[] bytes) {
+    Auditorium auditorium = this.auditorium.get();
+
+    return SeatMap.fromBytes(
+      auditorium.rows.get(), auditorium.seats.get(), bytes
+    );
+  }
+
+  /**
+   * Fetch the reserved and bought seats of the showtime from the database.
+   *
+   * <p>
+   * Only the seat maps of the showtime and its holds are fetched, regardless
+   * of the number of tickets. They are set on the JavaFX thread.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  public void fetchSeats() throws SQLException {
+    Row row = this.fetchSeatMaps();
+
+    if (row == null) {
+      return;
+    }
+
+    byte[] reserved = (byte[]) row.get("reservedseats");
+    byte[] bought = (byte[]) row.get("boughtseats");
+    byte[] held = this.fetchHeldSeats().toBytes();
+
+    Bookie.fx().execute(() -> {
+      this.reservedSeats.set(reserved);
+      this.boughtSeats.set(bought);
+      this.heldSeats = held;
+    });
+  }
+
+  /**
+   * Fetch the seats of the showtime that are held by holds that haven't
+   * expired, by any terminal.
+   *
+   * @return The seat map of held seats.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  private SeatMap fetchHeldSeats() throws SQLException {
+    SeatMap held = this.seatMap(null);
+
+    List<Row> rows = new Hold().query()
+      .select("seats")
+      .where("showtime", this.id())
+      .where("expiresat", ">", System.currentTimeMillis())
+      .get();
+
+    for (Row row: rows) {
+      held.or(this.seatMap((byte[]) row.get("seats")));
+    }
+
+    return held;
+  }
+
+  /**
+   * Fetch the seats of the showtime that are taken, whether reserved or
+   * bought, from the database.
+   *
+   * @return The seat map of taken seats.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  public SeatMap fetchTakenSeats() throws SQLException {
+    Row row = this.fetchSeatMaps();
+
+    if (row == null) {
+      return this.seatMap(null);
+    }
+
+    return this.seatMap((byte[]) row.get("reservedseats"))
+      .or(this.seatMap((byte[]) row.get("boughtseats")));
+  }
+
+  /**
+   * Fetch the row holding the seat maps of the showtime.
+   *
+   * @return The row of seat maps, or null if the showtime doesn't exist.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  private Row fetchSeatMaps() throws SQLException {
+    return this.query()
+      .select("reservedseats", "boughtseats")
+      .where("id", this.id())
+      .first();
+  }
+
+  /**
+   * Mark a seat as taken or free in the database.
+   *
+   * <p>
+   * The seat maps are read from the database rather than memory as other
+   * terminals may have changed them. This must be called within the
+   * transaction that writes the ticket of the seat, after the ticket has
+   * updated {@link #seatsTaken}: that update locks the row of the showtime
+   * until the transaction ends, so seat maps can't be changed in between
+   * reading and writing them.
+   *
+   * @param row     The row of the seat.
+   * @param seat    The seat number of the seat.
+   * @param bought  Whether the seat is bought rather than reserved.
+   * @param taken   Whether to mark the seat as taken rather than free.
+   * @return        The bytes of the updated seat map.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  byte[] markSeat(
+    final int row,
+    final int seat,
+    final boolean bought,
+    final boolean taken
+  ) throws SQLException {
+    String column = (bought) ? "boughtseats" : "reservedseats";
+
+    SeatMap map = this.seatMap((byte[]) this.fetchSeatMaps().get(column));
+
+    if (taken) {
+      map.set(row, seat);
+    }
+    else {
+      map.clear(row, seat);
+    }
+
+    byte[] bytes = map.toBytes();
+
+    Row update = new Row();
+    update.put(column, bytes);
+
+    this.query().where("id", this.id()).update(update);
+
+    return bytes;
+  }
+
+  /**
+   * Set the bytes of a seat map on the JavaFX thread.
+   *
+   * @param bought  Whether to set the bought rather than the reserved seats.
+   * @param bytes   The bytes of the seat map.
+   */
+  void setSeats(final boolean bought, final byte[] bytes) {
+    ObjectProperty<byte[]> seats = (bought)
+      ? this.boughtSeats
+      : this.reservedSeats;
+
+    Bookie.fx().execute(() -> {
+      seats.set(bytes);
+    });
+  }
+
   /**
    * Return a date format for formatting showtime dates.
    *
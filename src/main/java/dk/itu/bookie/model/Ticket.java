@@ -3,12 +3,19 @@
  */
 package dk.itu.bookie.model;
 
+// SQL utilities
+import java.sql.SQLException;
+
 // JavaFX properties
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleObjectProperty;
 
+// Donkey utilities
+import dk.itu.donkey.CounterCache;
+import dk.itu.donkey.UniqueKey;
+
 // Base model
 import dk.itu.bookie.FXModel;
 
@@ -18,8 +25,13 @@ import dk.itu.bookie.Bookie;
 /**
  * Ticket class.
  *
+ * <p>
+ * A seat can only have a single ticket per showtime, which is enforced by the
+ * database.
+ *
  * @version 1.0.0
  */
+@UniqueKey({"showtime", "row", "seat"})
 public final class Ticket extends FXModel {
   /**
    * The row number of the ticket.
@@ -36,13 +48,100 @@ public final class Ticket extends FXModel {
   /**
    * The reservation that this ticket is part of.
    */
+  @CounterCache("ticketCount")
   public ObjectProperty<Reservation> reservation =
     new SimpleObjectProperty<>();
 
+  /**
+   * The showtime that this ticket is for.
+   */
+  @CounterCache("seatsTaken")
+  public ObjectProperty<Showtime> showtime =
+    new SimpleObjectProperty<>();
+
   /**
    * Initialize a ticket.
    */
   public Ticket() {
     super("tickets", Bookie.db());
   }
+
+  /**
+   * Get the showtime of the ticket, taking it from the reservation if not set.
+   *
+   * @return The showtime of the ticket.
+   */
+  private Showtime showtime() {
+    if (this.showtime.get() == null && this.reservation.get() != null) {
+      this.showtime.set(this.reservation.get().showtime.get());
+    }
+
+    return this.showtime.get();
+  }
+
+  /**
+   * Create a ticket and mark its seat as taken in the seat maps of its
+   * showtime.
+   *
+   * @return Boolean indicating whether or not the query was performed.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Override
+  public boolean insert() throws SQLException {
+    if (this.id() != null) {
+      return false;
+    }
+
+    Showtime showtime = this.showtime();
+    boolean bought = this.reservation.get().bought.get();
+
+    Bookie.db().transaction(() -> {
+      super.insert();
+
+      byte[] seats = showtime.markSeat(
+        this.row.get(), this.seat.get(), bought, true
+      );
+
+      Bookie.db().afterCommit(() -> showtime.setSeats(bought, seats));
+
+      return null;
+    });
+
+    return true;
+  }
+
+  /**
+   * Delete a ticket and mark its seat as free in the seat maps of its
+   * showtime.
+   *
+   * @return Boolean indicating whether or not the ticket was deleted, which
+   *         it isn't if it was already deleted elsewhere.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Override
+  public boolean delete() throws SQLException {
+    if (this.id() == null) {
+      return false;
+    }
+
+    Showtime showtime = this.showtime();
+    boolean bought = this.reservation.get().bought.get();
+
+    return Bookie.db().transaction(() -> {
+      // A ticket deleted elsewhere may already have had its seat taken anew.
+      if (!super.delete()) {
+        return false;
+      }
+
+      byte[] seats = showtime.markSeat(
+        this.row.get(), this.seat.get(), bought, false
+      );
+
+      Bookie.db().afterCommit(() -> showtime.setSeats(bought, seats));
+
+      return true;
+    });
+  }
 }
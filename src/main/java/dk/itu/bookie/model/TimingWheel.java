@@ -0,0 +1,335 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager and Sigrið Gyldenkærne Dalsgarð.
+ */
+package dk.itu.bookie.model;
+
+// General utilities
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+// Concurrency utilities
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timing wheel class.
+ *
+ * <p>
+ * A timing wheel, or hashed wheel timer as described by Varghese and Lauck,
+ * runs tasks after a delay with a precision of a single tick. Time is divided
+ * into ticks that are laid out on a wheel of buckets, and each task is put in
+ * the bucket of the tick at which it is due, along with the number of turns
+ * of the wheel left until then.
+ * Scheduling and cancelling a task thereby take constant time regardless of
+ * the number of tasks, which suits many short-lived timeouts that are mostly
+ * cancelled before they are due.
+ *
+ * <p>
+ * The wheel is turned by a single daemon thread, started once the first task
+ * is scheduled, unless it is turned by hand using {@link #turn()}. Tasks are
+ * handed to an executor once due rather than run on that thread.
+ *
+ * @since 1.1.0 Seat holds.
+ */
+final class TimingWheel {
+  /**
+   * The duration of a tick in nanoseconds.
+   */
+  private final long tick;
+
+  /**
+   * The buckets of the wheel, one per tick. Only touched by the wheel thread.
+   */
+  private final List<List<Timeout>> buckets;
+
+  /**
+   * The mask that maps a tick to its bucket.
+   */
+  private final int mask;
+
+  /**
+   * The executor to run due tasks on.
+   */
+  private final Executor executor;
+
+  /**
+   * The timeouts that have been scheduled but not yet put in a bucket.
+   */
+  private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Whether or not the wheel has started turning.
+   */
+  private final AtomicBoolean started = new AtomicBoolean();
+
+  /**
+   * The time at which the wheel started turning, in nanoseconds. Wheels
+   * turned by hand start once they are created.
+   */
+  private volatile long start = System.nanoTime();
+
+  /**
+   * The number of ticks that have passed. Only touched by the wheel thread.
+   */
+  private long ticks;
+
+  /**
+   * Initialize a timing wheel.
+   *
+   * @param tick      The duration of a tick.
+   * @param unit      The unit of the duration of a tick.
+   * @param size      The number of ticks per turn of the wheel, which is
+   *                  rounded up to a power of two.
+   * @param executor  The executor to run due tasks on.
+   */
+  TimingWheel(
+    final long tick,
+    final TimeUnit unit,
+    final int size,
+    final Executor executor
+  ) {
+    this(tick, unit, size, executor, true);
+  }
+
+  /**
+   * Initialize a timing wheel that may be turned by hand.
+   *
+   * @param tick      The duration of a tick.
+   * @param unit      The unit of the duration of a tick.
+   * @param size      The number of ticks per turn of the wheel, which is
+   *                  rounded up to a power of two.
+   * @param executor  The executor to run due tasks on.
+   * @param turning   Whether or not to turn the wheel on a thread of its own
+   *                  rather than by hand.
+   */
+  TimingWheel(
+    final long tick,
+    final TimeUnit unit,
+    final int size,
+    final Executor executor,
+    final boolean turning
+  ) {
+    if (tick <= 0 || size <= 0) {
+      throw new IllegalArgumentException("Invalid timing wheel size");
+    }
+
+    // Round the size up to a power of two so that buckets can be found using
+    // a mask rather than a division.
+    int buckets = Integer.highestOneBit(size);
+
+    if (buckets < size) {
+      buckets <<= 1;
+    }
+
+    this.tick = unit.toNanos(tick);
+    this.mask = buckets - 1;
+    this.started.set(!turning);
+    this.executor = executor;
+    this.buckets = new ArrayList<>(buckets);
+
+    for (int i = 0; i < buckets; i++) {
+      this.buckets.add(new ArrayList<>());
+    }
+  }
+
+  /**
+   * Schedule a task to run after a delay.
+   *
+   * @param task  The task to run.
+   * @param delay The delay after which to run the task.
+   * @param unit  The unit of the delay.
+   * @return      The timeout of the task, for cancelling it.
+   */
+  Timeout schedule(final Runnable task, final long delay, final TimeUnit unit) {
+    if (!this.started.get()) {
+      this.startTurning();
+    }
+
+    Timeout timeout = new Timeout(
+      task, System.nanoTime() - this.start + unit.toNanos(delay)
+    );
+
+    this.scheduled.add(timeout);
+
+    return timeout;
+  }
+
+  /**
+   * Start the thread that turns the wheel once per tick, unless it has
+   * already been started.
+   */
+  private synchronized void startTurning() {
+    if (this.started.get()) {
+      return;
+    }
+
+    // The first tick is a tick after the wheel starts turning, which may be
+    // long after it was created, so deadlines are counted from then.
+    this.start = System.nanoTime();
+
+    ScheduledExecutorService turner =
+      Executors.newSingleThreadScheduledExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "bookie-timing-wheel");
+        thread.setDaemon(true);
+
+        return thread;
+      });
+
+    turner.scheduleAtFixedRate(
+      () -> this.turn(), this.tick, this.tick, TimeUnit.NANOSECONDS
+    );
+
+    // Other threads only skip starting the wheel once its start has been set.
+    this.started.set(true);
+  }
+
+  /**
+   * Turn the wheel by a single tick, running the tasks that are due.
+   *
+   * <p>
+   * This is done once per tick by the thread of the wheel, if any, and must
+   * otherwise only be done by a single thread at a time.
+   */
+  void turn() {
+    this.ticks++;
+
+    // Put newly scheduled timeouts in the bucket of the tick at which they
+    // are due. Those that are already due go in the current bucket.
+    Timeout timeout;
+
+    while ((timeout = this.scheduled.poll()) != null) {
+      if (timeout.isCancelled()) {
+        continue;
+      }
+
+      long due = (timeout.deadline + this.tick - 1) / this.tick;
+      long at = Math.max(due, this.ticks);
+
+      timeout.rounds = (at - this.ticks) / this.buckets.size();
+
+      this.buckets.get((int) (at & this.mask)).add(timeout);
+    }
+
+    List<Timeout> bucket = this.buckets.get((int) (this.ticks & this.mask));
+
+    // Keep the timeouts that are due on a later turn, dropping the rest.
+    int kept = 0;
+
+    for (int i = 0; i < bucket.size(); i++) {
+      timeout = bucket.get(i);
+
+      if (timeout.isCancelled()) {
+        continue;
+      }
+
+      if (timeout.rounds > 0) {
+        timeout.rounds--;
+        bucket.set(kept++, timeout);
+        continue;
+      }
+
+      if (timeout.expire()) {
+        this.executor.execute(timeout.task);
+      }
+    }
+
+    bucket.subList(kept, bucket.size()).clear();
+  }
+
+  /**
+   * Timeout class.
+   *
+   * <p>
+   * A timeout is a task scheduled on a timing wheel.
+   */
+  static final class Timeout {
+    /**
+     * State of a timeout that is waiting to run.
+     */
+    private static final int WAITING = 0;
+
+    /**
+     * State of a timeout that has been cancelled.
+     */
+    private static final int CANCELLED = 1;
+
+    /**
+     * State of a timeout whose task has been run.
+     */
+    private static final int EXPIRED = 2;
+
+    /**
+     * The task to run.
+     */
+    private final Runnable task;
+
+    /**
+     * The time at which the task is due, in nanoseconds since the wheel was
+     * created.
+     */
+    private final long deadline;
+
+    /**
+     * The number of turns of the wheel left until the task is due.
+     */
+    private long rounds;
+
+    /**
+     * The state of the timeout.
+     */
+    private final AtomicInteger state = new AtomicInteger(Timeout.WAITING);
+
+    /**
+     * Initialize a timeout.
+     *
+     * @param task      The task to run.
+     * @param deadline  The time at which the task is due.
+     */
+    private Timeout(final Runnable task, final long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    /**
+     * Cancel the timeout, unless its task has already been run.
+     *
+     * @return Whether or not the timeout was cancelled.
+     */
+    boolean cancel() {
+      return this.state.compareAndSet(Timeout.WAITING, Timeout.CANCELLED);
+    }
+
+    /**
+     * Check if the timeout has been cancelled.
+     *
+     * @return Whether or not the timeout has been cancelled.
+     */
+    private boolean isCancelled() {
+      return this.state.get() == Timeout.CANCELLED;
+    }
+
+    /**
+     * Check if the task of the timeout has been run.
+     *
+     * @return Whether or not the timeout has expired.
+     */
+    boolean isExpired() {
+      return this.state.get() == Timeout.EXPIRED;
+    }
+
+    /**
+     * Mark the timeout as expired, unless it has been cancelled.
+     *
+     * @return Whether or not the timeout was marked as expired.
+     */
+    private boolean expire() {
+      return this.state.compareAndSet(Timeout.WAITING, Timeout.EXPIRED);
+    }
+  }
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// IO utilities
+import java.nio.charset.StandardCharsets;
+
+// SQL utilities
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+// PostgreSQL utilities
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+/**
+ * The Bulk Loader class streams large numbers of rows into a database table.
+ *
+ * <p>
+ * On PostgreSQL, rows are streamed through <code>COPY ... FROM STDIN</code>
+ * in the text format. On other databases, rows are inserted using multi-row
+ * insert statements within a single transaction.
+ *
+ * @see Database#bulkLoad(String, List, Iterator)
+ *
+ * @since 1.1.0 Bulk loading.
+ */
+final class BulkLoader {
+  /**
+   * The maximum number of values per insert statement, i.e. the default
+   * maximum number of host parameters of SQLite.
+   */
+  private static final int MAX_VALUES = 999;
+
+  /**
+   * The maximum number of rows per insert statement.
+   */
+  private static final int MAX_ROWS = 500;
+
+  /**
+   * The number of characters of COPY data to buffer before sending it.
+   */
+  private static final int COPY_BUFFER = 64 * 1024;
+
+  /**
+   * Don't allow instantiating the class.
+   */
+  private BulkLoader() {
+    super();
+  }
+
+  /**
+   * Stream rows into a PostgreSQL table using COPY.
+   *
+   * @param connection  The connection to a PostgreSQL database.
+   * @param table       The table to load the rows into.
+   * @param columns     The columns to load.
+   * @param rows        The rows to load.
+   * @return            The number of rows loaded.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  static long copy(
+    final Connection connection,
+    final String table,
+    final List<String> columns,
+    final Iterator<Row> rows
+  ) throws SQLException {
+    CopyIn copy = ((PGConnection) connection).getCopyAPI().copyIn(
+      "copy " + table + " (" + String.join(", ", columns) + ") from stdin"
+    );
+
+    StringBuilder buffer = new StringBuilder(BulkLoader.COPY_BUFFER + 1024);
+
+    try {
+      while (rows.hasNext()) {
+        Row row = rows.next();
+
+        for (int i = 0; i < columns.size(); i++) {
+          if (i > 0) {
+            buffer.append('\t');
+          }
+
+          BulkLoader.appendCopyValue(buffer, row.get(columns.get(i)));
+        }
+
+        buffer.append('\n');
+
+        if (buffer.length() >= BulkLoader.COPY_BUFFER) {
+          BulkLoader.writeCopy(copy, buffer);
+        }
+      }
+
+      BulkLoader.writeCopy(copy, buffer);
+
+      return copy.endCopy();
+    }
+    finally {
+      if (copy.isActive()) {
+        copy.cancelCopy();
+      }
+    }
+  }
+
+  /**
+   * Append a value to a line of COPY data in the text format.
+   *
+   * @param buffer  The buffer to append the value to.
+   * @param value   The value to append.
+   */
+  private static void appendCopyValue(
+    final StringBuilder buffer,
+    final Object value
+  ) {
+    if (value == null) {
+      buffer.append("\\N");
+      return;
+    }
+
+    // Binary values are written in the hex format of bytea, with the leading
+    // backslash escaped.
+    if (value instanceof byte[]) {
+      buffer.append("\\\\x");
+
+      for (byte b: (byte[]) value) {
+        buffer.append(Character.forDigit((b >> 4) & 0xF, 16));
+        buffer.append(Character.forDigit(b & 0xF, 16));
+      }
+
+      return;
+    }
+
+    String string = value.toString();
+
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+
+      switch (c) {
+        case '\\':
+          buffer.append("\\\\");
+          break;
+        case '\t':
+          buffer.append("\\t");
+          break;
+        case '\n':
+          buffer.append("\\n");
+          break;
+        case '\r':
+          buffer.append("\\r");
+          break;
+        default:
+          buffer.append(c);
+      }
+    }
+  }
+
+  /**
+   * Send buffered COPY data to the database and clear the buffer.
+   *
+   * @param copy    The COPY operation to send the data to.
+   * @param buffer  The buffered data.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  private static void writeCopy(
+    final CopyIn copy,
+    final StringBuilder buffer
+  ) throws SQLException {
+    byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+
+    copy.writeToCopy(bytes, 0, bytes.length);
+    buffer.setLength(0);
+  }
+
+  /**
+   * Load rows into a table using multi-row inserts within a transaction. If
+   * the connection is already within a transaction, the rows are loaded as
+   * part of it and it is left to the caller to commit.
+   *
+   * @param grammar     The grammar of the database.
+   * @param connection  The connection to the database.
+   * @param table       The table to load the rows into.
+   * @param columns     The columns to load.
+   * @param rows        The rows to load.
+   * @return            The number of rows loaded.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  static long insert(
+    final Grammar grammar,
+    final Connection connection,
+    final String table,
+    final List<String> columns,
+    final Iterator<Row> rows
+  ) throws SQLException {
+    int batch = Math.max(1, Math.min(
+      BulkLoader.MAX_ROWS, BulkLoader.MAX_VALUES / columns.size()
+    ));
+
+    grammar.addTable(table);
+
+    for (String column: columns) {
+      grammar.addColumn(column);
+    }
+
+    List<Object> values = new ArrayList<>(batch * columns.size());
+
+    long count = 0;
+
+    boolean autoCommit = connection.getAutoCommit();
+
+    if (autoCommit) {
+      connection.setAutoCommit(false);
+    }
+
+    try (
+      PreparedStatement statement = connection.prepareStatement(
+        grammar.compileInsert(batch)
+      );
+    ) {
+      while (rows.hasNext()) {
+        Row row = rows.next();
+
+        for (String column: columns) {
+          values.add(row.get(column));
+        }
+
+        // Insert the rows once a full batch has been gathered.
+        if (values.size() == batch * columns.size()) {
+          count += BulkLoader.executeInsert(statement, values);
+        }
+      }
+
+      // Insert any remaining rows using a statement of their size.
+      if (!values.isEmpty()) {
+        try (
+          PreparedStatement remainder = connection.prepareStatement(
+            grammar.compileInsert(values.size() / columns.size())
+          );
+        ) {
+          count += BulkLoader.executeInsert(remainder, values);
+        }
+      }
+
+      if (autoCommit) {
+        connection.commit();
+      }
+    }
+    catch (SQLException | RuntimeException ex) {
+      // Turning auto-commit back on commits the transaction, so it has to be
+      // rolled back first regardless of how loading failed.
+      if (autoCommit) {
+        connection.rollback();
+      }
+
+      throw ex;
+    }
+    finally {
+      if (autoCommit) {
+        connection.setAutoCommit(true);
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Execute a multi-row insert statement and clear its values.
+   *
+   * @param statement The statement to execute.
+   * @param values    The values of the rows to insert.
+   * @return          The number of rows inserted.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  private static int executeInsert(
+    final PreparedStatement statement,
+    final List<Object> values
+  ) throws SQLException {
+    for (int i = 0; i < values.size(); i++) {
+      statement.setObject(i + 1, values.get(i));
+    }
+
+    int count = statement.executeUpdate();
+    values.clear();
+
+    return count;
+  }
+}
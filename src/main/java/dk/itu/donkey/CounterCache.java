@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// Annotation utilities
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The Counter Cache annotation keeps a count of the models that belong to
+ * another model in a field of that model.
+ *
+ * <p>
+ * The annotation is put on a relation field of the child model and names an
+ * integer field of the related model, e.g. a ticket belonging to a
+ * reservation:
+ *
+ * <pre>
+ * &#64;CounterCache("ticketCount")
+ * public Reservation reservation;
+ * </pre>
+ *
+ * <p>
+ * Whenever a child is inserted or deleted, the counter column of the related
+ * model is incremented or decremented by the database within the same
+ * transaction, and the counter field of the related model instance is updated
+ * once the transaction commits. Reading the number of children thereby only
+ * requires reading a single column. Only related models that have been
+ * inserted are counted, and moving a child to another model using
+ * {@link Model#update()} does not move its count.
+ *
+ * @see Model#insert()
+ * @see Model#delete()
+ *
+ * @since 1.1.0 Counter caches.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface CounterCache {
+  /**
+   * The name of the integer field of the related model holding the count.
+   */
+  String value();
+}
@@ -0,0 +1,265 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.List;
+
+// SQL utilities
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * The Cursor class reads the result of a select query one row at a time
+ * rather than all at once.
+ *
+ * <p>
+ * The query is executed on the first read. The driver is asked to fetch rows
+ * in batches rather than buffering the entire result, which on PostgreSQL
+ * requires a transaction and on MySQL row-by-row streaming. A cursor holds on
+ * to its connection until closed.
+ *
+ * @since 1.1.0 Streaming query results.
+ */
+final class Cursor implements AutoCloseable {
+  /**
+   * The database to read from.
+   */
+  private final Database db;
+
+  /**
+   * The SQL to execute, without any values.
+   */
+  private final String sql;
+
+  /**
+   * Any values to add to the precompiled SQL statement.
+   */
+  private final List<Object> values;
+
+  /**
+   * The number of rows to fetch from the database at a time.
+   */
+  private final int fetchSize;
+
+  /**
+   * The source of the connection, if open.
+   */
+  private int source;
+
+  /**
+   * The connection of the cursor, if open.
+   */
+  private Connection connection;
+
+  /**
+   * The statement of the cursor, if open.
+   */
+  private PreparedStatement statement;
+
+  /**
+   * The result set of the cursor, if open.
+   */
+  private ResultSet rs;
+
+  /**
+   * The meta data of the result set, if open.
+   */
+  private ResultSetMetaData rm;
+
+  /**
+   * The labels of the columns of the result, if open.
+   */
+  private String[] labels;
+
+  /**
+   * The row that has been read ahead by {@link #peek()}, if any.
+   */
+  private Object[] peeked;
+
+  /**
+   * Whether or not the cursor has read the entire result or been closed.
+   */
+  private boolean done;
+
+  /**
+   * Whether or not the cursor started a transaction of its own.
+   */
+  private boolean transaction;
+
+  /**
+   * Initialize a cursor.
+   *
+   * @param db        The database to read from.
+   * @param sql       The SQL to execute, without any values.
+   * @param values    Any values to add to the precompiled SQL statement.
+   * @param fetchSize The number of rows to fetch from the database at a time.
+   */
+  Cursor(
+    final Database db,
+    final String sql,
+    final List<Object> values,
+    final int fetchSize
+  ) {
+    this.db = db;
+    this.sql = sql;
+    this.values = values;
+    this.fetchSize = fetchSize;
+  }
+
+  /**
+   * Execute the query of the cursor.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  private void open() throws SQLException {
+    this.source = this.db.source(false);
+    this.connection = this.db.acquire(this.source);
+
+    try {
+      Driver driver = this.db.driver();
+
+      // PostgreSQL only fetches rows in batches within a transaction...
+      if (driver == Driver.POSTGRESQL && this.connection.getAutoCommit()) {
+        this.connection.setAutoCommit(false);
+        this.transaction = true;
+      }
+
+      this.statement = this.connection.prepareStatement(
+        this.sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY
+      );
+
+      // ...while MySQL only streams rows given this magic fetch size.
+      this.statement.setFetchSize(
+        (driver == Driver.MYSQL) ? Integer.MIN_VALUE : this.fetchSize
+      );
+
+      for (int i = 0; i < this.values.size(); i++) {
+        this.statement.setObject(i + 1, this.values.get(i));
+      }
+
+      this.rs = this.statement.executeQuery();
+      this.rm = this.rs.getMetaData();
+      this.labels = new String[this.rm.getColumnCount()];
+
+      for (int i = 0; i < this.labels.length; i++) {
+        this.labels[i] = this.rm.getColumnLabel(i + 1);
+      }
+    }
+    catch (SQLException ex) {
+      this.close();
+
+      throw ex;
+    }
+  }
+
+  /**
+   * Read the next row of the result as an array of column values, in the
+   * order in which the columns were selected.
+   *
+   * @return The column values of the row, or null at the end of the result.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  Object[] next() throws SQLException {
+    Object[] row = this.peek();
+    this.peeked = null;
+
+    return row;
+  }
+
+  /**
+   * Read the next row of the result without moving past it.
+   *
+   * @return The column values of the row, or null at the end of the result.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  Object[] peek() throws SQLException {
+    if (this.peeked != null || this.done) {
+      return this.peeked;
+    }
+
+    if (this.rs == null) {
+      this.open();
+    }
+
+    if (!this.rs.next()) {
+      this.close();
+
+      return null;
+    }
+
+    Object[] row = new Object[this.labels.length];
+
+    for (int i = 0; i < row.length; i++) {
+      row[i] = this.db.parseColumn(this.rs, this.rm, i + 1);
+    }
+
+    this.peeked = row;
+
+    return row;
+  }
+
+  /**
+   * Read the next row of the result.
+   *
+   * @return The row, or null at the end of the result.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  Row nextRow() throws SQLException {
+    Object[] values = this.next();
+
+    if (values == null) {
+      return null;
+    }
+
+    Row row = new Row();
+
+    for (int i = 0; i < values.length; i++) {
+      row.put(this.labels[i], values[i]);
+    }
+
+    return row;
+  }
+
+  /**
+   * Close the cursor and release its connection.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Override
+  public void close() throws SQLException {
+    this.done = true;
+    this.peeked = null;
+
+    if (this.connection == null) {
+      return;
+    }
+
+    Connection connection = this.connection;
+    this.connection = null;
+
+    try {
+      if (this.statement != null) {
+        this.statement.close();
+      }
+
+      // End the transaction that PostgreSQL was streaming within, unless it
+      // belongs to the caller.
+      if (this.transaction) {
+        this.transaction = false;
+        connection.rollback();
+        connection.setAutoCommit(true);
+      }
+    }
+    finally {
+      this.db.release(this.source, connection);
+    }
+  }
+}
@@ -0,0 +1,326 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.List;
+
+// SQL utilities
+import java.sql.SQLException;
+
+// Concurrency utilities
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Cursor Publisher class publishes the result of a select query to
+ * subscribers, reading from a {@link Cursor} only as items are requested.
+ *
+ * <p>
+ * Each subscriber gets a cursor of its own, so the query is executed once per
+ * subscriber. Rows are read and sent on the executor of the database; once a
+ * subscriber has received as many items as requested, reading stops until it
+ * requests more. At most {@link #FETCH_SIZE} rows are therefore held in memory
+ * per subscriber, regardless of the size of the result.
+ *
+ * @param <T> The type of item to publish.
+ *
+ * @since 1.1.0 Streaming query results.
+ */
+final class CursorPublisher<T> implements Flow.Publisher<T> {
+  /**
+   * The number of rows to fetch from the database at a time.
+   */
+  static final int FETCH_SIZE = 256;
+
+  /**
+   * The database to read from.
+   */
+  private final Database db;
+
+  /**
+   * The SQL to execute, without any values.
+   */
+  private final String sql;
+
+  /**
+   * Any values to add to the precompiled SQL statement.
+   */
+  private final List<Object> values;
+
+  /**
+   * The reader that turns the rows of a cursor into items.
+   */
+  private final Reader<T> reader;
+
+  /**
+   * Initialize a cursor publisher.
+   *
+   * @param db      The database to read from.
+   * @param sql     The SQL to execute, without any values.
+   * @param values  Any values to add to the precompiled SQL statement.
+   * @param reader  The reader that turns the rows of a cursor into items.
+   */
+  CursorPublisher(
+    final Database db,
+    final String sql,
+    final List<Object> values,
+    final Reader<T> reader
+  ) {
+    this.db = db;
+    this.sql = sql;
+    this.values = values;
+    this.reader = reader;
+  }
+
+  /**
+   * Add a subscriber to the publisher.
+   *
+   * @param subscriber The subscriber to add.
+   */
+  @Override
+  public void subscribe(final Flow.Subscriber<? super T> subscriber) {
+    if (subscriber == null) {
+      throw new NullPointerException("A subscriber is required");
+    }
+
+    subscriber.onSubscribe(new CursorSubscription<T>(
+      subscriber,
+      new Cursor(this.db, this.sql, this.values, CursorPublisher.FETCH_SIZE),
+      this.reader,
+      this.db.executor()
+    ));
+  }
+
+  /**
+   * The Reader interface describes how to read a single item from a cursor.
+   *
+   * @param <T> The type of item to read.
+   */
+  @FunctionalInterface
+  interface Reader<T> {
+    /**
+     * Read the next item from a cursor.
+     *
+     * @param cursor  The cursor to read from.
+     * @return        The item, or null at the end of the cursor.
+     *
+     * @throws SQLException In case of a SQL error.
+     */
+    T read(Cursor cursor) throws SQLException;
+  }
+
+  /**
+   * The Cursor Subscription class sends the items of a cursor to a single
+   * subscriber as requested.
+   *
+   * <p>
+   * Reading is done by a drain loop that only ever runs on one thread at a
+   * time. Requests and cancellations made while the loop runs, e.g. from
+   * within {@link Flow.Subscriber#onNext(Object)}, are picked up by the loop
+   * rather than starting another one.
+   *
+   * @param <T> The type of item to send.
+   */
+  private static final class CursorSubscription<T>
+    implements Flow.Subscription {
+    /**
+     * The subscriber to send items to.
+     */
+    private final Flow.Subscriber<? super T> subscriber;
+
+    /**
+     * The cursor to read from.
+     */
+    private final Cursor cursor;
+
+    /**
+     * The reader that turns the rows of the cursor into items.
+     */
+    private final Reader<T> reader;
+
+    /**
+     * The executor to run the drain loop on.
+     */
+    private final Executor executor;
+
+    /**
+     * The number of items requested but not yet sent.
+     */
+    private final AtomicLong requested = new AtomicLong();
+
+    /**
+     * The number of times the drain loop has been asked to run; the loop is
+     * running whenever this is above 0.
+     */
+    private final AtomicInteger wip = new AtomicInteger();
+
+    /**
+     * Whether or not the subscription has been cancelled or terminated.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * The error caused by an invalid request, if any.
+     */
+    private volatile IllegalArgumentException invalid;
+
+    /**
+     * Initialize a cursor subscription.
+     *
+     * @param subscriber  The subscriber to send items to.
+     * @param cursor      The cursor to read from.
+     * @param reader      The reader that turns rows into items.
+     * @param executor    The executor to run the drain loop on.
+     */
+    private CursorSubscription(
+      final Flow.Subscriber<? super T> subscriber,
+      final Cursor cursor,
+      final Reader<T> reader,
+      final Executor executor
+    ) {
+      this.subscriber = subscriber;
+      this.cursor = cursor;
+      this.reader = reader;
+      this.executor = executor;
+    }
+
+    /**
+     * Request a number of additional items.
+     *
+     * @param n The number of items to request.
+     */
+    @Override
+    public void request(final long n) {
+      if (n <= 0) {
+        this.invalid = new IllegalArgumentException(
+          "Requests must be positive, got " + n
+        );
+      }
+      else {
+        long current;
+        long next;
+
+        do {
+          current = this.requested.get();
+          next = current + n;
+
+          // Cap the demand at "unbounded" rather than overflowing.
+          if (next < 0) {
+            next = Long.MAX_VALUE;
+          }
+        }
+        while (!this.requested.compareAndSet(current, next));
+      }
+
+      this.schedule();
+    }
+
+    /**
+     * Stop sending items and close the cursor.
+     */
+    @Override
+    public void cancel() {
+      this.cancelled = true;
+      this.schedule();
+    }
+
+    /**
+     * Run the drain loop unless it is already running.
+     */
+    private void schedule() {
+      if (this.wip.getAndIncrement() != 0) {
+        return;
+      }
+
+      try {
+        this.executor.execute(() -> this.drain());
+      }
+      catch (RejectedExecutionException ex) {
+        this.close();
+        this.subscriber.onError(ex);
+      }
+    }
+
+    /**
+     * Send as many items as requested, until the cursor runs out.
+     *
+     * <p>
+     * When the subscription terminates, the loop returns without marking
+     * itself as done so that it is never run again.
+     */
+    private void drain() {
+      int missed = 1;
+
+      while (true) {
+        if (this.cancelled) {
+          this.close();
+          return;
+        }
+
+        if (this.invalid != null) {
+          this.close();
+          this.subscriber.onError(this.invalid);
+          return;
+        }
+
+        long requested = this.requested.get();
+        long sent = 0;
+
+        try {
+          while (sent != requested && !this.cancelled) {
+            T item = this.reader.read(this.cursor);
+
+            if (item == null) {
+              this.close();
+              this.subscriber.onComplete();
+              return;
+            }
+
+            this.subscriber.onNext(item);
+            sent++;
+          }
+        }
+        catch (SQLException | RuntimeException ex) {
+          boolean cancelled = this.cancelled;
+
+          this.close();
+
+          if (!cancelled) {
+            this.subscriber.onError(ex);
+          }
+
+          return;
+        }
+
+        if (requested != Long.MAX_VALUE) {
+          this.requested.addAndGet(-sent);
+        }
+
+        missed = this.wip.addAndGet(-missed);
+
+        if (missed == 0) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * Terminate the subscription and close the cursor.
+     */
+    private void close() {
+      this.cancelled = true;
+
+      try {
+        this.cursor.close();
+      }
+      catch (SQLException ex) {
+        // The subscription is over regardless.
+        return;
+      }
+    }
+  }
+}
@@ -5,6 +5,7 @@ package dk.itu.donkey;
 
 // General utilities
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
 
@@ -17,6 +18,15 @@ import java.sql.Statement;
 import java.sql.SQLException;
 import java.sql.Types;
 
+// Concurrency utilities
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * The Database class is the main entry point to the different database systems
  * and handles executing SQL against them.
@@ -24,6 +34,31 @@ import java.sql.Types;
  * @since 1.0.0 Initial release.
  */
 public final class Database {
+  /**
+   * Connection source denoting the primary database.
+   */
+  private static final int PRIMARY = -1;
+
+  /**
+   * Connection source denoting the reader pool.
+   */
+  private static final int READER_POOL = -2;
+
+  /**
+   * Connection source denoting the transaction of the current thread.
+   */
+  private static final int TRANSACTION = -3;
+
+  /**
+   * The default executor of asynchronous tasks, shared by all databases.
+   */
+  private static final Executor ASYNC = Database.defaultExecutor();
+
+  /**
+   * Counter used for naming in-memory databases.
+   */
+  private static final AtomicInteger MEMORY_DATABASES = new AtomicInteger();
+
   /**
    * The database driver to use.
    */
@@ -34,6 +69,51 @@ public final class Database {
    */
   private final Properties properties;
 
+  /**
+   * Cache of compiled SQL.
+   */
+  private final SqlCache cache;
+
+  /**
+   * The executor that asynchronous tasks are run on.
+   */
+  private volatile Executor executor = Database.ASYNC;
+
+  /**
+   * The queue that writes are funneled through, if any.
+   */
+  private final WriteQueue writer;
+
+  /**
+   * The pool of connections that reads are executed on, if any.
+   */
+  private final ReaderPool readers;
+
+  /**
+   * The read replicas that reads are balanced across, if any.
+   */
+  private final ReplicaSet replicas;
+
+  /**
+   * Whether or not the database lives in memory.
+   */
+  private final boolean memory;
+
+  /**
+   * Connection that keeps an in-memory database alive, once opened.
+   */
+  private volatile Connection anchor;
+
+  /**
+   * The connection of the transaction in progress on each thread, if any.
+   */
+  private final ThreadLocal<Connection> transactions = new ThreadLocal<>();
+
+  /**
+   * The tasks to run once the transaction in progress on each thread commits.
+   */
+  private final ThreadLocal<List<Runnable>> commits = new ThreadLocal<>();
+
   /**
    * Re-/initialize a database.
    *
@@ -41,8 +121,89 @@ public final class Database {
    * @param properties  Database connection properties.
    */
   public Database(final Driver driver, final Properties properties) {
+    this(driver, properties, new ArrayList<Properties>());
+  }
+
+  /**
+   * Re-/initialize a database with a set of read replicas.
+   *
+   * <p>
+   * Writes are executed against the primary while reads are balanced across
+   * the replicas.
+   *
+   * <p>
+   * The number of query shapes whose compiled SQL is cached can be set using
+   * the "sql_cache" property of any driver, see {@link SqlCache}. It defaults
+   * to {@link SqlCache#DEFAULT_SIZE}, and 0 disables the cache.
+   *
+   * @see ReplicaSet
+   *
+   * @param driver      The database driver to use.
+   * @param properties  Connection properties of the primary.
+   * @param replicas    Connection properties of each replica.
+   */
+  public Database(
+    final Driver driver,
+    final Properties properties,
+    final List<Properties> replicas
+  ) {
     this.driver = driver;
-    this.properties = properties;
+    this.memory = driver == Driver.SQLITE && Driver.isSqliteMemory(properties);
+
+    // A private in-memory database only exists for the connection that opened
+    // it, so give every ":memory:" database its own shared-cache name instead.
+    if (this.memory && ":memory:".equals(properties.get("database"))) {
+      this.properties = new Properties();
+      this.properties.putAll(properties);
+      this.properties.setProperty("database", String.format(
+        "file:donkey-%s?mode=memory&cache=shared",
+        Database.MEMORY_DATABASES.incrementAndGet()
+      ));
+    }
+    else {
+      this.properties = properties;
+    }
+
+    this.cache = new SqlCache(Integer.parseInt(properties.getProperty(
+      "sql_cache", String.valueOf(SqlCache.DEFAULT_SIZE)
+    )));
+
+    if (
+      driver == Driver.SQLITE
+      && Boolean.parseBoolean(properties.getProperty("write_queue"))
+    ) {
+      this.writer = new WriteQueue(this, Integer.parseInt(
+        properties.getProperty("write_batch", "256")
+      ));
+    }
+    else {
+      this.writer = null;
+    }
+
+    int readers = Integer.parseInt(properties.getProperty("read_pool", "0"));
+
+    if (driver == Driver.SQLITE && readers > 0) {
+      this.readers = new ReaderPool(this, readers);
+    }
+    else {
+      this.readers = null;
+    }
+
+    if (!replicas.isEmpty()) {
+      this.replicas = new ReplicaSet(driver, properties, replicas);
+    }
+    else {
+      this.replicas = null;
+    }
+  }
+
+  /**
+   * Get the driver of the database.
+   *
+   * @return The database driver.
+   */
+  Driver driver() {
+    return this.driver;
   }
 
   /**
@@ -54,6 +215,15 @@ public final class Database {
     return this.driver.grammar();
   }
 
+  /**
+   * Return the cache of compiled SQL for the database.
+   *
+   * @return The {@link SqlCache} of the database.
+   */
+  public SqlCache cache() {
+    return this.cache;
+  }
+
   /**
    * Perform a {@link Query} against a database table.
    *
@@ -81,9 +251,46 @@ public final class Database {
    * @throws SQLException In case of a connection error.
    */
   public Connection connect() throws SQLException {
+    this.anchor();
+
     return this.driver.connect(this.properties);
   }
 
+  /**
+   * Initialize a read-only connection to the database.
+   *
+   * @return A read-only connection to the database.
+   *
+   * @throws SQLException In case of a connection error.
+   */
+  Connection connectReader() throws SQLException {
+    Properties properties = new Properties();
+    properties.putAll(this.properties);
+    properties.setProperty("read_only", "true");
+
+    this.anchor();
+
+    return this.driver.connect(properties);
+  }
+
+  /**
+   * Keep an in-memory database alive by holding a connection to it open for
+   * as long as the database hasn't been closed.
+   *
+   * @throws SQLException In case of a connection error.
+   */
+  private void anchor() throws SQLException {
+    if (!this.memory || this.anchor != null) {
+      return;
+    }
+
+    synchronized (this) {
+      if (this.anchor == null) {
+        this.anchor = this.driver.connect(this.properties);
+      }
+    }
+  }
+
   /**
    * Execute some SQL against the database.
    *
@@ -91,6 +298,13 @@ public final class Database {
    * This method uses the try-with-resource statement which ensures that all
    * closeable connections are automatically terminated after the code has run.
    *
+   * <p>
+   * If the database has a write queue, writes are handed off to the queue and
+   * this method waits until they have been committed. If the database has a
+   * reader pool or read replicas, reads are executed on one of those. Within
+   * a {@link #transaction(Callable)}, all SQL is executed on the connection of
+   * the transaction.
+   *
    * @param sql     The SQL to execute, without any values.
    * @param values  Any values to add to the precompiled SQL statement.
    * @return        The query result as a list of rows, or null.
@@ -100,6 +314,503 @@ public final class Database {
   public List<Row> execute(
     final String sql,
     final List<Object> values
+  ) throws SQLException {
+    boolean write = Database.isWrite(sql);
+
+    if (this.writer != null && write && this.transactions.get() == null) {
+      return Database.await(this.writer.submit(sql, values));
+    }
+
+    int source = this.source(write);
+    Connection connection = this.acquire(source);
+
+    try {
+      return this.execute(connection, sql, values);
+    }
+    finally {
+      this.release(source, connection);
+
+      if (write && this.replicas != null) {
+        this.replicas.wrote();
+      }
+    }
+  }
+
+  /**
+   * Pick the source of the connection to execute a statement on.
+   *
+   * @param write Whether or not the statement writes to the database.
+   * @return      The index of a replica, {@link #PRIMARY},
+   *              {@link #READER_POOL}, or {@link #TRANSACTION}.
+   */
+  int source(final boolean write) {
+    if (this.transactions.get() != null) {
+      return Database.TRANSACTION;
+    }
+
+    if (write) {
+      return Database.PRIMARY;
+    }
+
+    if (this.readers != null) {
+      return Database.READER_POOL;
+    }
+
+    if (this.replicas != null) {
+      return this.replicas.choose();
+    }
+
+    return Database.PRIMARY;
+  }
+
+  /**
+   * Acquire a connection from a source.
+   *
+   * @param source  The source of the connection.
+   * @return        A connection to the database.
+   *
+   * @throws SQLException In case of a connection error.
+   */
+  Connection acquire(final int source) throws SQLException {
+    switch (source) {
+      case Database.PRIMARY:
+        return this.connect();
+      case Database.READER_POOL:
+        return this.readers.acquire();
+      case Database.TRANSACTION:
+        return this.transactions.get();
+      default:
+        return this.replicas.connect(source);
+    }
+  }
+
+  /**
+   * Release a connection back to its source.
+   *
+   * @param source      The source of the connection.
+   * @param connection  The connection to release.
+   *
+   * @throws SQLException In case of a connection error.
+   */
+  void release(
+    final int source,
+    final Connection connection
+  ) throws SQLException {
+    if (source == Database.READER_POOL) {
+      this.readers.release(connection);
+
+      return;
+    }
+
+    // The connection of a transaction is closed once the transaction ends.
+    if (source == Database.TRANSACTION) {
+      return;
+    }
+
+    try {
+      connection.close();
+    }
+    finally {
+      if (source >= 0) {
+        this.replicas.release(source);
+      }
+    }
+  }
+
+  /**
+   * Execute some SQL against the database asynchronously.
+   *
+   * <p>
+   * Writes are handed off to the write queue if the database has one; all
+   * other SQL is executed using the executor of the database.
+   *
+   * @param sql     The SQL to execute, without any values.
+   * @param values  Any values to add to the precompiled SQL statement.
+   * @return        A future of the query result as a list of rows, or null.
+   */
+  public CompletableFuture<List<Row>> executeAsync(
+    final String sql,
+    final List<Object> values
+  ) {
+    if (this.writer != null && Database.isWrite(sql)) {
+      return this.writer.submit(sql, values);
+    }
+
+    return this.async(() -> this.execute(sql, values));
+  }
+
+  /**
+   * Run a task against the database asynchronously using the executor of the
+   * database.
+   *
+   * <p>
+   * If the task fails, the returned future is completed exceptionally with
+   * the exception thrown by the task, e.g. a {@link SQLException}, wrapped in
+   * a {@link CompletionException}.
+   *
+   * @param <T>   The type of result of the task.
+   * @param task  The task to run, e.g. <code>() -&gt; query.get()</code>.
+   * @return      A future of the result of the task.
+   */
+  public <T> CompletableFuture<T> async(final Callable<T> task) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return task.call();
+      }
+      catch (RuntimeException ex) {
+        throw ex;
+      }
+      catch (Exception ex) {
+        throw new CompletionException(ex);
+      }
+    }, this.executor);
+  }
+
+  /**
+   * Get the executor that asynchronous tasks are run on.
+   *
+   * @return The executor of the database.
+   */
+  public Executor executor() {
+    return this.executor;
+  }
+
+  /**
+   * Set the executor that asynchronous tasks are run on.
+   *
+   * @param executor The executor to use.
+   */
+  public void executor(final Executor executor) {
+    if (executor == null) {
+      throw new IllegalArgumentException("An executor is required");
+    }
+
+    this.executor = executor;
+  }
+
+  /**
+   * Initialize the default executor of asynchronous tasks.
+   *
+   * <p>
+   * Virtual threads are used when the runtime supports them as tasks spend
+   * most of their time waiting on the database. Otherwise, a cached pool of
+   * daemon threads is used.
+   *
+   * @return The default executor.
+   */
+  private static Executor defaultExecutor() {
+    try {
+      return (Executor) Executors.class
+        .getMethod("newVirtualThreadPerTaskExecutor")
+        .invoke(null);
+    }
+    catch (ReflectiveOperationException ex) {
+      return Executors.newCachedThreadPool((runnable) -> {
+        Thread thread = new Thread(runnable, "donkey-async");
+        thread.setDaemon(true);
+
+        return thread;
+      });
+    }
+  }
+
+  /**
+   * Submit some SQL for execution against the database.
+   *
+   * <p>
+   * If the database has a write queue, writes are handed off to the queue and
+   * the returned future is completed once they have been committed along with
+   * any other writes in the same group. Otherwise, the SQL is executed right
+   * away and the returned future is already completed, as it is within a
+   * {@link #transaction(Callable)}.
+   *
+   * @param sql     The SQL to execute, without any values.
+   * @param values  Any values to add to the precompiled SQL statement.
+   * @return        A future of the query result as a list of rows, or null.
+   */
+  public CompletableFuture<List<Row>> submit(
+    final String sql,
+    final List<Object> values
+  ) {
+    if (
+      this.writer != null
+      && Database.isWrite(sql)
+      && this.transactions.get() == null
+    ) {
+      return this.writer.submit(sql, values);
+    }
+
+    CompletableFuture<List<Row>> future = new CompletableFuture<>();
+
+    try {
+      future.complete(this.execute(sql, values));
+    }
+    catch (SQLException ex) {
+      future.completeExceptionally(ex);
+    }
+
+    return future;
+  }
+
+  /**
+   * Run a task within a transaction.
+   *
+   * <p>
+   * All SQL executed against the database by the current thread while the
+   * task runs, including through {@link Query} and {@link Model}, is executed
+   * on a single connection, bypassing any write queue, reader pool, and read
+   * replicas. The transaction is committed once the task returns and rolled
+   * back if it throws. A transaction started within another one joins the
+   * outer transaction, so only the outermost one commits.
+   *
+   * <p>
+   * SQL executed on other threads, e.g. using {@link #async(Callable)}, is not
+   * part of the transaction.
+   *
+   * @param <T>   The type of result of the task.
+   * @param task  The task to run.
+   * @return      The result of the task.
+   *
+   * @throws SQLException In case of a SQL error, or if the task throws a
+   *                      checked exception of another kind.
+   *
+   * @since 1.1.0 Transactions.
+   */
+  public <T> T transaction(final Callable<T> task) throws SQLException {
+    if (this.transactions.get() != null) {
+      return Database.call(task);
+    }
+
+    Connection connection = this.connect();
+    List<Runnable> commits = new ArrayList<>();
+    T result;
+
+    try {
+      connection.setAutoCommit(false);
+      this.transactions.set(connection);
+      this.commits.set(commits);
+
+      try {
+        result = Database.call(task);
+      }
+      catch (SQLException | RuntimeException ex) {
+        connection.rollback();
+
+        throw ex;
+      }
+
+      connection.commit();
+    }
+    finally {
+      this.transactions.remove();
+      this.commits.remove();
+
+      try {
+        connection.close();
+      }
+      finally {
+        if (this.replicas != null) {
+          this.replicas.wrote();
+        }
+      }
+    }
+
+    for (Runnable commit: commits) {
+      commit.run();
+    }
+
+    return result;
+  }
+
+  /**
+   * Run a task once the transaction in progress on the current thread commits.
+   *
+   * <p>
+   * This is meant for keeping in-memory state in line with the database, as
+   * the task is dropped if the transaction is rolled back. Tasks run in the
+   * order they were added, after the outermost transaction has ended. Outside
+   * of a transaction, the task runs right away.
+   *
+   * @param task The task to run.
+   *
+   * @since 1.1.0 Transactions.
+   */
+  public void afterCommit(final Runnable task) {
+    List<Runnable> commits = this.commits.get();
+
+    if (commits == null) {
+      task.run();
+    }
+    else {
+      commits.add(task);
+    }
+  }
+
+  /**
+   * Call a task, wrapping any checked exception other than a SQL error.
+   *
+   * @param <T>   The type of result of the task.
+   * @param task  The task to call.
+   * @return      The result of the task.
+   *
+   * @throws SQLException In case of a SQL error or other checked exception.
+   */
+  private static <T> T call(final Callable<T> task) throws SQLException {
+    try {
+      return task.call();
+    }
+    catch (SQLException | RuntimeException ex) {
+      throw ex;
+    }
+    catch (Exception ex) {
+      throw new SQLException(ex);
+    }
+  }
+
+  /**
+   * Load a large number of rows into a table.
+   *
+   * <p>
+   * On PostgreSQL, the rows are streamed through <code>COPY</code>. On other
+   * databases, they are inserted using multi-row inserts. Either way, the rows
+   * are loaded on a connection of their own within a single transaction,
+   * bypassing any write queue, and are pulled from the iterator as they are
+   * loaded rather than all at once. Within a {@link #transaction(Callable)},
+   * the rows are loaded as part of that transaction instead.
+   *
+   * @param table   The table to load the rows into.
+   * @param columns The columns to load.
+   * @param rows    The rows to load.
+   * @return        The number of rows loaded.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  public long bulkLoad(
+    final String table,
+    final List<String> columns,
+    final Iterator<Row> rows
+  ) throws SQLException {
+    if (columns.isEmpty()) {
+      throw new IllegalArgumentException("At least one column is required");
+    }
+
+    int source = this.source(true);
+    Connection connection = this.acquire(source);
+
+    try {
+      if (this.driver == Driver.POSTGRESQL) {
+        return BulkLoader.copy(connection, table, columns, rows);
+      }
+
+      return BulkLoader.insert(
+        this.grammar(), connection, table, columns, rows
+      );
+    }
+    finally {
+      this.release(source, connection);
+
+      if (this.replicas != null) {
+        this.replicas.wrote();
+      }
+    }
+  }
+
+  /**
+   * Stop the write queue and close the reader pool of the database, if any.
+   *
+   * <p>
+   * Writes that have already been submitted are committed before the queue
+   * stops; writes submitted afterwards fail. An in-memory database is
+   * discarded.
+   */
+  public void close() {
+    if (this.writer != null) {
+      this.writer.close();
+    }
+
+    if (this.readers != null) {
+      this.readers.close();
+    }
+
+    synchronized (this) {
+      if (this.anchor != null) {
+        try {
+          this.anchor.close();
+        }
+        catch (SQLException ex) {
+          // The database is being discarded regardless.
+          return;
+        }
+        finally {
+          this.anchor = null;
+        }
+      }
+    }
+  }
+
+  /**
+   * Check if some SQL writes to the database.
+   *
+   * @param sql The SQL to check.
+   * @return    Whether or not the SQL writes to the database.
+   */
+  static boolean isWrite(final String sql) {
+    int i = 0;
+
+    while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+      i++;
+    }
+
+    return !sql.regionMatches(true, i, "select", 0, 6)
+        && !sql.regionMatches(true, i, "with", 0, 4)
+        && !sql.regionMatches(true, i, "explain", 0, 7)
+        && !(sql.regionMatches(true, i, "pragma", 0, 6)
+        && sql.indexOf('=', i) == -1);
+  }
+
+  /**
+   * Wait for the result of a future, unwrapping any SQL error.
+   *
+   * @param <T>     The type of result.
+   * @param future  The future to wait for.
+   * @return        The result of the future.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  private static <T> T await(
+    final CompletableFuture<T> future
+  ) throws SQLException {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+
+      throw new SQLException("Interrupted while waiting for a write", ex);
+    }
+    catch (ExecutionException ex) {
+      if (ex.getCause() instanceof SQLException) {
+        throw (SQLException) ex.getCause();
+      }
+
+      throw new SQLException(ex.getCause());
+    }
+  }
+
+  /**
+   * Execute some SQL using an open connection.
+   *
+   * @param connection  The connection to execute the SQL on.
+   * @param sql         The SQL to execute, without any values.
+   * @param values      Any values to add to the precompiled SQL statement.
+   * @return            The query result as a list of rows, or null.
+   *
+   * @throws  SQLException  In case of a SQL error.
+   */
+  List<Row> execute(
+    final Connection connection,
+    final String sql,
+    final List<Object> values
   ) throws SQLException {
     // Don't return automatically generated keys by default...
     int autoGeneratedKeys = Statement.NO_GENERATED_KEYS;
@@ -110,8 +821,6 @@ public final class Database {
     }
 
     try (
-      Connection connection = this.connect();
-
       // Precompile the SQL statement without any values. This effectively
       // negates SQL injection as any input values will be added later on and
       // properly escaped by Java.
@@ -150,6 +859,48 @@ public final class Database {
     }
   }
 
+  /**
+   * Execute a write against the database and return the number of rows it
+   * changed.
+   *
+   * <p>
+   * The write queue doesn't report the number of changed rows, so outside of
+   * a {@link #transaction(Callable)} a database with a write queue executes
+   * the write within a transaction of its own instead.
+   *
+   * @param sql     The SQL to execute, without any values.
+   * @param values  Any values to add to the precompiled SQL statement.
+   * @return        The number of rows changed.
+   *
+   * @throws  SQLException  In case of a SQL error.
+   */
+  public int executeUpdate(
+    final String sql,
+    final List<Object> values
+  ) throws SQLException {
+    if (this.writer != null && this.transactions.get() == null) {
+      return this.transaction(() -> this.executeUpdate(sql, values));
+    }
+
+    int source = this.source(true);
+    Connection connection = this.acquire(source);
+
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      for (int i = 0; i < values.size(); i++) {
+        statement.setObject(i + 1, values.get(i));
+      }
+
+      return statement.executeUpdate();
+    }
+    finally {
+      this.release(source, connection);
+
+      if (this.replicas != null) {
+        this.replicas.wrote();
+      }
+    }
+  }
+
   /**
    * Execute a SQL query without any values.
    *
@@ -162,6 +913,58 @@ public final class Database {
     return this.execute(sql, new ArrayList<Object>());
   }
 
+  /**
+   * Execute a select query against the database and return the rows as arrays
+   * of column values.
+   *
+   * <p>
+   * In contrast to {@link #execute(String, List)}, the column values of each
+   * row are returned by position in the order in which the columns were
+   * selected, which avoids building a map per row.
+   *
+   * @param sql     The SQL to execute, without any values.
+   * @param values  Any values to add to the precompiled SQL statement.
+   * @return        The query result as a list of column value arrays.
+   *
+   * @throws  SQLException  In case of a SQL error.
+   */
+  public List<Object[]> fetch(
+    final String sql,
+    final List<Object> values
+  ) throws SQLException {
+    int source = this.source(false);
+    Connection connection = this.acquire(source);
+
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      for (int i = 0; i < values.size(); i++) {
+        statement.setObject(i + 1, values.get(i));
+      }
+
+      try (ResultSet rs = statement.executeQuery()) {
+        ResultSetMetaData rm = rs.getMetaData();
+
+        int columnCount = rm.getColumnCount();
+
+        List<Object[]> rows = new ArrayList<>();
+
+        while (rs.next()) {
+          Object[] row = new Object[columnCount];
+
+          for (int i = 1; i <= columnCount; i++) {
+            row[i - 1] = this.parseColumn(rs, rm, i);
+          }
+
+          rows.add(row);
+        }
+
+        return rows;
+      }
+    }
+    finally {
+      this.release(source, connection);
+    }
+  }
+
   /**
    * Parse a result set from a database query.
    *
@@ -191,32 +994,7 @@ public final class Database {
       // Run through each of the columns in the row and add them as
       // entries to the row object.
       for (int i = 1; i <= columnCount; i++) {
-        Object value;
-
-        switch (rm.getColumnType(i)) {
-          case Types.VARCHAR:
-            value = rs.getString(i);
-            break;
-          case Types.INTEGER:
-            value = rs.getInt(i);
-            break;
-          case Types.DOUBLE:
-            value = rs.getDouble(i);
-            break;
-          case Types.FLOAT:
-            value = rs.getFloat(i);
-            break;
-          case Types.BIGINT:
-            value = rs.getLong(i);
-            break;
-          case Types.BOOLEAN:
-            value = rs.getBoolean(i);
-            break;
-          default:
-            value = rs.getObject(i);
-        }
-
-        row.put(rm.getColumnLabel(i), value);
+        row.put(rm.getColumnLabel(i), this.parseColumn(rs, rm, i));
       }
 
       rows.add(row);
@@ -224,4 +1002,42 @@ public final class Database {
 
     return rows;
   }
+
+  /**
+   * Parse a single column of the current row of a result set.
+   *
+   * @param rs  The result set to parse.
+   * @param rm  The meta data of the result set.
+   * @param i   The index of the column, starting from 1.
+   * @return    The parsed column value.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  Object parseColumn(
+    final ResultSet rs,
+    final ResultSetMetaData rm,
+    final int i
+  ) throws SQLException {
+    switch (rm.getColumnType(i)) {
+      case Types.VARCHAR:
+        return rs.getString(i);
+      case Types.INTEGER:
+        return rs.getInt(i);
+      case Types.DOUBLE:
+        return rs.getDouble(i);
+      case Types.FLOAT:
+        return rs.getFloat(i);
+      case Types.BIGINT:
+        return rs.getLong(i);
+      case Types.BOOLEAN:
+        return rs.getBoolean(i);
+      case Types.BLOB:
+      case Types.BINARY:
+      case Types.VARBINARY:
+      case Types.LONGVARBINARY:
+        return rs.getBytes(i);
+      default:
+        return rs.getObject(i);
+    }
+  }
 }
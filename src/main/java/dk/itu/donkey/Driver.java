@@ -6,10 +6,18 @@ package dk.itu.donkey;
 // General utilities
 import java.util.Properties;
 
+// IO utilities
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+
+// Network utilities
+import java.net.URLEncoder;
+
 // SQL utilities
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 // SQL grammars
 import dk.itu.donkey.grammar.MySqlGrammar;
@@ -37,8 +45,22 @@ public enum Driver {
    * user     - The user to connect as.
    * password - The password of the user.
    * url      - The URL to connect to. Default: localhost:3306
+   *
+   * rewrite_batched_statements - Rewrite batches into multi-row statements.
+   *                              Default: true
+   * cache_prep_stmts           - Cache prepared statements. Default: true
+   * prep_stmt_cache_size       - Number of statements to cache. Default: 250
+   * prep_stmt_cache_sql_limit  - Max length of cached SQL. Default: 2048
+   * use_local_session_state    - Track session state locally. Default: true
+   * use_server_prep_stmts      - Prepare statements on the server.
+   * default_fetch_size         - Rows to fetch per round trip.
    * </pre>
    *
+   * <p>
+   * The tuning properties are passed on to Connector/J as URL parameters.
+   * Server-side prepared statements are left off by default as Donkey opens
+   * a connection per statement and would prepare every statement twice.
+   *
    * @see dk.itu.donkey.grammar.MySqlGrammar
    * @see <a href="http://bit.ly/11StjtX">Maven Repository - MySQL</a>
    */
@@ -74,7 +96,8 @@ public enum Driver {
       String password = p.getProperty("password");
       String url = p.getProperty("url", "localhost:3306");
 
-      connectionUrl = String.format("mysql://%s/%s", url, database);
+      connectionUrl = String.format("mysql://%s/%s", url, database)
+        + Driver.parameters(p, Driver.MYSQL_PARAMETERS);
 
       return DriverManager.getConnection(
         "jdbc:" + connectionUrl, user, password
@@ -93,8 +116,20 @@ public enum Driver {
    * user     - The user to connect as.
    * password - The password of the user.
    * url      - The URL to connect to. Default: localhost:5432
+   *
+   * rewrite_batched_inserts  - Rewrite batched inserts into multi-row
+   *                            inserts. Default: true
+   * prepare_threshold        - Executions before using server-side prepared
+   *                            statements.
+   * prepared_statement_cache - Number of statements to cache.
+   * default_row_fetch_size   - Rows to fetch per round trip.
+   * binary_transfer          - Use the binary format where possible.
    * </pre>
    *
+   * <p>
+   * The tuning properties are passed on to the PostgreSQL driver as URL
+   * parameters. Properties without a default are left to the driver.
+   *
    * @see dk.itu.donkey.grammar.PostgreSqlGrammar
    * @see <a href="http://bit.ly/11Un3Ro">Maven Repository - PostgreSQL</a>
    */
@@ -130,7 +165,8 @@ public enum Driver {
       String password = p.getProperty("password");
       String url = p.getProperty("url", "localhost:5432");
 
-      connectionUrl = String.format("postgresql://%s/%s", url, database);
+      connectionUrl = String.format("postgresql://%s/%s", url, database)
+        + Driver.parameters(p, Driver.POSTGRESQL_PARAMETERS);
 
       return DriverManager.getConnection(
         "jdbc:" + connectionUrl, user, password
@@ -145,10 +181,47 @@ public enum Driver {
    * Available connection properties:
    *
    * <pre>
-   * database - The name of the database to connect to. Required.
+   * database     - The name of the database to connect to. Required.
+   * file         - The file name of the database. Default: [database].db
+   * directory    - The directory of the database file.
+   * journal_mode - The journal mode to use. Default: WAL
+   * synchronous  - How often to sync to disk. Default: NORMAL
+   * busy_timeout - Milliseconds to wait for a lock. Default: 5000
+   * temp_store   - Where to store temporary tables. Default: MEMORY
+   * cache_size   - Pages, or KiB if negative, of the page cache.
+   * mmap_size    - Bytes of the database file to memory-map.
+   * write_queue  - Funnel writes through a single writer. Default: false
+   * write_batch  - The maximum number of writes per commit. Default: 256
+   * read_pool    - The number of read-only connections to keep. Default: 0
+   * read_only    - Open the connection as read-only. Default: false
    * </pre>
    *
+   * <p>
+   * Besides a name, the database can be given as ":memory:" for a database
+   * that lives entirely in memory, or as a URI such as
+   * "file::memory:?cache=shared" which is passed on to SQLite as-is. As
+   * Donkey opens a connection per statement, a ":memory:" database is backed
+   * by a shared-cache in-memory database that lives until the
+   * {@link Database} is closed.
+   *
+   * <p>
+   * The tuning properties are passed on to SQLite as pragmas which are applied
+   * by the JDBC driver as part of opening each connection. In WAL mode, readers
+   * don't block the writer and the writer doesn't block readers, and the
+   * NORMAL sync level is safe from corruption in WAL mode while only syncing
+   * on checkpoints.
+   *
+   * <p>
+   * With the write queue enabled, all writes are executed by a single writer
+   * thread that commits the writes of concurrent callers together. With a
+   * reader pool, reads are executed on a set of read-only connections that
+   * don't contend with the writer.
+   *
+   * @see WriteQueue
+   * @see ReaderPool
    * @see dk.itu.donkey.grammar.SqliteGrammar
+   * @see <a href="https://sqlite.org/pragma.html">SQLite - Pragma
+   *      statements</a>
    * @see <a href="http://bit.ly/1xzBsvg">Maven Repository - SQLite</a>
    */
   SQLITE {
@@ -179,19 +252,161 @@ public enum Driver {
         throw new IllegalArgumentException("A database is required");
       }
 
-      connectionUrl = String.format("sqlite:%s.db", database);
+      connectionUrl = "sqlite:" + Driver.sqliteDatabase(p);
 
       Properties connectionProps = new Properties();
 
       // Enable foreign key support.
       connectionProps.setProperty("foreign_keys", "true");
 
-      return DriverManager.getConnection(
+      // Apply the tuning pragmas, falling back to their defaults.
+      for (String[] pragma: Driver.SQLITE_PRAGMAS) {
+        String value = p.getProperty(pragma[0], pragma[1]);
+
+        if (value != null) {
+          connectionProps.setProperty(pragma[0], value);
+        }
+      }
+
+      boolean readOnly = Boolean.parseBoolean(p.getProperty("read_only"));
+
+      // Open the database as read-only, i.e. SQLITE_OPEN_READONLY.
+      if (readOnly) {
+        connectionProps.setProperty("open_mode", "1");
+      }
+
+      Connection connection = DriverManager.getConnection(
         "jdbc:" + connectionUrl, connectionProps
       );
+
+      // Also refuse any writes at the query level.
+      if (readOnly) {
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("pragma query_only = true");
+        }
+      }
+
+      return connection;
     }
   };
 
+  /**
+   * The tuning parameters of MySQL connections, each in the format
+   * {property, parameter, default}. A default of null leaves the parameter
+   * unset.
+   */
+  private static final String[][] MYSQL_PARAMETERS = {
+    {"rewrite_batched_statements", "rewriteBatchedStatements", "true"},
+    {"cache_prep_stmts", "cachePrepStmts", "true"},
+    {"prep_stmt_cache_size", "prepStmtCacheSize", "250"},
+    {"prep_stmt_cache_sql_limit", "prepStmtCacheSqlLimit", "2048"},
+    {"use_local_session_state", "useLocalSessionState", "true"},
+    {"use_server_prep_stmts", "useServerPrepStmts", null},
+    {"default_fetch_size", "defaultFetchSize", null}
+  };
+
+  /**
+   * The tuning parameters of PostgreSQL connections, each in the format
+   * {property, parameter, default}. A default of null leaves the parameter
+   * unset.
+   */
+  private static final String[][] POSTGRESQL_PARAMETERS = {
+    {"rewrite_batched_inserts", "reWriteBatchedInserts", "true"},
+    {"prepare_threshold", "prepareThreshold", null},
+    {"prepared_statement_cache", "preparedStatementCacheQueries", null},
+    {"default_row_fetch_size", "defaultRowFetchSize", null},
+    {"binary_transfer", "binaryTransfer", null}
+  };
+
+  /**
+   * The tuning pragmas of SQLite connections, each in the format
+   * {pragma, default}. A default of null leaves the pragma unset.
+   */
+  private static final String[][] SQLITE_PRAGMAS = {
+    {"journal_mode", "WAL"},
+    {"synchronous", "NORMAL"},
+    {"busy_timeout", "5000"},
+    {"temp_store", "MEMORY"},
+    {"cache_size", null},
+    {"mmap_size", null}
+  };
+
+  /**
+   * Build the URL parameters of a connection from its properties.
+   *
+   * @param p           Database connection properties.
+   * @param parameters  The tuning parameters of the driver, each in the format
+   *                    {property, parameter, default}.
+   * @return            The URL parameters, e.g. "?a=1&amp;b=2", or an empty
+   *                    string if none.
+   */
+  static String parameters(final Properties p, final String[][] parameters) {
+    StringBuilder url = new StringBuilder();
+
+    for (String[] parameter: parameters) {
+      String value = p.getProperty(parameter[0], parameter[2]);
+
+      if (value == null) {
+        continue;
+      }
+
+      try {
+        url
+          .append((url.length() == 0) ? '?' : '&')
+          .append(parameter[1])
+          .append('=')
+          .append(URLEncoder.encode(value, "UTF-8"));
+      }
+      catch (UnsupportedEncodingException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+
+    return url.toString();
+  }
+
+  /**
+   * Get the file name or URI of a SQLite database.
+   *
+   * @param p Database connection properties.
+   * @return  The file name or URI of the database.
+   */
+  static String sqliteDatabase(final Properties p) {
+    String database = p.getProperty("database");
+
+    // In-memory databases and URIs are passed on as-is.
+    if (database.equals(":memory:") || database.startsWith("file:")) {
+      return database;
+    }
+
+    String file = p.getProperty("file", database + ".db");
+    String directory = p.getProperty("directory");
+
+    if (directory == null) {
+      return file;
+    }
+
+    return new File(directory, file).getPath();
+  }
+
+  /**
+   * Check if a SQLite database lives in memory.
+   *
+   * @param p Database connection properties.
+   * @return  Whether or not the database lives in memory.
+   */
+  static boolean isSqliteMemory(final Properties p) {
+    String database = p.getProperty("database");
+
+    if (database == null) {
+      return false;
+    }
+
+    return database.equals(":memory:")
+        || database.startsWith("file::memory:")
+        || (database.startsWith("file:") && database.contains("mode=memory"));
+  }
+
   /**
    * Initialize the SQL grammar for a database driver.
    *
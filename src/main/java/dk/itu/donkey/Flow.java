@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+/**
+ * The Flow class holds the interfaces used for streaming query results with
+ * backpressure.
+ *
+ * <p>
+ * The interfaces mirror those of <code>java.util.concurrent.Flow</code>, and
+ * thereby the Reactive Streams specification, which is not available on the
+ * Java versions supported by Donkey. Subscribers written against them can be
+ * adapted to either by simple delegation.
+ *
+ * @see <a href="http://www.reactive-streams.org/">Reactive Streams</a>
+ *
+ * @since 1.1.0 Streaming query results.
+ */
+public final class Flow {
+  /**
+   * Don't allow instantiating the class.
+   */
+  private Flow() {
+    super();
+  }
+
+  /**
+   * A producer of items that are received by subscribers, each at their own
+   * pace.
+   *
+   * @param <T> The type of item.
+   */
+  @FunctionalInterface
+  public interface Publisher<T> {
+    /**
+     * Add a subscriber to the publisher.
+     *
+     * <p>
+     * The publisher calls {@link Subscriber#onSubscribe(Subscription)} on the
+     * subscriber, after which no items are sent until requested.
+     *
+     * @param subscriber The subscriber to add.
+     */
+    void subscribe(Subscriber<? super T> subscriber);
+  }
+
+  /**
+   * A receiver of items from a publisher.
+   *
+   * <p>
+   * Signals are sent to a subscriber one at a time and never concurrently.
+   *
+   * @param <T> The type of item.
+   */
+  public interface Subscriber<T> {
+    /**
+     * Receive the subscription to a publisher. No other signals are sent
+     * before this one.
+     *
+     * @param subscription The subscription.
+     */
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * Receive the next item of the subscription.
+     *
+     * @param item The item.
+     */
+    void onNext(T item);
+
+    /**
+     * Receive an error that terminated the subscription.
+     *
+     * @param throwable The error.
+     */
+    void onError(Throwable throwable);
+
+    /**
+     * Receive the completion of the subscription.
+     */
+    void onComplete();
+  }
+
+  /**
+   * The link between a publisher and one of its subscribers.
+   */
+  public interface Subscription {
+    /**
+     * Request a number of additional items. Requests add up; a total of
+     * {@link Long#MAX_VALUE} or more is treated as unbounded.
+     *
+     * @param n The number of items to request; must be positive.
+     */
+    void request(long n);
+
+    /**
+     * Stop receiving items. Any resources held by the subscription are
+     * eventually released.
+     */
+    void cancel();
+  }
+}
@@ -6,6 +6,7 @@ package dk.itu.donkey;
 // General utilities
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * The Grammar class defines methods for building the individual clauses of and
@@ -60,7 +61,17 @@ public abstract class Grammar {
   private List<String> columns = new ArrayList<>();
 
   /**
-   * List of formatted values.
+   * List of values of subqueries in the selected columns.
+   */
+  private List<Object> columnValues = new ArrayList<>();
+
+  /**
+   * List of values of a subquery used as the table.
+   */
+  private List<Object> tableValues = new ArrayList<>();
+
+  /**
+   * List of raw values.
    *
    * <p>
    * This is used in the following clauses:
@@ -70,12 +81,24 @@ public abstract class Grammar {
    * <li>update test set x = [value1], y = [value2]</li>
    * </ul>
    */
-  private List<String> values = new ArrayList<>();
+  private List<Object> rawValues = new ArrayList<>();
 
   /**
-   * List of raw values.
+   * List of formatted increments.
+   *
+   * <p>
+   * This is used in the following clauses:
+   *
+   * <ul>
+   * <li>update test set [x = x + ?], [y = y + ?]</li>
+   * </ul>
    */
-  private List<Object> rawValues = new ArrayList<>();
+  private List<String> increments = new ArrayList<>();
+
+  /**
+   * List of increment values.
+   */
+  private List<Object> incrementValues = new ArrayList<>();
 
   /**
    * List of formatted joins.
@@ -120,13 +143,66 @@ public abstract class Grammar {
    */
   private List<String> orders = new ArrayList<>();
 
+  /**
+   * List of formatted groups.
+   *
+   * <p>
+   * This is used in the following clauses:
+   *
+   * <ul>
+   * <li>select [...] group by [column1], [column2], [...]</li>
+   * </ul>
+   */
+  private List<String> groups = new ArrayList<>();
+
+  /**
+   * List of formatted havings.
+   *
+   * <p>
+   * This is used in the following clauses:
+   *
+   * <ul>
+   * <li>select [...] having [count(*) &gt; x] [or sum(col) &lt; y], [...]</li>
+   * </ul>
+   */
+  private List<String> havings = new ArrayList<>();
+
+  /**
+   * List of having values.
+   */
+  private List<Object> havingValues = new ArrayList<>();
+
   /**
    * List of formatted foreign keys.
    */
   private List<String> foreignKeys = new ArrayList<>();
 
   /**
-   * Formatted result limit.
+   * List of formatted unique keys.
+   */
+  private List<String> uniqueKeys = new ArrayList<>();
+
+  /**
+   * The arguments of the clauses added so far, excluding values, which make
+   * up the shape of the statement.
+   *
+   * <p>
+   * Clauses are formatted from their arguments alone, so grammars to which
+   * the same clauses have been added with the same arguments compile to the
+   * same SQL. The arguments are mostly string literals whose hash codes are
+   * cached and which compare equal by reference, which makes them much
+   * cheaper to compare than the formatted clauses.
+   */
+  private List<Object> shape = new ArrayList<>();
+
+  /**
+   * The hash code of the shape, kept up to date as clauses are added so that
+   * looking up the shape doesn't have to compute it.
+   */
+  private int shapeHash = 1;
+
+  /**
+   * Result limit, or 0 if no limit has been set.
    *
    * <p>
    * This is used in the following clauses:
@@ -135,10 +211,10 @@ public abstract class Grammar {
    * <li>select [...] [limit 100]</li>
    * </ul>
    */
-  private String limit = "";
+  private int limit;
 
   /**
-   * Formatted result offset.
+   * Result offset, or 0 if no offset has been set.
    *
    * <p>
    * This is used in the following clauses:
@@ -147,7 +223,16 @@ public abstract class Grammar {
    * <li>select [...] [offset 100]</li>
    * </ul>
    */
-  private String offset = "";
+  private int offset;
+
+  /**
+   * Buffer used for compiling statements.
+   *
+   * <p>
+   * The buffer is reused across compilations so that compiling a statement
+   * only allocates the resulting string.
+   */
+  private final StringBuilder sql = new StringBuilder(256);
 
   /**
    * Build a formatted table clause.
@@ -171,6 +256,37 @@ public abstract class Grammar {
     this.table = this.buildTable(table);
   }
 
+  /**
+   * Build a formatted subquery clause.
+   *
+   * <p>
+   * <code>("select ...", "alias")</code> becomes <code>"(select ...) as
+   * alias"</code>
+   *
+   * @param sql   The compiled SQL of the subquery.
+   * @param alias The alias of the subquery.
+   * @return      The formatted subquery.
+   */
+  protected final String buildSubquery(final String sql, final String alias) {
+    return "(" + sql + ") as " + alias.trim();
+  }
+
+  /**
+   * Add a subquery to the grammar as the table to select from.
+   *
+   * @param sql     The compiled SQL of the subquery.
+   * @param values  The values of the subquery.
+   * @param alias   The alias of the subquery.
+   */
+  public final void addSubqueryTable(
+    final String sql,
+    final List<Object> values,
+    final String alias
+  ) {
+    this.table = this.buildSubquery(sql, alias);
+    this.tableValues = new ArrayList<>(values);
+  }
+
   /**
    * Build a formatted column clause.
    *
@@ -203,9 +319,27 @@ public abstract class Grammar {
    * @param column The column to add.
    */
   public final void addColumn(final String column) {
+    this.trace("column", column);
     this.columns.add(this.buildColumn(column));
   }
 
+  /**
+   * Add a subquery to the grammar as a selected column.
+   *
+   * @param sql     The compiled SQL of the subquery.
+   * @param values  The values of the subquery.
+   * @param alias   The alias of the column.
+   */
+  public final void addSubqueryColumn(
+    final String sql,
+    final List<Object> values,
+    final String alias
+  ) {
+    this.trace("subquery column", sql, alias);
+    this.columns.add(this.buildSubquery(sql, alias));
+    this.columnValues.addAll(values);
+  }
+
   /**
    * Build a formatted value clause.
    *
@@ -239,10 +373,9 @@ public abstract class Grammar {
    * @param value The value to add.
    */
   public final void addValue(final Object value) {
-    // Store the original value for later access.
+    // Store the original value for later access. The formatted value is always
+    // the same and is therefore not stored but built during compilation.
     this.rawValues.add(value);
-
-    this.values.add(this.buildValue(value));
   }
 
   /**
@@ -256,7 +389,7 @@ public abstract class Grammar {
    * @return        The formatted set clause.
    */
   protected final String buildSet(final String column, final String value) {
-    return String.format("%s = %s", column, value);
+    return column + " = " + value;
   }
 
   /**
@@ -274,14 +407,57 @@ public abstract class Grammar {
     final List<String> columns,
     final List<String> values
   ) {
-    List<String> sets = new ArrayList<>();
+    if (columns.isEmpty()) {
+      return "";
+    }
+
+    StringBuilder sets = new StringBuilder("set ");
     int length = columns.size();
 
     for (int i = 0; i < length; i++) {
-      sets.add(this.buildSet(columns.get(i), values.get(i)));
+      if (i > 0) {
+        sets.append(", ");
+      }
+
+      sets.append(columns.get(i)).append(" = ").append(values.get(i));
     }
 
-    return (!sets.isEmpty()) ? "set " + String.join(", ", sets) : "";
+    return sets.toString();
+  }
+
+  /**
+   * Build a formatted increment clause.
+   *
+   * <p>
+   * <code>"col"</code> becomes <code>"col = col + ?"</code>
+   *
+   * @param column  The column to increment.
+   * @param amount  The amount to increment the column by.
+   * @return        The formatted increment clause.
+   */
+  protected final String buildIncrement(
+    final String column,
+    final Number amount
+  ) {
+    String formatted = this.buildColumn(column);
+
+    return this.buildSet(
+      formatted, formatted + " + " + this.buildValue(amount)
+    );
+  }
+
+  /**
+   * Add an increment clause to the grammar.
+   *
+   * @param column  The column to increment.
+   * @param amount  The amount to increment the column by; may be negative.
+   *
+   * @since 1.1.0 Counter caches.
+   */
+  public final void addIncrement(final String column, final Number amount) {
+    this.trace("increment", column);
+    this.increments.add(this.buildIncrement(column, amount));
+    this.incrementValues.add(amount);
   }
 
   /**
@@ -301,13 +477,17 @@ public abstract class Grammar {
     final String operator,
     final String foreignColumn
   ) {
-    return String.format("%s join %s on %s %s %s",
-      type.trim(),
-      this.buildTable(foreignTable),
-      this.buildColumn(localColumn),
-      operator.trim(),
-      this.buildColumn(foreignColumn)
-    );
+    return new StringBuilder()
+      .append(type.trim())
+      .append(" join ")
+      .append(this.buildTable(foreignTable))
+      .append(" on ")
+      .append(this.buildColumn(localColumn))
+      .append(' ')
+      .append(operator.trim())
+      .append(' ')
+      .append(this.buildColumn(foreignColumn))
+      .toString();
   }
 
   /**
@@ -336,6 +516,9 @@ public abstract class Grammar {
     final String operator,
     final String foreignColumn
   ) {
+    this.trace(
+      "join", type, foreignTable, localColumn, operator, foreignColumn
+    );
     this.joins.add(
       this.buildJoin(type, foreignTable, localColumn, operator, foreignColumn)
     );
@@ -362,13 +545,33 @@ public abstract class Grammar {
     // Store the original value for later access.
     this.whereValues.add(value);
 
-    return String.format(
-      "%s %s %s %s",
-      comparator.trim(),
-      this.buildColumn(column),
-      operator.trim(),
-      this.buildValue(value)
-    );
+    return this.buildCondition(column, operator, value, comparator);
+  }
+
+  /**
+   * Build a formatted condition of a where or having clause.
+   *
+   * @param column      The column of the condition.
+   * @param operator    The operator of the condition.
+   * @param value       The value of the condition.
+   * @param comparator  The comparator to use.
+   * @return            The formatted condition.
+   */
+  private String buildCondition(
+    final String column,
+    final String operator,
+    final Object value,
+    final String comparator
+  ) {
+    return new StringBuilder()
+      .append(comparator.trim())
+      .append(' ')
+      .append(this.buildColumn(column))
+      .append(' ')
+      .append(operator.trim())
+      .append(' ')
+      .append(this.buildValue(value))
+      .toString();
   }
 
   /**
@@ -383,13 +586,45 @@ public abstract class Grammar {
    */
   protected final String buildWheres(final List<String> wheres) {
     if (!wheres.isEmpty()) {
-      return "where " + String.join(" ", wheres).replaceAll("^and |^or ", "");
+      StringBuilder sql = new StringBuilder("where");
+      this.appendWheres(sql, wheres);
+      return sql.toString();
     }
     else {
       return "";
     }
   }
 
+  /**
+   * Append a list of formatted where clauses to a buffer.
+   *
+   * <p>
+   * The comparator of the first where clause is skipped as there's nothing
+   * for it to compare against. Each where clause is preceded by a space.
+   *
+   * @param sql     The buffer to append to.
+   * @param wheres  The formatted where clauses.
+   */
+  private void appendWheres(
+    final StringBuilder sql,
+    final List<String> wheres
+  ) {
+    int length = wheres.size();
+
+    for (int i = 0; i < length; i++) {
+      String where = wheres.get(i);
+
+      sql.append(' ');
+
+      if (i == 0) {
+        sql.append(where, where.indexOf(' ') + 1, where.length());
+      }
+      else {
+        sql.append(where);
+      }
+    }
+  }
+
   /**
    * Add a where clause to the grammar.
    *
@@ -404,9 +639,258 @@ public abstract class Grammar {
     final Object value,
     final String comparator
   ) {
+    this.trace("where", column, operator, comparator);
     this.wheres.add(this.buildWhere(column, operator, value, comparator));
   }
 
+  /**
+   * Add a where clause comparing two columns to the grammar, e.g. to
+   * correlate a subquery with its outer query.
+   *
+   * <p>
+   * <code>("col1", "=", "col2", "and")</code> becomes <code>"and col1 =
+   * col2"</code>
+   *
+   * @param column      The column of the where clause.
+   * @param operator    The operator of the where clause.
+   * @param other       The column to compare against.
+   * @param comparator  The comparator to use.
+   */
+  public final void addWhereColumn(
+    final String column,
+    final String operator,
+    final String other,
+    final String comparator
+  ) {
+    this.trace("where column", column, operator, other, comparator);
+    this.wheres.add(new StringBuilder()
+      .append(comparator.trim())
+      .append(' ')
+      .append(this.buildColumn(column))
+      .append(' ')
+      .append(operator.trim())
+      .append(' ')
+      .append(this.buildColumn(other))
+      .toString()
+    );
+  }
+
+  /**
+   * Add a where clause comparing a column to the result of a subquery to the
+   * grammar.
+   *
+   * <p>
+   * <code>("col", "in", "select ...", [...], "and")</code> becomes
+   * <code>"and col in (select ...)"</code>
+   *
+   * @param column      The column of the where clause.
+   * @param operator    The operator of the where clause.
+   * @param sql         The compiled SQL of the subquery.
+   * @param values      The values of the subquery.
+   * @param comparator  The comparator to use.
+   */
+  public final void addWhereSubquery(
+    final String column,
+    final String operator,
+    final String sql,
+    final List<Object> values,
+    final String comparator
+  ) {
+    this.trace("where subquery", column, operator, sql, comparator);
+    this.whereValues.addAll(values);
+
+    this.wheres.add(new StringBuilder()
+      .append(comparator.trim())
+      .append(' ')
+      .append(this.buildColumn(column))
+      .append(' ')
+      .append(operator.trim())
+      .append(" (")
+      .append(sql)
+      .append(')')
+      .toString()
+    );
+  }
+
+  /**
+   * Add a where in clause to the grammar.
+   *
+   * <p>
+   * The list of values is padded to the next power of two by repeating its
+   * last value, so that lists of similar sizes share the same SQL, e.g.
+   * <code>("col", [1, 2, 3], false, "and")</code> becomes <code>"and col in
+   * (?, ?, ?, ?)"</code> with the values <code>[1, 2, 3, 3]</code>. This keeps
+   * the number of distinct statements, and thereby the strain on statement
+   * caches, logarithmic in the size of the lists. An empty list matches no
+   * rows, or all rows if negated.
+   *
+   * @param column      The column of the where clause.
+   * @param values      The values to look for.
+   * @param not         Whether or not to negate the clause.
+   * @param comparator  The comparator to use.
+   */
+  public final void addWhereIn(
+    final String column,
+    final List<?> values,
+    final boolean not,
+    final String comparator
+  ) {
+    int size = Grammar.bucket(values.size());
+
+    this.trace("where in", column, not, size, comparator);
+
+    StringBuilder where = new StringBuilder()
+      .append(comparator.trim())
+      .append(' ');
+
+    if (values.isEmpty()) {
+      this.wheres.add(where.append(not ? "1 = 1" : "1 = 0").toString());
+      return;
+    }
+
+    where
+      .append(this.buildColumn(column))
+      .append(not ? " not in (" : " in (");
+
+    for (int i = 0; i < size; i++) {
+      Object value = values.get(Math.min(i, values.size() - 1));
+
+      if (i > 0) {
+        where.append(", ");
+      }
+
+      where.append(this.buildValue(value));
+      this.whereValues.add(value);
+    }
+
+    this.wheres.add(where.append(')').toString());
+  }
+
+  /**
+   * Get the bucket size of a list of values, i.e. the smallest power of two
+   * that holds the list.
+   *
+   * @param size  The size of the list.
+   * @return      The bucket size.
+   */
+  static int bucket(final int size) {
+    return (size <= 1) ? size : Integer.highestOneBit(size - 1) << 1;
+  }
+
+  /**
+   * Add a where between clause to the grammar.
+   *
+   * <p>
+   * <code>("col", 1, 10, false, "and")</code> becomes <code>"and col between
+   * ? and ?"</code>
+   *
+   * @param column      The column of the where clause.
+   * @param low         The lower bound, inclusive.
+   * @param high        The upper bound, inclusive.
+   * @param not         Whether or not to negate the clause.
+   * @param comparator  The comparator to use.
+   */
+  public final void addWhereBetween(
+    final String column,
+    final Object low,
+    final Object high,
+    final boolean not,
+    final String comparator
+  ) {
+    this.trace("where between", column, not, comparator);
+    this.whereValues.add(low);
+    this.whereValues.add(high);
+
+    this.wheres.add(new StringBuilder()
+      .append(comparator.trim())
+      .append(' ')
+      .append(this.buildColumn(column))
+      .append(not ? " not between " : " between ")
+      .append(this.buildValue(low))
+      .append(" and ")
+      .append(this.buildValue(high))
+      .toString()
+    );
+  }
+
+  /**
+   * Add a where null clause to the grammar.
+   *
+   * <p>
+   * <code>("col", false, "and")</code> becomes <code>"and col is
+   * null"</code>
+   *
+   * @param column      The column of the where clause.
+   * @param not         Whether or not to negate the clause.
+   * @param comparator  The comparator to use.
+   */
+  public final void addWhereNull(
+    final String column,
+    final boolean not,
+    final String comparator
+  ) {
+    this.trace("where null", column, not, comparator);
+    this.wheres.add(new StringBuilder()
+      .append(comparator.trim())
+      .append(' ')
+      .append(this.buildColumn(column))
+      .append(not ? " is not null" : " is null")
+      .toString()
+    );
+  }
+
+  /**
+   * Add a where exists clause to the grammar.
+   *
+   * <p>
+   * <code>("select ...", [...], false, "and")</code> becomes <code>"and
+   * exists (select ...)"</code>
+   *
+   * @param sql         The compiled SQL of the subquery.
+   * @param values      The values of the subquery.
+   * @param not         Whether or not to negate the clause.
+   * @param comparator  The comparator to use.
+   */
+  public final void addWhereExists(
+    final String sql,
+    final List<Object> values,
+    final boolean not,
+    final String comparator
+  ) {
+    this.trace("where exists", sql, not, comparator);
+    this.whereValues.addAll(values);
+
+    this.wheres.add(new StringBuilder()
+      .append(comparator.trim())
+      .append(not ? " not exists (" : " exists (")
+      .append(sql)
+      .append(')')
+      .toString()
+    );
+  }
+
+  /**
+   * Wrap the where clauses added so far in parentheses so that any further
+   * where clauses apply to all of them.
+   *
+   * <p>
+   * <code>["and col1 = ?", "or col2 = ?"]</code> becomes <code>["and (col1 =
+   * ? or col2 = ?)"]</code>
+   */
+  public final void groupWheres() {
+    if (this.wheres.size() < 2) {
+      return;
+    }
+
+    this.trace("group wheres");
+
+    StringBuilder group = new StringBuilder();
+    this.appendWheres(group, this.wheres);
+
+    this.wheres.clear();
+    this.wheres.add("and (" + group.substring(1) + ")");
+  }
+
   /**
    * Build a formatted order by clause.
    *
@@ -421,11 +905,7 @@ public abstract class Grammar {
     final String column,
     final String direction
   ) {
-    return String.format(
-      "%s %s",
-      this.buildColumn(column),
-      direction.trim()
-    );
+    return this.buildColumn(column) + " " + direction.trim();
   }
 
   /**
@@ -454,9 +934,110 @@ public abstract class Grammar {
    * @param direction The direction fo the ordering.
    */
   public final void addOrder(final String column, final String direction) {
+    this.trace("order", column, direction);
     this.orders.add(this.buildOrder(column, direction));
   }
 
+  /**
+   * Remove all order by clauses from the grammar.
+   *
+   * @since 1.1.0 Keyset pagination.
+   */
+  public final void clearOrders() {
+    this.trace("clear orders");
+    this.orders.clear();
+  }
+
+  /**
+   * Build a formatted aggregate column clause.
+   *
+   * <p>
+   * <code>("count", "col", "total")</code> becomes <code>"count(col) as
+   * total"</code>
+   *
+   * @param function  The aggregate function.
+   * @param column    The column to aggregate.
+   * @param alias     The alias of the aggregate, or null for none.
+   * @return          The formatted aggregate column clause.
+   */
+  protected final String buildAggregate(
+    final String function,
+    final String column,
+    final String alias
+  ) {
+    String aggregate = function.trim() + "(" + this.buildColumn(column) + ")";
+
+    return (alias != null) ? aggregate + " as " + alias.trim() : aggregate;
+  }
+
+  /**
+   * Add an aggregate column to the grammar.
+   *
+   * @param function  The aggregate function.
+   * @param column    The column to aggregate.
+   * @param alias     The alias of the aggregate, or null for none.
+   */
+  public final void addAggregate(
+    final String function,
+    final String column,
+    final String alias
+  ) {
+    this.trace("aggregate", function, column, alias);
+    this.columns.add(this.buildAggregate(function, column, alias));
+  }
+
+  /**
+   * Build a list of formatted group by clauses.
+   *
+   * <p>
+   * <code>["col1", "col2"]</code> becomes <code>"group by col1, col2"</code>
+   *
+   * @param groups  The formatted group by clauses.
+   * @return        A comma-separated list of group by clauses.
+   */
+  protected final String buildGroups(final List<String> groups) {
+    if (!groups.isEmpty()) {
+      return "group by " + String.join(", ", groups);
+    }
+    else {
+      return "";
+    }
+  }
+
+  /**
+   * Add a group by clause to the grammar.
+   *
+   * @param column The column to group by.
+   */
+  public final void addGroup(final String column) {
+    this.trace("group", column);
+    this.groups.add(this.buildColumn(column));
+  }
+
+  /**
+   * Add a having clause to the grammar.
+   *
+   * @param column      The column or aggregate of the having clause.
+   * @param operator    The operator of the having clause.
+   * @param value       The value of the having clause.
+   * @param comparator  The comparator to use.
+   */
+  public final void addHaving(
+    final String column,
+    final String operator,
+    final Object value,
+    final String comparator
+  ) {
+    this.trace("having", column, operator, comparator);
+
+    // Store the original value for later access.
+    this.havingValues.add(value);
+
+    this.havings.add(
+      this.buildCondition(column, operator, value, comparator)
+    );
+  }
+
   /**
    * Build a formatted limit clause.
    *
@@ -476,7 +1057,7 @@ public abstract class Grammar {
    * @param limit The limit.
    */
   public final void addLimit(final int limit) {
-    this.limit = this.buildLimit(limit);
+    this.limit = Math.max(limit, 0);
   }
 
   /**
@@ -498,7 +1079,7 @@ public abstract class Grammar {
    * @param offset The offset.
    */
   public final void addOffset(final int offset) {
-    this.offset = this.buildOffset(offset);
+    this.offset = Math.max(offset, 0);
   }
 
   /**
@@ -522,7 +1103,7 @@ public abstract class Grammar {
   ) {
     String nullable = (required) ? "not null" : "null";
 
-    return String.format("%s %s(%s) %s", column, type, length, nullable);
+    return column + " " + type + "(" + length + ") " + nullable;
   }
 
   /**
@@ -543,7 +1124,7 @@ public abstract class Grammar {
   ) {
     String nullable = (required) ? "not null" : "null";
 
-    return String.format("%s %s %s", column, type, nullable);
+    return column + " " + type + " " + nullable;
   }
 
   /**
@@ -595,12 +1176,8 @@ public abstract class Grammar {
     final String foreignTable,
     final String foreignColumn
   ) {
-    return String.format(
-      "foreign key(%s) references %s(%s) on update cascade on delete cascade",
-      column,
-      foreignTable,
-      foreignColumn
-    );
+    return "foreign key(" + column + ") references " + foreignTable
+         + "(" + foreignColumn + ") on update cascade on delete cascade";
   }
 
   /**
@@ -635,6 +1212,36 @@ public abstract class Grammar {
     ));
   }
 
+  /**
+   * Build a formatted unique key clause.
+   *
+   * <p>
+   * <code>("col1", "col2")</code> becomes <code>"unique(col1, col2)"</code>
+   *
+   * @param columns The columns.
+   * @return        The formatted unique key clause.
+   *
+   * @since 1.1.0 Unique keys.
+   */
+  protected final String buildUniqueKey(final String... columns) {
+    return "unique(" + String.join(", ", columns) + ")";
+  }
+
+  /**
+   * Add a unique key to the grammar.
+   *
+   * @param columns The columns whose combined values must be unique.
+   *
+   * @since 1.1.0 Unique keys.
+   */
+  public final void addUniqueKey(final String... columns) {
+    if (columns.length == 0) {
+      throw new IllegalArgumentException("A unique key requires columns");
+    }
+
+    this.uniqueKeys.add(this.buildUniqueKey(columns));
+  }
+
   /**
    * Return the name of auto generated columns.
    *
@@ -667,34 +1274,180 @@ public abstract class Grammar {
    */
   public abstract void addAutoIncrement(final String column);
 
+  /**
+   * Return the data type of binary columns.
+   *
+   * <p>
+   * Binary columns are not part of the ANSI SQL standard and are not named
+   * consistently across the different {@link Driver}s. It's therefore left up
+   * to subclasses to implement it.
+   *
+   * @return The data type of binary columns.
+   *
+   * @since 1.1.0 Binary columns.
+   */
+  public abstract String binaryType();
+
+  /**
+   * Copy the state of the grammar into another grammar.
+   *
+   * <p>
+   * The grammars share no state afterwards, so clauses can be added to the
+   * copy without affecting the grammar it was copied from.
+   *
+   * @param copy  An empty grammar to copy into.
+   * @return      The copy, for chaining.
+   *
+   * @since 1.1.0 Prepared statements.
+   */
+  final Grammar copyInto(final Grammar copy) {
+    copy.table = this.table;
+    copy.columns.addAll(this.columns);
+    copy.columnValues.addAll(this.columnValues);
+    copy.tableValues.addAll(this.tableValues);
+    copy.rawValues.addAll(this.rawValues);
+    copy.increments.addAll(this.increments);
+    copy.incrementValues.addAll(this.incrementValues);
+    copy.joins.addAll(this.joins);
+    copy.wheres.addAll(this.wheres);
+    copy.whereValues.addAll(this.whereValues);
+    copy.orders.addAll(this.orders);
+    copy.groups.addAll(this.groups);
+    copy.havings.addAll(this.havings);
+    copy.havingValues.addAll(this.havingValues);
+    copy.foreignKeys.addAll(this.foreignKeys);
+    copy.uniqueKeys.addAll(this.uniqueKeys);
+    copy.shape.addAll(this.shape);
+    copy.shapeHash = this.shapeHash;
+    copy.limit = this.limit;
+    copy.offset = this.offset;
+
+    return copy;
+  }
+
+  /**
+   * Describe the shape of a statement based on the current state of the
+   * grammar.
+   *
+   * @param statement The type of statement, e.g. "select".
+   * @return          The shape of the statement.
+   */
+  final QueryShape shape(final String statement) {
+    return new QueryShape(
+      statement,
+      this.table,
+      this.shape,
+      this.shapeHash,
+      this.rawValues.size(),
+      this.limit,
+      this.offset
+    );
+  }
+
+  /**
+   * Record the arguments of a clause in the shape of the statement.
+   *
+   * @param arguments The name of the clause followed by its arguments,
+   *                  excluding values.
+   */
+  private void trace(final Object... arguments) {
+    // Hash the arguments the same way as the list of them would be hashed.
+    for (Object argument: arguments) {
+      this.shape.add(argument);
+      this.shapeHash = 31 * this.shapeHash + Objects.hashCode(argument);
+    }
+  }
+
+  /**
+   * Append a list of formatted clauses to the compilation buffer.
+   *
+   * @param clauses   The formatted clauses to append.
+   * @param separator The separator to put between clauses.
+   */
+  private void appendClauses(
+    final List<String> clauses,
+    final String separator
+  ) {
+    int length = clauses.size();
+
+    for (int i = 0; i < length; i++) {
+      if (i > 0) {
+        this.sql.append(separator);
+      }
+
+      this.sql.append(clauses.get(i));
+    }
+  }
+
+  /**
+   * Append a list of formatted where clauses to the compilation buffer.
+   */
+  private void appendWheres() {
+    if (!this.wheres.isEmpty()) {
+      this.sql.append(" where");
+      this.appendWheres(this.sql, this.wheres);
+    }
+  }
+
   /**
    * Compile a select statement based on the current state of the grammar.
    *
    * @return The full select statement.
    */
   public final String compileSelect() {
+    this.sql.setLength(0);
+    this.sql.append("select ");
+
     if (this.columns.isEmpty()) {
-      this.addColumn("*");
+      this.sql.append('*');
+    }
+    else {
+      this.appendClauses(this.columns, ", ");
+    }
+
+    this.sql.append(" from ").append(this.table);
+
+    if (!this.joins.isEmpty()) {
+      this.sql.append(' ');
+      this.appendClauses(this.joins, " ");
+    }
+
+    this.appendWheres();
+
+    if (!this.groups.isEmpty()) {
+      this.sql.append(" group by ");
+      this.appendClauses(this.groups, ", ");
+    }
+
+    if (!this.havings.isEmpty()) {
+      this.sql.append(" having");
+      this.appendWheres(this.sql, this.havings);
+    }
+
+    if (!this.orders.isEmpty()) {
+      this.sql.append(" order by ");
+      this.appendClauses(this.orders, ", ");
     }
 
     // Since `offset` requires `limit` to also be specified, add the largest
     // possible integer as the limit if it hasn't been set. This is strangely
     // enough the official advice:
     // http://dev.mysql.com/doc/refman/5.0/en/select.html
-    if (this.limit.isEmpty() && !this.offset.isEmpty()) {
-      this.addLimit(Integer.MAX_VALUE);
+    int limit = this.limit;
+
+    if (limit == 0 && this.offset > 0) {
+      limit = Integer.MAX_VALUE;
     }
 
-    return String.format(
-      "select %s from %s %s %s %s %s %s",
-      this.buildColumns(this.columns),
-      this.table,
-      this.buildJoins(this.joins),
-      this.buildWheres(this.wheres),
-      this.buildOrders(this.orders),
-      this.limit,
-      this.offset
-    ).trim().replaceAll(" {2,}", " ");
+    if (limit > 0) {
+      this.sql.append(" limit ").append(limit);
+    }
+
+    if (this.offset > 0) {
+      this.sql.append(" offset ").append(this.offset);
+    }
+
+    return this.sql.toString();
   }
 
   /**
@@ -703,7 +1456,28 @@ public abstract class Grammar {
    * @return List of values for the select statement.
    */
   public final List<Object> compileSelectValues() {
-    return this.whereValues;
+    if (
+      this.columnValues.isEmpty()
+      && this.tableValues.isEmpty()
+      && this.havingValues.isEmpty()
+    ) {
+      return this.whereValues;
+    }
+
+    // Merge the values in the order in which their clauses appear.
+    List<Object> values = new ArrayList<>(
+      this.columnValues.size()
+    + this.tableValues.size()
+    + this.whereValues.size()
+    + this.havingValues.size()
+    );
+
+    values.addAll(this.columnValues);
+    values.addAll(this.tableValues);
+    values.addAll(this.whereValues);
+    values.addAll(this.havingValues);
+
+    return values;
   }
 
   /**
@@ -712,12 +1486,58 @@ public abstract class Grammar {
    * @return The full insert statement.
    */
   public final String compileInsert() {
-    return String.format(
-      "insert into %s (%s) values (%s)",
-      this.table,
-      this.buildColumns(this.columns),
-      this.buildValues(this.values)
-    ).trim().replaceAll(" {2,}", " ");
+    this.sql.setLength(0);
+    this.sql.append("insert into ").append(this.table).append(" (");
+    this.appendClauses(this.columns, ", ");
+    this.sql.append(") values (");
+
+    int length = this.rawValues.size();
+
+    for (int i = 0; i < length; i++) {
+      if (i > 0) {
+        this.sql.append(", ");
+      }
+
+      this.sql.append(this.buildValue(this.rawValues.get(i)));
+    }
+
+    return this.sql.append(')').toString();
+  }
+
+  /**
+   * Compile an insert statement of several rows based on the columns of the
+   * grammar.
+   *
+   * <p>
+   * The values of the rows are not part of the grammar and must be supplied
+   * row by row in the order of the columns.
+   *
+   * @param rows  The number of rows to insert.
+   * @return      The full insert statement.
+   */
+  public final String compileInsert(final int rows) {
+    this.sql.setLength(0);
+    this.sql.append("insert into ").append(this.table).append(" (");
+    this.appendClauses(this.columns, ", ");
+    this.sql.append(") values ");
+
+    int length = this.columns.size();
+
+    for (int i = 0; i < rows; i++) {
+      this.sql.append((i == 0) ? "(" : ", (");
+
+      for (int j = 0; j < length; j++) {
+        if (j > 0) {
+          this.sql.append(", ");
+        }
+
+        this.sql.append("?");
+      }
+
+      this.sql.append(')');
+    }
+
+    return this.sql.toString();
   }
 
   /**
@@ -735,12 +1555,28 @@ public abstract class Grammar {
    * @return The full update statement.
    */
   public final String compileUpdate() {
-    return String.format(
-      "update %s %s %s",
-      this.table,
-      this.buildSets(this.columns, this.values),
-      this.buildWheres(this.wheres)
-    ).trim().replaceAll(" {2,}", " ");
+    this.sql.setLength(0);
+    this.sql.append("update ").append(this.table);
+
+    int length = this.columns.size();
+
+    for (int i = 0; i < length; i++) {
+      this.sql
+        .append((i == 0) ? " set " : ", ")
+        .append(this.columns.get(i))
+        .append(" = ")
+        .append(this.buildValue(this.rawValues.get(i)));
+    }
+
+    for (int i = 0; i < this.increments.size(); i++) {
+      this.sql
+        .append((length + i == 0) ? " set " : ", ")
+        .append(this.increments.get(i));
+    }
+
+    this.appendWheres();
+
+    return this.sql.toString();
   }
 
   /**
@@ -749,9 +1585,14 @@ public abstract class Grammar {
    * @return List of values for the update statement.
    */
   public final List<Object> compileUpdateValues() {
-    List<Object> updateValues = new ArrayList<>();
+    List<Object> updateValues = new ArrayList<>(
+      this.rawValues.size()
+    + this.incrementValues.size()
+    + this.whereValues.size()
+    );
 
     updateValues.addAll(this.rawValues);
+    updateValues.addAll(this.incrementValues);
     updateValues.addAll(this.whereValues);
 
     return updateValues;
@@ -763,11 +1604,11 @@ public abstract class Grammar {
    * @return The full delete statement.
    */
   public final String compileDelete() {
-    return String.format(
-      "delete from %s %s",
-      this.table,
-      this.buildWheres(this.wheres)
-    ).trim().replaceAll(" {2,}", " ");
+    this.sql.setLength(0);
+    this.sql.append("delete from ").append(this.table);
+    this.appendWheres();
+
+    return this.sql.toString();
   }
 
   /**
@@ -785,12 +1626,22 @@ public abstract class Grammar {
    * @return The full create statement.
    */
   public final String compileCreate() {
-    return String.format(
-      "create table if not exists %s (%s %s)",
-      this.table,
-      this.buildColumns(this.columns),
-      this.buildForeignKeys(this.foreignKeys)
-    ).trim().replaceAll(" {2,}", " ");
+    this.sql.setLength(0);
+    this.sql.append("create table if not exists ").append(this.table);
+    this.sql.append(" (");
+    this.appendClauses(this.columns, ", ");
+
+    if (!this.foreignKeys.isEmpty()) {
+      this.sql.append(", ");
+      this.appendClauses(this.foreignKeys, ", ");
+    }
+
+    if (!this.uniqueKeys.isEmpty()) {
+      this.sql.append(", ");
+      this.appendClauses(this.uniqueKeys, ", ");
+    }
+
+    return this.sql.append(')').toString();
   }
 
   /**
@@ -799,9 +1650,9 @@ public abstract class Grammar {
    * @return The full drop statement.
    */
   public final String compileDrop() {
-    return String.format(
-      "drop table if exists %s",
-      this.table
-    ).trim().replaceAll(" {2,}", " ");
+    this.sql.setLength(0);
+
+    return this.sql.append("drop table if exists ").append(this.table)
+      .toString();
   }
 }
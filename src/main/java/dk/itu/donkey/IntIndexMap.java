@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+/**
+ * The Int Index Map class maps positive integer keys, e.g. model IDs, to
+ * integer indices without boxing either of them.
+ *
+ * <p>
+ * Keys are stored in an open-addressing table with linear probing. A key of 0
+ * marks an empty slot and can therefore not be stored in the map.
+ *
+ * @since 1.1.0 Primitive-keyed de-duplication.
+ */
+final class IntIndexMap {
+  /**
+   * The keys of the map; 0 marks an empty slot.
+   */
+  private int[] keys;
+
+  /**
+   * The indices of the map, stored at the same slots as their keys.
+   */
+  private int[] indices;
+
+  /**
+   * The number of keys in the map.
+   */
+  private int size;
+
+  /**
+   * Initialize a map with room for a number of keys before it has to grow.
+   *
+   * @param expected The expected number of keys.
+   */
+  IntIndexMap(final int expected) {
+    int capacity = Integer.highestOneBit(Math.max(expected, 4) * 2 - 1) << 1;
+
+    this.keys = new int[capacity];
+    this.indices = new int[capacity];
+  }
+
+  /**
+   * Get the slot at which a key is stored or should be stored.
+   *
+   * @param keys  The keys to look in.
+   * @param key   The key to look for.
+   * @return      The slot of the key.
+   */
+  private static int slot(final int[] keys, final int key) {
+    int mask = keys.length - 1;
+
+    // Spread the bits of the key as IDs are usually sequential.
+    int slot = (key * 0x9E3779B9) & mask;
+
+    while (keys[slot] != 0 && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+
+    return slot;
+  }
+
+  /**
+   * Map a key to an index unless the key has already been mapped.
+   *
+   * @param key   The key to map; must not be 0.
+   * @param index The index to map the key to.
+   * @return      The index that the key was already mapped to, or -1 if the
+   *              key was mapped to the given index.
+   */
+  int putIfAbsent(final int key, final int index) {
+    if (key == 0) {
+      throw new IllegalArgumentException("Key must not be 0");
+    }
+
+    int slot = IntIndexMap.slot(this.keys, key);
+
+    if (this.keys[slot] == key) {
+      return this.indices[slot];
+    }
+
+    this.keys[slot] = key;
+    this.indices[slot] = index;
+
+    // Keep the load factor at or below one half.
+    if (++this.size * 2 > this.keys.length) {
+      this.grow();
+    }
+
+    return -1;
+  }
+
+  /**
+   * Get the index that a key is mapped to.
+   *
+   * @param key The key to look up.
+   * @return    The index of the key, or -1 if not mapped.
+   */
+  int get(final int key) {
+    if (key == 0) {
+      return -1;
+    }
+
+    int slot = IntIndexMap.slot(this.keys, key);
+
+    return (this.keys[slot] == key) ? this.indices[slot] : -1;
+  }
+
+  /**
+   * Get the number of keys in the map.
+   *
+   * @return The number of keys in the map.
+   */
+  int size() {
+    return this.size;
+  }
+
+  /**
+   * Double the capacity of the map and rehash its keys.
+   */
+  private void grow() {
+    int[] keys = new int[this.keys.length * 2];
+    int[] indices = new int[this.indices.length * 2];
+
+    for (int i = 0; i < this.keys.length; i++) {
+      if (this.keys[i] != 0) {
+        int slot = IntIndexMap.slot(keys, this.keys[i]);
+
+        keys[slot] = this.keys[i];
+        indices[slot] = this.indices[i];
+      }
+    }
+
+    this.keys = keys;
+    this.indices = indices;
+  }
+}
@@ -0,0 +1,448 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Concurrency utilities
+import java.util.concurrent.ConcurrentHashMap;
+
+// Reflection utilities
+import java.lang.reflect.Field;
+
+/**
+ * The Load Plan class describes how to query and hydrate a {@link Model} along
+ * with all of its relations.
+ *
+ * <p>
+ * A load plan consists of the columns to select, the tables to join, and a
+ * tree of {@link Node}s that map the positions of the selected columns to the
+ * fields of each model. Load plans are computed once per model type by
+ * reflection and then reused by every {@link ModelQuery} of that type.
+ *
+ * @since 1.1.0 Precomputed load plans.
+ */
+final class LoadPlan {
+  /**
+   * Load plans mapped by the type of their root model.
+   */
+  private static final Map<Class<?>, LoadPlan> PLANS =
+    new ConcurrentHashMap<>();
+
+  /**
+   * The columns to select, in the format "table.column as table_column".
+   */
+  private final List<String> columns = new ArrayList<>();
+
+  /**
+   * The tables to join, each in the format {table, local, foreign}.
+   */
+  private final List<String[]> joins = new ArrayList<>();
+
+  /**
+   * The tables that are part of the query, either selected from or joined.
+   */
+  private final Set<String> joined = new HashSet<>();
+
+  /**
+   * The positions of the selected columns mapped by their aliases.
+   */
+  private final Map<String, Integer> positions = new HashMap<>();
+
+  /**
+   * Whether or not the plan joins lists of relations.
+   */
+  private boolean lists;
+
+  /**
+   * The root node of the plan.
+   */
+  private final Node root;
+
+  /**
+   * Get the load plan of a model type, computing it if needed.
+   *
+   * @param type  The type of model to get the load plan of.
+   * @return      The load plan of the model type.
+   */
+  static LoadPlan of(final Class<?> type) {
+    LoadPlan plan = LoadPlan.PLANS.get(type);
+
+    if (plan == null) {
+      plan = new LoadPlan(type);
+      LoadPlan.PLANS.putIfAbsent(type, plan);
+    }
+
+    return plan;
+  }
+
+  /**
+   * Compute the load plan of a model type.
+   *
+   * @param type The type of model to compute the load plan of.
+   */
+  private LoadPlan(final Class<?> type) {
+    this.addRelations(type, new HashSet<>());
+    this.root = new Node(this, type, null, new HashSet<>());
+  }
+
+  /**
+   * Recursively traverse a model and add its columns and relations to the
+   * plan.
+   *
+   * @param type    The model type to traverse.
+   * @param tables  The tables that have already been added to the plan.
+   */
+  private void addRelations(final Class<?> type, final Set<String> tables) {
+    Model outer = Model.instantiate(type);
+
+    // Remember that this model has already been added as a relation.
+    tables.add(outer.table());
+
+    if (this.joined.isEmpty()) {
+      this.joined.add(outer.table());
+    }
+
+    // Select the ID column of the model in the format "table_id".
+    this.addColumn(outer.table(), "id");
+
+    for (Field field: outer.getFields()) {
+      String fieldName = field.getName();
+      Class<?> fieldType = outer.getFieldType(field);
+
+      boolean isList = false;
+
+      // If the field being looked at is a list, get the generic type of the
+      // list.
+      if (List.class.isAssignableFrom(fieldType)) {
+        fieldType = Model.getGenericType(field);
+
+        // Remember that the field type was a list.
+        isList = true;
+      }
+
+      if (Model.class.isAssignableFrom(fieldType)) {
+        Model inner = Model.instantiate(fieldType);
+
+        // If the model hasn't already been added as a relation, join it into
+        // the query if it represents a single field, e.g. a comment belonging
+        // to a post, and look for further relations...
+        //
+        // Example:
+        // [...] from showtimes join movies on showtimes.movie = movies.id
+        if (!tables.contains(inner.table())) {
+          if (!isList) {
+            this.joins.add(new String[] {
+              inner.table(),
+              outer.table() + "." + fieldName,
+              inner.table() + ".id"
+            });
+
+            // Remember that this table has already been added as a relation.
+            tables.add(inner.table());
+            this.joined.add(inner.table());
+          }
+
+          // Look for further relations.
+          this.addRelations(fieldType, tables);
+        }
+        // ...otherwise, assume that the model is a relation of an already
+        // joined model. This will be the case in a two-way relation (either
+        // One-to-One or One-to-Many) and so a reverse join is performed if the
+        // field isn't a list, e.g. joining a single post with a list of
+        // comments.
+        //
+        // Example:
+        // [...] from showtimes join tickets on showtimes.id = tickets.showtime
+        //
+        // If the model has already been joined through another relation, the
+        // field closes a cycle, e.g. a ticket belonging to both a reservation
+        // and its showtime, which is left to the load plan nodes.
+        else if (!isList && this.joined.add(outer.table())) {
+          this.joins.add(new String[] {
+            outer.table(),
+            inner.table() + ".id",
+            outer.table() + "." + fieldName
+          });
+
+          this.lists = true;
+        }
+      }
+      else {
+        // Prefix all the columns of the model with its table name to ensure
+        // that non-unique columns can be differentiated if other data is
+        // joined in. I.e. people.name becomes people_name.
+        this.addColumn(outer.table(), fieldName.toLowerCase());
+      }
+    }
+  }
+
+  /**
+   * Add a column to select, aliased as "table_column".
+   *
+   * @param table   The table of the column.
+   * @param column  The column.
+   */
+  private void addColumn(final String table, final String column) {
+    String alias = table + "_" + column;
+
+    this.positions.putIfAbsent(alias, this.columns.size());
+    this.columns.add(table + "." + column + " as " + alias);
+  }
+
+  /**
+   * Get the position of a column in the result of the plan.
+   *
+   * @param table   The table of the column.
+   * @param column  The column.
+   * @return        The position of the column, or -1 if not selected.
+   */
+  private int position(final String table, final String column) {
+    Integer position = this.positions.get(table + "_" + column);
+
+    return (position != null) ? position : -1;
+  }
+
+  /**
+   * Add the columns and joins of the plan to a query.
+   *
+   * @param query The query to add the columns and joins to.
+   */
+  void apply(final Query query) {
+    for (String column: this.columns) {
+      query.select(column);
+    }
+
+    for (String[] join: this.joins) {
+      query.leftJoin(join[0], join[1], join[2]);
+    }
+  }
+
+  /**
+   * Check if the plan joins lists of relations, in which case a single model
+   * can span several rows of the result.
+   *
+   * @return Whether or not the plan joins lists of relations.
+   */
+  boolean joinsLists() {
+    return this.lists;
+  }
+
+  /**
+   * Get the root node of the plan.
+   *
+   * @return The root node of the plan.
+   */
+  Node root() {
+    return this.root;
+  }
+
+  /**
+   * The Node class describes how to hydrate a single type of model from the
+   * columns of a result and how to wire up its relations.
+   */
+  static final class Node {
+    /**
+     * The type of model.
+     */
+    private final Class<?> type;
+
+    /**
+     * The position of the ID column, or -1 if not selected.
+     */
+    private final int id;
+
+    /**
+     * The column fields of the model.
+     */
+    private final Field[] fields;
+
+    /**
+     * The positions of the column fields, or -1 if not selected.
+     */
+    private final int[] columns;
+
+    /**
+     * The relation fields of the model.
+     */
+    private final Field[] relations;
+
+    /**
+     * Whether or not each of the relation fields is a list.
+     */
+    private final boolean[] lists;
+
+    /**
+     * The nodes of the relation fields, or null if the field refers back to
+     * the model of the parent node.
+     */
+    private final Node[] nodes;
+
+    /**
+     * Compute the node of a model type.
+     *
+     * @param plan    The plan that the node is part of.
+     * @param type    The type of model.
+     * @param context The type of model of the parent node, if any.
+     * @param path    The types of model of all ancestor nodes.
+     */
+    private Node(
+      final LoadPlan plan,
+      final Class<?> type,
+      final Class<?> context,
+      final Set<Class<?>> path
+    ) {
+      Model model = Model.instantiate(type);
+
+      List<Field> fields = new ArrayList<>();
+      List<Integer> columns = new ArrayList<>();
+      List<Field> relations = new ArrayList<>();
+      List<Boolean> lists = new ArrayList<>();
+      List<Node> nodes = new ArrayList<>();
+
+      path.add(type);
+
+      for (Field field: model.getFields()) {
+        Class<?> fieldType = model.getFieldType(field);
+
+        boolean isList = false;
+
+        if (List.class.isAssignableFrom(fieldType)) {
+          fieldType = Model.getGenericType(field);
+          isList = true;
+        }
+
+        if (!Model.class.isAssignableFrom(fieldType)) {
+          fields.add(field);
+          columns.add(plan.position(
+            model.table(), field.getName().toLowerCase()
+          ));
+        }
+        // If the field is of the same type as the parent, it refers back to
+        // the parent. This avoids an infinite loop where two models both have
+        // fields of oneanother's type, e.g. a post with a list of comments and
+        // a comment that belongs to a post.
+        else if (context != null && fieldType == context) {
+          relations.add(field);
+          lists.add(isList);
+          nodes.add(null);
+        }
+        // Relations that lead back to any further ancestors are cycles that
+        // cannot be wired up from a single result and are left alone.
+        else if (!path.contains(fieldType)) {
+          relations.add(field);
+          lists.add(isList);
+          nodes.add(new Node(plan, fieldType, type, path));
+        }
+      }
+
+      path.remove(type);
+
+      this.type = type;
+      this.id = plan.position(model.table(), "id");
+      this.fields = fields.toArray(new Field[fields.size()]);
+      this.columns = new int[columns.size()];
+      this.relations = relations.toArray(new Field[relations.size()]);
+      this.lists = new boolean[lists.size()];
+      this.nodes = nodes.toArray(new Node[nodes.size()]);
+
+      for (int i = 0; i < this.columns.length; i++) {
+        this.columns[i] = columns.get(i);
+      }
+
+      for (int i = 0; i < this.lists.length; i++) {
+        this.lists[i] = lists.get(i);
+      }
+    }
+
+    /**
+     * Get the ID of the model in a row.
+     *
+     * @param row The row to read the ID from.
+     * @return    The ID of the model, or 0 if none.
+     */
+    int id(final Object[] row) {
+      if (this.id == -1 || row[this.id] == null) {
+        return 0;
+      }
+
+      return ((Number) row[this.id]).intValue();
+    }
+
+    /**
+     * Instantiate a model and set its column fields from a row.
+     *
+     * @param <T> The type of model to instantiate.
+     * @param row The row to read the columns from.
+     * @param id  The ID of the model.
+     * @return    The instantiated model.
+     */
+    <T extends Model> T instantiate(final Object[] row, final int id) {
+      T model = Model.instantiate(this.type);
+      model.id(id);
+
+      for (int i = 0; i < this.fields.length; i++) {
+        int column = this.columns[i];
+
+        if (column == -1 || row[column] == null) {
+          continue;
+        }
+
+        Field field = this.fields[i];
+
+        model.setField(field, model.parseIncomingFieldValue(
+          field, row[column]
+        ));
+      }
+
+      return model;
+    }
+
+    /**
+     * Get the number of relations of the model.
+     *
+     * @return The number of relations.
+     */
+    int relations() {
+      return this.relations.length;
+    }
+
+    /**
+     * Get a relation field of the model.
+     *
+     * @param relation  The index of the relation.
+     * @return          The relation field.
+     */
+    Field relation(final int relation) {
+      return this.relations[relation];
+    }
+
+    /**
+     * Check if a relation of the model is a list.
+     *
+     * @param relation  The index of the relation.
+     * @return          Whether or not the relation is a list.
+     */
+    boolean isList(final int relation) {
+      return this.lists[relation];
+    }
+
+    /**
+     * Get the node of a relation of the model.
+     *
+     * @param relation  The index of the relation.
+     * @return          The node of the relation, or null if the relation
+     *                  refers back to the parent.
+     */
+    Node node(final int relation) {
+      return this.nodes[relation];
+    }
+  }
+}
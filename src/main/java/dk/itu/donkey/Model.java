@@ -4,7 +4,12 @@
 package dk.itu.donkey;
 
 // General utilities
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 // Reflection utilities
 import java.lang.reflect.Field;
@@ -13,6 +18,10 @@ import java.lang.reflect.ParameterizedType;
 // SQL utilities
 import java.sql.SQLException;
 
+// Concurrency utilities
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * The Model class is an object-relational mapper that enables seamless and easy
  * persistance of data-models to any of the supported database systems.
@@ -29,6 +38,13 @@ import java.sql.SQLException;
  * @since 1.0.0 Initial release.
  */
 public abstract class Model {
+  /**
+   * The counter caches of each model type, each in the format {relation,
+   * counter} where the counter is a field of the related model.
+   */
+  private static final Map<Class<?>, List<Field[]>> COUNTERS =
+    new ConcurrentHashMap<>();
+
   /**
    * The name of the table to use for the model.
    */
@@ -126,6 +142,21 @@ public abstract class Model {
     }
   }
 
+  /**
+   * Set the value of a public field in the model.
+   *
+   * @param field The field.
+   * @param value The value of the field.
+   */
+  final void setField(final Field field, final Object value) {
+    try {
+      field.set(this, value);
+    }
+    catch (Exception e) {
+      return;
+    }
+  }
+
   /**
    * Parse an incoming field value.
    *
@@ -154,6 +185,34 @@ public abstract class Model {
     return value;
   }
 
+  /**
+   * Increment an integer field of the model in memory.
+   *
+   * <p>
+   * This is called on related models when a {@link CounterCache} is kept up
+   * to date. Subclasses that wrap their fields can override this to update
+   * the existing wrapper rather than replacing it.
+   *
+   * @param field   The field to increment.
+   * @param amount  The amount to increment the field by; may be negative.
+   *
+   * @since 1.1.0 Counter caches.
+   */
+  protected void incrementField(final Field field, final int amount) {
+    Object value;
+
+    try {
+      value = this.parseOutgoingFieldValue(field, field.get(this));
+    }
+    catch (IllegalAccessException ex) {
+      return;
+    }
+
+    int count = (value != null) ? ((Number) value).intValue() : 0;
+
+    this.setField(field, this.parseIncomingFieldValue(field, count + amount));
+  }
+
   /**
    * Get the table name of a model.
    *
@@ -181,10 +240,26 @@ public abstract class Model {
    *
    * @param id The ID to set.
    */
-  private void id(final Integer id) {
+  final void id(final Integer id) {
     this.id = id;
   }
 
+  /**
+   * Create the table of the model unless it already exists.
+   *
+   * <p>
+   * Tables are otherwise only created once a model of the kind is inserted,
+   * so this is useful for tables that are queried before anything has been
+   * inserted into them.
+   *
+   * @throws SQLException In case of a SQL error.
+   *
+   * @since 1.1.0 Table creation.
+   */
+  public final void createTable() throws SQLException {
+    this.defineSchema();
+  }
+
   /**
    * Define the database schema of a model.
    *
@@ -228,6 +303,10 @@ public abstract class Model {
       else if (fieldType == Boolean.class || fieldType == boolean.class) {
         schema.bool(column);
       }
+      // Binary type
+      else if (fieldType == byte[].class) {
+        schema.binary(column);
+      }
       // Model subclass
       else if (Model.class.isAssignableFrom(fieldType)) {
         T model = this.instantiate(fieldType);
@@ -254,6 +333,18 @@ public abstract class Model {
       }
     }
 
+    UniqueKey key = this.getClass().getAnnotation(UniqueKey.class);
+
+    if (key != null) {
+      String[] columns = new String[key.value().length];
+
+      for (int i = 0; i < columns.length; i++) {
+        columns[i] = key.value()[i].toLowerCase();
+      }
+
+      schema.uniqueKey(columns);
+    }
+
     schema.run();
   }
 
@@ -417,19 +508,129 @@ public abstract class Model {
 
     this.defineSchema();
 
-    List<Row> rows = this.query().insert(this.getRow());
+    List<Field[]> counters = this.counterCaches();
 
-    if (rows != null && !rows.isEmpty()) {
-      Number id = (Number) rows.get(0).get(
-        this.db.grammar().generatedAutoIncrementRow()
-      );
+    if (counters.isEmpty()) {
+      this.id(this.insertRow());
 
-      this.id(id.intValue());
+      return true;
     }
 
+    List<Map<Model, Integer>> tallies = Model.tally(
+      Collections.singletonList(this), counters
+    );
+
+    this.id(this.db.transaction(() -> {
+      Integer id = this.insertRow();
+      Model.updateCounters(counters, tallies, 1);
+      this.db.afterCommit(() -> Model.adjustCounters(counters, tallies, 1));
+
+      return id;
+    }));
+
     return true;
   }
 
+  /**
+   * Insert the row of the model into its table.
+   *
+   * @return The generated ID of the model, if any.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  private Integer insertRow() throws SQLException {
+    List<Row> rows = this.query().insert(this.getRow());
+
+    if (rows == null || rows.isEmpty()) {
+      return null;
+    }
+
+    Number id = (Number) rows.get(0).get(
+      this.db.grammar().generatedAutoIncrementRow()
+    );
+
+    return id.intValue();
+  }
+
+  /**
+   * Insert the model into the database asynchronously.
+   *
+   * @return A future of whether or not the query was performed.
+   */
+  public final CompletableFuture<Boolean> insertAsync() {
+    return this.db.async(() -> this.insert());
+  }
+
+  /**
+   * Insert a list of new models into the database in bulk.
+   *
+   * <p>
+   * The models are loaded using {@link Database#bulkLoad} which is much faster
+   * than inserting them one by one, but does not assign them their IDs. Any
+   * {@link CounterCache}s are incremented once per related model rather than
+   * once per model, within the same transaction as the load.
+   *
+   * @param models  The models to insert.
+   * @param <T>     The type of models to insert.
+   * @return        The number of models inserted.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  public static final <T extends Model> long insertAll(
+    final List<T> models
+  ) throws SQLException {
+    if (models.isEmpty()) {
+      return 0;
+    }
+
+    Model model = models.get(0);
+    model.defineSchema();
+
+    Iterator<T> iterator = models.iterator();
+
+    // Turn the models into rows as they are being loaded.
+    Iterator<Row> rows = new Iterator<Row>() {
+      /**
+       * Check if there are more models.
+       *
+       * @return Whether or not there are more models.
+       */
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      /**
+       * Get the row of the next model.
+       *
+       * @return The row of the next model.
+       */
+      @Override
+      public Row next() {
+        return iterator.next().getRow();
+      }
+    };
+
+    List<String> columns = model.getRow().getColumns();
+    List<Field[]> counters = model.counterCaches();
+
+    if (counters.isEmpty()) {
+      return model.db.bulkLoad(model.table, columns, rows);
+    }
+
+    List<Map<Model, Integer>> tallies = Model.tally(models, counters);
+
+    long count = model.db.transaction(() -> {
+      long loaded = model.db.bulkLoad(model.table, columns, rows);
+      Model.updateCounters(counters, tallies, 1);
+      model.db.afterCommit(() -> Model.adjustCounters(counters, tallies, 1));
+
+      return loaded;
+    });
+
+    return count;
+  }
+
   /**
    * Update the model in the database.
    *
@@ -461,7 +662,17 @@ public abstract class Model {
   /**
    * Delete the model from the database.
    *
-   * @return Boolean indicating whether or not the query was performed.
+   * <p>
+   * Within a transaction, the ID of the model is only cleared once the
+   * transaction commits, so that a model whose deletion is rolled back can
+   * still be used.
+   *
+   * <p>
+   * Counter caches are only updated if the row of the model still existed,
+   * so deleting a model that was already deleted elsewhere leaves them be.
+   *
+   * @return Boolean indicating whether or not the query was performed, which
+   *         for models with counter caches means that a row was deleted.
    *
    * @throws SQLException In case of a SQL error.
    */
@@ -470,9 +681,179 @@ public abstract class Model {
       return false;
     }
 
-    this.query().where("id", this.id).delete();
-    this.id(null);
+    List<Field[]> counters = this.counterCaches();
 
-    return true;
+    if (counters.isEmpty()) {
+      this.query().where("id", this.id).delete();
+
+      // Keep the ID in case a transaction in progress is rolled back.
+      this.db.afterCommit(() -> this.id(null));
+
+      return true;
+    }
+
+    List<Map<Model, Integer>> tallies = Model.tally(
+      Collections.singletonList(this), counters
+    );
+
+    return this.db.transaction(() -> {
+      this.db.afterCommit(() -> this.id(null));
+
+      if (this.query().where("id", this.id).deleteCount() != 1) {
+        return false;
+      }
+
+      Model.updateCounters(counters, tallies, -1);
+      this.db.afterCommit(() -> Model.adjustCounters(counters, tallies, -1));
+
+      return true;
+    });
+  }
+
+  /**
+   * Get the counter caches kept by the model, resolving them if needed.
+   *
+   * @return The counter caches of the model, each in the format {relation,
+   *         counter}.
+   */
+  private List<Field[]> counterCaches() {
+    List<Field[]> counters = Model.COUNTERS.get(this.getClass());
+
+    if (counters != null) {
+      return counters;
+    }
+
+    counters = new ArrayList<>();
+
+    for (Field field: this.getFields()) {
+      CounterCache cache = field.getAnnotation(CounterCache.class);
+
+      if (cache == null) {
+        continue;
+      }
+
+      Class<?> fieldType = this.getFieldType(field);
+
+      if (!Model.class.isAssignableFrom(fieldType)) {
+        throw new IllegalArgumentException(
+          "Counter caches can only be kept for Model fields: " + field.getName()
+        );
+      }
+
+      Model related = Model.instantiate(fieldType);
+      Field counter = related.getField(cache.value());
+
+      if (counter == null) {
+        throw new IllegalArgumentException(
+          "Unknown counter field: " + cache.value()
+        );
+      }
+
+      Class<?> counterType = related.getFieldType(counter);
+
+      if (counterType != Integer.class && counterType != int.class) {
+        throw new IllegalArgumentException(
+          "Counter fields must be integers: " + cache.value()
+        );
+      }
+
+      counters.add(new Field[] {field, counter});
+    }
+
+    Model.COUNTERS.putIfAbsent(this.getClass(), counters);
+
+    return counters;
+  }
+
+  /**
+   * Count the models related to a list of models through each counter cache.
+   *
+   * <p>
+   * Related models that have not been inserted are left out.
+   *
+   * @param models    The models whose related models to count.
+   * @param counters  The counter caches of the models.
+   * @return          For each counter cache, the number of models related to
+   *                  each related model.
+   */
+  private static List<Map<Model, Integer>> tally(
+    final List<? extends Model> models,
+    final List<Field[]> counters
+  ) {
+    List<Map<Model, Integer>> tallies = new ArrayList<>(counters.size());
+
+    for (Field[] counter: counters) {
+      Map<Model, Integer> tally = new IdentityHashMap<>();
+
+      for (Model model: models) {
+        Model related;
+
+        try {
+          related = (Model) model.parseOutgoingFieldValue(
+            counter[0], counter[0].get(model)
+          );
+        }
+        catch (IllegalAccessException ex) {
+          continue;
+        }
+
+        if (related == null || related.id() == null) {
+          continue;
+        }
+
+        Integer count = tally.get(related);
+        tally.put(related, (count != null) ? count + 1 : 1);
+      }
+
+      tallies.add(tally);
+    }
+
+    return tallies;
+  }
+
+  /**
+   * Increment the counter columns of related models in the database.
+   *
+   * @param counters  The counter caches to increment.
+   * @param tallies   The counts of related models of each counter cache.
+   * @param sign      1 to increment the counters or -1 to decrement them.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  private static void updateCounters(
+    final List<Field[]> counters,
+    final List<Map<Model, Integer>> tallies,
+    final int sign
+  ) throws SQLException {
+    for (int i = 0; i < counters.size(); i++) {
+      String column = counters.get(i)[1].getName().toLowerCase();
+
+      for (Map.Entry<Model, Integer> entry: tallies.get(i).entrySet()) {
+        entry.getKey().query()
+          .where("id", entry.getKey().id())
+          .increment(column, sign * entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Increment the counter fields of related model instances in memory.
+   *
+   * @param counters  The counter caches to increment.
+   * @param tallies   The counts of related models of each counter cache.
+   * @param sign      1 to increment the counters or -1 to decrement them.
+   */
+  private static void adjustCounters(
+    final List<Field[]> counters,
+    final List<Map<Model, Integer>> tallies,
+    final int sign
+  ) {
+    for (int i = 0; i < counters.size(); i++) {
+      Field counter = counters.get(i)[1];
+
+      for (Map.Entry<Model, Integer> entry: tallies.get(i).entrySet()) {
+        entry.getKey().incrementField(counter, sign * entry.getValue());
+      }
+    }
   }
 }
@@ -5,11 +5,8 @@ package dk.itu.donkey;
 
 // General utilities
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.function.Consumer;
 
 // Reflection utilities
 import java.lang.reflect.Field;
@@ -17,6 +14,9 @@ import java.lang.reflect.Field;
 // SQL utilities
 import java.sql.SQLException;
 
+// Concurrency utilities
+import java.util.concurrent.CompletableFuture;
+
 /**
  * The Model Query class is used for querying database rows related to models
  * and, in contrast to a raw {@link Query}, returns {@link Model}s rather than
@@ -42,11 +42,6 @@ public final class ModelQuery<T extends Model> {
    */
   private Query query;
 
-  /**
-   * Keep track of tables that have been joined into the query.
-   */
-  private Set<String> tables = new HashSet<>();
-
   /**
    * Initialize a model query.
    *
@@ -71,8 +66,8 @@ public final class ModelQuery<T extends Model> {
    * @return        The prefixed column.
    */
   private String prefixColumn(final String column) {
-    if (!column.matches(".*\\..*")) {
-      return String.format("%s.%s", this.table, column);
+    if (column.indexOf('.') == -1) {
+      return this.table + "." + column;
     }
     else {
       return column;
@@ -141,6 +136,135 @@ public final class ModelQuery<T extends Model> {
     return this;
   }
 
+  /**
+   * Add a where in clause to the query.
+   *
+   * @see Query#whereIn(String, List)
+   *
+   * @param column  The column to compare.
+   * @param values  The values to look for.
+   * @return        The current {@link ModelQuery} object, for chaining.
+   */
+  public ModelQuery whereIn(final String column, final List<?> values) {
+    this.query.whereIn(this.prefixColumn(column), values);
+
+    return this;
+  }
+
+  /**
+   * Add a where not in clause to the query.
+   *
+   * @param column  The column to compare.
+   * @param values  The values to exclude.
+   * @return        The current {@link ModelQuery} object, for chaining.
+   */
+  public ModelQuery whereNotIn(final String column, final List<?> values) {
+    this.query.whereNotIn(this.prefixColumn(column), values);
+
+    return this;
+  }
+
+  /**
+   * Add a where between clause to the query.
+   *
+   * @param column  The column to compare.
+   * @param low     The lower bound, inclusive.
+   * @param high    The upper bound, inclusive.
+   * @return        The current {@link ModelQuery} object, for chaining.
+   */
+  public ModelQuery whereBetween(
+    final String column,
+    final Object low,
+    final Object high
+  ) {
+    this.query.whereBetween(this.prefixColumn(column), low, high);
+
+    return this;
+  }
+
+  /**
+   * Add a where is null clause to the query.
+   *
+   * @param column  The column to check.
+   * @return        The current {@link ModelQuery} object, for chaining.
+   */
+  public ModelQuery whereNull(final String column) {
+    this.query.whereNull(this.prefixColumn(column));
+
+    return this;
+  }
+
+  /**
+   * Add a where is not null clause to the query.
+   *
+   * @param column  The column to check.
+   * @return        The current {@link ModelQuery} object, for chaining.
+   */
+  public ModelQuery whereNotNull(final String column) {
+    this.query.whereNotNull(this.prefixColumn(column));
+
+    return this;
+  }
+
+  /**
+   * Add a where clause comparing a column to the result of a subquery.
+   *
+   * @param column    The column to compare.
+   * @param operator  The logical operator to use for the comparison.
+   * @param query     The subquery, resulting in a single value.
+   * @return          The current {@link ModelQuery} object, for chaining.
+   */
+  public ModelQuery where(
+    final String column,
+    final String operator,
+    final Query query
+  ) {
+    this.query.where(this.prefixColumn(column), operator, query);
+
+    return this;
+  }
+
+  /**
+   * Add a where in clause matching the result of a subquery.
+   *
+   * @param column  The column to compare.
+   * @param query   The subquery, resulting in a single column.
+   * @return        The current {@link ModelQuery} object, for chaining.
+   */
+  public ModelQuery whereIn(final String column, final Query query) {
+    this.query.whereIn(this.prefixColumn(column), query);
+
+    return this;
+  }
+
+  /**
+   * Add a where exists clause to the query.
+   *
+   * <p>
+   * The subquery can refer to the table of the model, e.g. using
+   * {@link Query#whereColumn(String, String, String)}.
+   *
+   * @param query The subquery.
+   * @return      The current {@link ModelQuery} object, for chaining.
+   */
+  public ModelQuery whereExists(final Query query) {
+    this.query.whereExists(query);
+
+    return this;
+  }
+
+  /**
+   * Add a where not exists clause to the query.
+   *
+   * @param query The subquery.
+   * @return      The current {@link ModelQuery} object, for chaining.
+   */
+  public ModelQuery whereNotExists(final Query query) {
+    this.query.whereNotExists(query);
+
+    return this;
+  }
+
   /**
    * Add an order by clause to the query.
    *
@@ -167,214 +291,326 @@ public final class ModelQuery<T extends Model> {
   }
 
   /**
-   * Recursively traverse a model and initialize its relations based on a
-   * database response.
+   * Continue the query after a given value of a column, i.e. keyset
+   * pagination.
+   *
+   * @see Query#after(String, Object)
+   *
+   * @param column    The column to paginate by; should be unique.
+   * @param lastValue The last value of the previous page, or null for the
+   *                  first page.
+   * @return          The current {@link ModelQuery} object, for chaining.
+   */
+  public ModelQuery after(final String column, final Object lastValue) {
+    this.query.after(this.prefixColumn(column), lastValue);
+
+    return this;
+  }
+
+  /**
+   * Hydrate the models of a load plan node from a database response and
+   * recursively initialize their relations.
+   *
+   * <p>
+   * The rows of the node are given as a range of an array of row indices. The
+   * indices are partitioned by model so that the relations of each model can
+   * be hydrated from a range of the partition without copying any rows.
    *
-   * @param context The context of the relation.
-   * @param type    The type of model to traverse.
+   * @param context The model of the parent node, if any.
+   * @param node    The load plan node to hydrate.
    * @param rows    The database rows to use for initializing the models.
+   * @param order   The indices of the rows.
+   * @param from    The start of the range of row indices, inclusive.
+   * @param to      The end of the range of row indices, exclusive.
    * @return        A list of models initialized with their relations.
    */
-  private List<T> getRelations(
-    final T context,
-    final Class<?> type,
-    final List<Row> rows
+  private List<Model> getRelations(
+    final Model context,
+    final LoadPlan.Node node,
+    final List<Object[]> rows,
+    final int[] order,
+    final int from,
+    final int to
   ) {
-    if (rows == null) {
-      return null;
-    }
+    int length = to - from;
 
-    // Create a map for tracking model instances by their ID. When joining data,
+    // Map model IDs to their position in the list of models. When joining data,
     // the same instance of a model might appear several times in the query
     // response (e.g. the same post for several comments). The map will ensure
     // that only the first occurence of each unique model is instantiated.
-    Map<Integer, T> models = new LinkedHashMap<>();
-
-    // Map model IDs to their associated rows. E.g. a list of posts joined with
-    // their comments would result in a map of post IDs mapped to the database
-    // rows containing the comments associated with that post ID.
-    Map<Integer, List<Row>> modelRows = new LinkedHashMap<>();
+    IntIndexMap ids = new IntIndexMap(length);
+    List<Model> models = new ArrayList<>();
 
-    // Partition the rows according to the specified type.
-    for (Row row: rows) {
-      T model = Model.instantiate(type);
+    // The model that each row belongs to and the number of rows per model.
+    int[] owners = new int[length];
+    int[] counts = new int[length + 1];
 
-      // Grab the ID of the current model table from the row.
-      Integer id = (Integer) row.get(
-        String.format("%s_%s", model.table(), "id")
-      );
+    for (int i = 0; i < length; i++) {
+      Object[] row = rows.get(order[from + i]);
+      int id = node.id(row);
 
-      if (id == null || id <= 0) {
+      if (id <= 0) {
+        owners[i] = -1;
         continue;
       }
 
-      // List of database rows associated with a given model.
-      List<Row> subRows;
+      int owner = ids.putIfAbsent(id, models.size());
 
-      if (!models.containsKey(id)) {
-        subRows = new ArrayList<>();
-        subRows.add(row);
+      if (owner == -1) {
+        owner = models.size();
 
-        // Set the current row on the model. Since each column in the response
-        // is prefixed with the table name of the model, only columns specific
-        // to the model will be set on it.
-        model.setRow(row);
-
-        models.put(id, model);
-      }
-      else {
-        subRows = modelRows.get(id);
-        subRows.add(row);
+        // Only columns specific to the model will be set on it.
+        models.add(node.instantiate(row, id));
       }
 
-      modelRows.put(id, subRows);
+      owners[i] = owner;
+      counts[owner + 1]++;
     }
 
-    for (T model: models.values()) {
-      // Run through each of the fields of the model and look for further
-      // relations.
-      for (Field field: model.getFields()) {
-        String fieldName = field.getName();
-        Class<?> fieldType = model.getFieldType(field);
+    // There is nothing further to do if the node has no relations.
+    if (node.relations() == 0) {
+      return models;
+    }
 
-        boolean isList = false;
+    // Turn the counts into the offsets at which the rows of each model start.
+    for (int i = 0; i < models.size(); i++) {
+      counts[i + 1] += counts[i];
+    }
 
-        // If the field being looked at is a list, get the generic type of the
-        // list.
-        if (List.class.isAssignableFrom(fieldType)) {
-          fieldType = Model.getGenericType(field);
+    // Partition the row indices by model, keeping the original row order
+    // within each model.
+    int[] partition = new int[length];
+    int[] offsets = counts.clone();
 
-          // Remember that the field type was a list.
-          isList = true;
-        }
+    for (int i = 0; i < length; i++) {
+      if (owners[i] != -1) {
+        partition[offsets[owners[i]]++] = order[from + i];
+      }
+    }
 
-        if (Model.class.isAssignableFrom(fieldType)) {
-          // If the field is of the same type as the context, bail out. This is
-          // to avoid an infinite loop where two models both have fields of
-          // oneanother's type, e.g. a post with a list of comments and a
-          // comment that belongs to a post.
-          if (context != null && fieldType == context.getClass()) {
-            model.setField(fieldName, model.parseIncomingFieldValue(
-              field, context
-            ));
-          }
-          else {
-            List<T> relations = this.getRelations(
-              model, fieldType, modelRows.get(model.id())
-            );
+    for (int m = 0; m < models.size(); m++) {
+      Model model = models.get(m);
 
-            if (relations == null) {
-              continue;
-            }
+      // Run through each of the relations of the model.
+      for (int i = 0; i < node.relations(); i++) {
+        Field field = node.relation(i);
+        LoadPlan.Node relation = node.node(i);
 
-            Object value = relations;
+        Object value;
 
-            if (!isList) {
-              value = relations.get(0);
-            }
+        // If the relation refers back to the context, simply set it, unless
+        // it's a list of which the context would only be a part.
+        if (relation == null) {
+          if (node.isList(i)) {
+            continue;
+          }
 
-            model.setField(fieldName, model.parseIncomingFieldValue(
-              field, value
-            ));
+          value = context;
+        }
+        else {
+          List<Model> relations = this.getRelations(
+            model, relation, rows, partition, counts[m], counts[m + 1]
+          );
+
+          if (node.isList(i)) {
+            value = relations;
+          }
+          else if (!relations.isEmpty()) {
+            value = relations.get(0);
+          }
+          else {
+            continue;
           }
         }
+
+        model.setField(field, model.parseIncomingFieldValue(field, value));
       }
     }
 
-    return new ArrayList<T>(models.values());
+    return models;
+  }
+
+  /**
+   * Hydrate the models of a load plan from a list of database rows.
+   *
+   * @param plan  The load plan of the query.
+   * @param rows  The database rows to use for initializing the models.
+   * @return      A list of models initialized with their relations.
+   */
+  @SuppressWarnings("unchecked")
+  private List<T> hydrate(final LoadPlan plan, final List<Object[]> rows) {
+    int[] order = new int[rows.size()];
+
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+
+    return (List<T>) this.getRelations(
+      null, plan.root(), rows, order, 0, order.length
+    );
+  }
+
+  /**
+   * Perform the query and return a list of matching models.
+   *
+   * @return A list of models.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  public List<T> get() throws SQLException {
+    LoadPlan plan = LoadPlan.of(this.type);
+
+    plan.apply(this.query);
+
+    return this.hydrate(plan, this.query.fetch());
   }
 
   /**
-   * Recursively traverse a model and join in its relations on the current
-   * query object.
+   * Perform the query in chunks of models, paging through the models in the
+   * order of their IDs.
+   *
+   * <p>
+   * Each chunk is read using <code>where id &gt; ? order by id limit ?</code>
+   * with the last ID of the previous chunk, so every chunk costs the same to
+   * read no matter how far into the table it is. Any other orderings or limit
+   * of the query are replaced.
    *
-   * @param type The model type to traverse.
+   * <p>
+   * The chunk size counts rows of the result rather than models. Without
+   * lists of relations every model is a single row, so a full chunk holds as
+   * many models as the chunk size. With lists of relations a model spans a
+   * row per related model, and as models are never split across chunks, a
+   * full chunk leaves its last model for the next chunk in case its rows
+   * continue past the limit.
+   *
+   * @param size      The maximum number of rows to read per chunk.
+   * @param consumer  The consumer to pass each chunk of models to.
+   *
+   * @throws SQLException In case of a SQL error.
    */
-  private void setRelations(final Class<?> type) {
-    T outer = Model.instantiate(type);
+  public void chunkById(
+    final int size,
+    final Consumer<List<T>> consumer
+  ) throws SQLException {
+    if (size < 1) {
+      throw new IllegalArgumentException("Chunk size must be at least 1");
+    }
+
+    LoadPlan plan = LoadPlan.of(this.type);
+    LoadPlan.Node root = plan.root();
+    String id = this.prefixColumn("id");
 
-    // Remember that this model has already been added as a relation.
-    this.tables.add(outer.table());
+    plan.apply(this.query);
 
-    // Select the ID column of the model in the format "table_id".
-    this.query.select(String.format("%s.id as %1$s_id", outer.table()));
+    // Any other ordering would take precedence over the IDs, making chunks
+    // skip or repeat models.
+    this.query.clearOrders();
 
-    for (Field field: outer.getFields()) {
-      String fieldName = field.getName();
-      Class<?> fieldType = outer.getFieldType(field);
+    // The last ID of the previous chunk is the last parameter slot of the
+    // chunk query...
+    PreparedQuery chunk = this.query.after(id, 0).limit(size).prepare();
 
-      boolean isList = false;
+    Object[] values = chunk.values().toArray();
+    int last = values.length - 1;
 
-      // If the field being looked at is a list, get the generic type of the
-      // list.
-      if (List.class.isAssignableFrom(fieldType)) {
-        fieldType = Model.getGenericType(field);
+    // ...and the second to last of the query for a single model, which is
+    // only used if the rows of a model don't fit in a chunk.
+    PreparedQuery single = null;
+    Object[] singleValues = null;
 
-        // Remember that the field type was a list.
-        isList = true;
+    if (plan.joinsLists()) {
+      single = this.query.where(id, "<=", 0).limit(0).prepare();
+      singleValues = single.values().toArray();
+    }
+
+    while (true) {
+      List<Object[]> rows = chunk.fetch(values);
+
+      if (rows.isEmpty()) {
+        return;
       }
 
-      if (Model.class.isAssignableFrom(fieldType)) {
-        T inner = Model.instantiate(fieldType);
-
-        // If the model hasn't already been added as a relation, join it into
-        // the query if it represents a single field, e.g. a comment belonging
-        // to a post, and look for further relations...
-        //
-        // Example:
-        // [...] from showtimes join movies on showtimes.movie = movies.id
-        if (!this.tables.contains(inner.table())) {
-          if (!isList) {
-            this.query.leftJoin(
-              inner.table(),
-              String.format("%s.%s", outer.table(), fieldName),
-              String.format("%s.%s", inner.table(), "id")
-            );
-
-            // Remember that this table has already been added as a relation.
-            this.tables.add(inner.table());
-          }
+      if (rows.size() < size) {
+        consumer.accept(this.hydrate(plan, rows));
+        return;
+      }
+
+      // The rows of the last model might continue past the limit, so leave
+      // the model for the next chunk.
+      if (single != null) {
+        int lastId = root.id(rows.get(rows.size() - 1));
+        int end = rows.size();
 
-          // Look for further relations.
-          this.setRelations(fieldType);
+        while (end > 0 && root.id(rows.get(end - 1)) == lastId) {
+          end--;
         }
-        // ...otherwise, assume that the model is a relation of an already
-        // joined model. This will be the case in a two-way relation (either
-        // One-to-One or One-to-Many) and so a reverse join is performed if the
-        // field isn't a list, e.g. joining a single post with a list of
-        // comments.
-        //
-        // Example:
-        // [...] from showtimes join tickets on showtimes.id = tickets.showtime
-        else if (!isList) {
-          this.query.leftJoin(
-            outer.table(),
-            String.format("%s.%s", inner.table(), "id"),
-            String.format("%s.%s", outer.table(), fieldName)
-          );
+
+        if (end > 0) {
+          rows = rows.subList(0, end);
+        }
+        else {
+          singleValues[last] = values[last];
+          singleValues[last + 1] = lastId;
+
+          rows = single.fetch(singleValues);
         }
       }
-      else {
-        // Prefix all the columns of the model with its table name to ensure
-        // that non-unique columns can be differentiated if other data is
-        // joined in. I.e. people.name becomes people_name.
-        this.query.select(String.format(
-          "%s.%s as %1$s_%2$s", outer.table(), fieldName.toLowerCase()
-        ));
-      }
+
+      consumer.accept(this.hydrate(plan, rows));
+
+      values[last] = root.id(rows.get(rows.size() - 1));
     }
   }
 
   /**
-   * Perform the query and return a list of matching models.
+   * Publish the matching models to subscribers as they request them.
    *
-   * @return A list of models.
+   * <p>
+   * Models are hydrated one at a time, together with their relations, from
+   * the consecutive rows that share their ID. The query is therefore ordered
+   * by ID after any other orderings; ordering by columns of list relations
+   * would split the rows of a model and is not supported.
    *
-   * @throws SQLException In case of a SQL error.
+   * @return A publisher of models.
    */
-  public List<T> get() throws SQLException {
-    this.setRelations(this.type);
+  public Flow.Publisher<T> publish() {
+    LoadPlan plan = LoadPlan.of(this.type);
+    LoadPlan.Node root = plan.root();
+
+    plan.apply(this.query);
+
+    this.query.orderBy(this.prefixColumn("id"));
+
+    return this.query.publish((cursor) -> {
+      Object[] first = cursor.next();
+
+      if (first == null) {
+        return null;
+      }
+
+      List<Object[]> rows = new ArrayList<>();
+      rows.add(first);
+
+      int id = root.id(first);
+
+      // Gather the remaining rows of the model.
+      Object[] row = cursor.peek();
+
+      while (row != null && root.id(row) == id) {
+        rows.add(cursor.next());
+        row = cursor.peek();
+      }
 
-    return this.getRelations(null, this.type, this.query.get());
+      return this.hydrate(plan, rows).get(0);
+    });
+  }
+
+  /**
+   * Perform the query asynchronously.
+   *
+   * @return A future of the list of models.
+   */
+  public CompletableFuture<List<T>> getAsync() {
+    return this.query.db().async(() -> this.get());
   }
 }
@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// SQL utilities
+import java.sql.SQLException;
+
+/**
+ * The Prepared Query class is an immutable template of a compiled {@link Query}
+ * that can be executed any number of times with new values.
+ *
+ * <p>
+ * The SQL of a prepared query is compiled once when the query is prepared.
+ * Each value that was passed to the {@link Query} while building it becomes a
+ * parameter slot, in the order in which the values appear in the SQL, and the
+ * original values are kept as the default bindings of these slots.
+ *
+ * <p>
+ * As a prepared query never changes after having been created, the same
+ * instance can safely be shared between threads.
+ *
+ * @since 1.1.0 Prepared queries.
+ */
+public final class PreparedQuery {
+  /**
+   * The database to perform the query against.
+   */
+  private final Database db;
+
+  /**
+   * The compiled SQL of the query.
+   */
+  private final String sql;
+
+  /**
+   * The default values of the parameter slots of the query.
+   */
+  private final List<Object> values;
+
+  /**
+   * Initialize a prepared query.
+   *
+   * @param db      The database to perform the query against.
+   * @param sql     The compiled SQL of the query.
+   * @param values  The default values of the parameter slots of the query.
+   */
+  public PreparedQuery(
+    final Database db,
+    final String sql,
+    final List<Object> values
+  ) {
+    this.db = db;
+    this.sql = sql;
+    this.values = Collections.unmodifiableList(new ArrayList<>(values));
+  }
+
+  /**
+   * Get the compiled SQL of the query.
+   *
+   * @return The compiled SQL of the query.
+   */
+  public String sql() {
+    return this.sql;
+  }
+
+  /**
+   * Get the default values of the parameter slots of the query.
+   *
+   * @return An unmodifiable list of default values.
+   */
+  public List<Object> values() {
+    return this.values;
+  }
+
+  /**
+   * Get the number of parameter slots of the query.
+   *
+   * @return The number of parameter slots.
+   */
+  public int parameters() {
+    return this.values.size();
+  }
+
+  /**
+   * Bind a set of values to the parameter slots of the query.
+   *
+   * <p>
+   * If no values are given, the default values of the query are used.
+   *
+   * @param values  The values to bind.
+   * @return        The list of bound values.
+   */
+  private List<Object> bind(final Object... values) {
+    if (values.length == 0) {
+      return this.values;
+    }
+
+    if (values.length != this.values.size()) {
+      throw new IllegalArgumentException(String.format(
+        "Expected %s values but got %s", this.values.size(), values.length
+      ));
+    }
+
+    return Arrays.asList(values);
+  }
+
+  /**
+   * Execute the query against the database.
+   *
+   * @param values  The values to bind to the parameter slots of the query.
+   * @return        The query result as a list of rows, or null.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  public List<Row> execute(final Object... values) throws SQLException {
+    return this.db.execute(this.sql, this.bind(values));
+  }
+
+  /**
+   * Execute a prepared select query against the database.
+   *
+   * @param values  The values to bind to the parameter slots of the query.
+   * @return        A list of database rows.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  public List<Row> get(final Object... values) throws SQLException {
+    return this.execute(values);
+  }
+
+  /**
+   * Execute a prepared select query against the database and return the rows
+   * as arrays of column values, in the order in which the columns were
+   * selected.
+   *
+   * @param values  The values to bind to the parameter slots of the query.
+   * @return        A list of column value arrays.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  public List<Object[]> fetch(final Object... values) throws SQLException {
+    return this.db.fetch(this.sql, this.bind(values));
+  }
+
+  /**
+   * Execute a prepared select query against the database and grab the first
+   * result.
+   *
+   * @param values  The values to bind to the parameter slots of the query.
+   * @return        A single database row.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  public Row first(final Object... values) throws SQLException {
+    List<Row> rows = this.execute(values);
+
+    return (rows != null && rows.size() > 0) ? rows.get(0) : null;
+  }
+}
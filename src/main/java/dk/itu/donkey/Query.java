@@ -9,6 +9,9 @@ import java.util.List;
 // SQL utilities
 import java.sql.SQLException;
 
+// Concurrency utilities
+import java.util.concurrent.CompletableFuture;
+
 /**
  * The Query class is used for executing Data Manipulation Language (DML)
  * statements against a database and returns {@link Row}-representations of the
@@ -42,6 +45,29 @@ public final class Query {
     this.grammar.addTable(table);
   }
 
+  /**
+   * Get the database that the query is performed against.
+   *
+   * @return The database of the query.
+   */
+  Database db() {
+    return this.db;
+  }
+
+  /**
+   * Get a copy of the grammar of the query to add the columns and values of a
+   * write to.
+   *
+   * <p>
+   * Writes are built on a copy so that the query can be written, or prepared
+   * for writing, more than once.
+   *
+   * @return A copy of the grammar of the query.
+   */
+  private Grammar writeGrammar() {
+    return this.grammar.copyInto(this.db.grammar());
+  }
+
   /**
    * Select a set of columns from a table.
    *
@@ -56,6 +82,46 @@ public final class Query {
     return this;
   }
 
+  /**
+   * Select the result of a subquery as a column.
+   *
+   * <p>
+   * The subquery is compiled right away, so it must be fully built before
+   * being passed. It should result in a single value per row, e.g. an
+   * aggregate correlated using
+   * {@link #whereColumn(String, String, String)}.
+   *
+   * @param query The subquery.
+   * @param alias The name of the column in the resulting rows.
+   * @return      The current {@link Query} object, for chaining.
+   */
+  public Query select(final Query query, final String alias) {
+    this.grammar.addSubqueryColumn(
+      query.grammar.compileSelect(),
+      query.grammar.compileSelectValues(),
+      alias
+    );
+
+    return this;
+  }
+
+  /**
+   * Select from the result of a subquery rather than from a table.
+   *
+   * @param query The subquery.
+   * @param alias The name to refer to the result of the subquery by.
+   * @return      The current {@link Query} object, for chaining.
+   */
+  public Query from(final Query query, final String alias) {
+    this.grammar.addSubqueryTable(
+      query.grammar.compileSelect(),
+      query.grammar.compileSelectValues(),
+      alias
+    );
+
+    return this;
+  }
+
   /**
    * Insert a row into a table.
    *
@@ -65,16 +131,19 @@ public final class Query {
    * @throws SQLException In case of a SQL error.
    */
   public List<Row> insert(final Row row) throws SQLException {
+    Grammar grammar = this.writeGrammar();
+
     for (String column: row.getColumns()) {
-      this.grammar.addColumn(column);
+      grammar.addColumn(column);
     }
 
     for (Object value: row.getValues()) {
-      this.grammar.addValue(value);
+      grammar.addValue(value);
     }
 
     return this.db.execute(
-      this.grammar.compileInsert(), this.grammar.compileInsertValues()
+      this.db.cache().compileInsert(grammar),
+      grammar.compileInsertValues()
     );
   }
 
@@ -94,16 +163,49 @@ public final class Query {
    * @throws SQLException In case of a SQL error.
    */
   public List<Row> update(final Row row) throws SQLException {
+    Grammar grammar = this.writeGrammar();
+
     for (String column: row.getColumns()) {
-      this.grammar.addColumn(column);
+      grammar.addColumn(column);
     }
 
     for (Object value: row.getValues()) {
-      this.grammar.addValue(value);
+      grammar.addValue(value);
     }
 
     return this.db.execute(
-      this.grammar.compileUpdate(), this.grammar.compileUpdateValues()
+      this.db.cache().compileUpdate(grammar),
+      grammar.compileUpdateValues()
+    );
+  }
+
+  /**
+   * Increment a column of rows in a table.
+   *
+   * <p>
+   * The column is incremented by the database rather than set to a value read
+   * beforehand, so concurrent increments of the same row are never lost. This
+   * can be combined with a `where` statement to selectively increment a set of
+   * table rows.
+   *
+   * @param column  The column to increment.
+   * @param amount  The amount to increment the column by; may be negative.
+   * @return        Generated keys, if any.
+   *
+   * @throws SQLException In case of a SQL error.
+   *
+   * @since 1.1.0 Counter caches.
+   */
+  public List<Row> increment(
+    final String column,
+    final Number amount
+  ) throws SQLException {
+    Grammar grammar = this.writeGrammar();
+    grammar.addIncrement(column, amount);
+
+    return this.db.execute(
+      this.db.cache().compileUpdate(grammar),
+      grammar.compileUpdateValues()
     );
   }
 
@@ -123,7 +225,26 @@ public final class Query {
    */
   public List<Row> delete() throws SQLException {
     return this.db.execute(
-      this.grammar.compileDelete(), this.grammar.compileDeleteValues()
+      this.db.cache().compileDelete(this.grammar),
+      this.grammar.compileDeleteValues()
+    );
+  }
+
+  /**
+   * Delete rows from a table and count them.
+   *
+   * <p>
+   * This works like {@link #delete()}, but returns the number of rows that
+   * were deleted, e.g. for telling whether a row still existed.
+   *
+   * @return The number of rows deleted.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  public int deleteCount() throws SQLException {
+    return this.db.executeUpdate(
+      this.db.cache().compileDelete(this.grammar),
+      this.grammar.compileDeleteValues()
     );
   }
 
@@ -267,6 +388,284 @@ public final class Query {
     return this.orWhere(column, "=", value);
   }
 
+  /**
+   * Select an aggregate of a column, e.g. <code>count(tickets.id) as
+   * tickets</code>.
+   *
+   * <p>
+   * In contrast to {@link #aggregate(String, String)}, the aggregate is only
+   * added to the selected columns; any number of aggregates can be selected
+   * alongside each other and alongside grouped columns.
+   *
+   * @param function  The aggregate function, e.g. "count" or "sum".
+   * @param column    The column to aggregate.
+   * @param alias     The name of the aggregate in the resulting rows.
+   * @return          The current {@link Query} object, for chaining.
+   */
+  public Query selectAggregate(
+    final String function,
+    final String column,
+    final String alias
+  ) {
+    this.grammar.addAggregate(function, column, alias);
+
+    return this;
+  }
+
+  /**
+   * Add a `group by` statement to the query.
+   *
+   * @param columns The columns to group by.
+   * @return        The current {@link Query} object, for chaining.
+   */
+  public Query groupBy(final String... columns) {
+    for (String column: columns) {
+      this.grammar.addGroup(column);
+    }
+
+    return this;
+  }
+
+  /**
+   * Add a `having` statement to the query.
+   *
+   * @param column    The column or aggregate to compare, e.g. "count(*)".
+   * @param operator  The logical operator to use for the comparison.
+   * @param value     The value to compare against.
+   * @return          The current {@link Query} object, for chaining.
+   */
+  public Query having(
+    final String column,
+    final String operator,
+    final Object value
+  ) {
+    this.grammar.addHaving(column, operator, value, "and");
+
+    return this;
+  }
+
+  /**
+   * Add a `having` statement to the query, with a logical operator of `or`.
+   *
+   * @param column    The column or aggregate to compare, e.g. "count(*)".
+   * @param operator  The logical operator to use for the comparison.
+   * @param value     The value to compare against.
+   * @return          The current {@link Query} object, for chaining.
+   */
+  public Query orHaving(
+    final String column,
+    final String operator,
+    final Object value
+  ) {
+    this.grammar.addHaving(column, operator, value, "or");
+
+    return this;
+  }
+
+  /**
+   * Add a `where` statement comparing a column to the result of a subquery.
+   *
+   * @param column    The column to compare.
+   * @param operator  The logical operator to use for the comparison.
+   * @param query     The subquery, resulting in a single value.
+   * @return          The current {@link Query} object, for chaining.
+   */
+  public Query where(
+    final String column,
+    final String operator,
+    final Query query
+  ) {
+    this.grammar.addWhereSubquery(
+      column,
+      operator,
+      query.grammar.compileSelect(),
+      query.grammar.compileSelectValues(),
+      "and"
+    );
+
+    return this;
+  }
+
+  /**
+   * Add a `where` statement comparing a column to the result of a subquery,
+   * with a logical operator of `or`.
+   *
+   * @param column    The column to compare.
+   * @param operator  The logical operator to use for the comparison.
+   * @param query     The subquery, resulting in a single value.
+   * @return          The current {@link Query} object, for chaining.
+   */
+  public Query orWhere(
+    final String column,
+    final String operator,
+    final Query query
+  ) {
+    this.grammar.addWhereSubquery(
+      column,
+      operator,
+      query.grammar.compileSelect(),
+      query.grammar.compileSelectValues(),
+      "or"
+    );
+
+    return this;
+  }
+
+  /**
+   * Add a `where in` statement matching the result of a subquery.
+   *
+   * @param column  The column to compare.
+   * @param query   The subquery, resulting in a single column.
+   * @return        The current {@link Query} object, for chaining.
+   */
+  public Query whereIn(final String column, final Query query) {
+    return this.where(column, "in", query);
+  }
+
+  /**
+   * Add a `where not in` statement excluding the result of a subquery.
+   *
+   * @param column  The column to compare.
+   * @param query   The subquery, resulting in a single column.
+   * @return        The current {@link Query} object, for chaining.
+   */
+  public Query whereNotIn(final String column, final Query query) {
+    return this.where(column, "not in", query);
+  }
+
+  /**
+   * Add a `where` statement comparing two columns to the query.
+   *
+   * <p>
+   * This is mostly useful for correlating a subquery with the outer query,
+   * e.g. <code>whereColumn("tickets.reservation_id", "=",
+   * "reservations.id")</code>.
+   *
+   * @param column    The column to compare.
+   * @param operator  The logical operator to use for the comparison.
+   * @param other     The column to compare against.
+   * @return          The current {@link Query} object, for chaining.
+   */
+  public Query whereColumn(
+    final String column,
+    final String operator,
+    final String other
+  ) {
+    this.grammar.addWhereColumn(column, operator, other, "and");
+
+    return this;
+  }
+
+  /**
+   * Add a `where in` statement to the query.
+   *
+   * <p>
+   * The values are padded to a power of two so that lists of similar sizes
+   * share the same compiled SQL.
+   *
+   * @param column  The column to compare.
+   * @param values  The values to look for.
+   * @return        The current {@link Query} object, for chaining.
+   */
+  public Query whereIn(final String column, final List<?> values) {
+    this.grammar.addWhereIn(column, values, false, "and");
+
+    return this;
+  }
+
+  /**
+   * Add a `where not in` statement to the query.
+   *
+   * @param column  The column to compare.
+   * @param values  The values to exclude.
+   * @return        The current {@link Query} object, for chaining.
+   */
+  public Query whereNotIn(final String column, final List<?> values) {
+    this.grammar.addWhereIn(column, values, true, "and");
+
+    return this;
+  }
+
+  /**
+   * Add a `where between` statement to the query.
+   *
+   * @param column  The column to compare.
+   * @param low     The lower bound, inclusive.
+   * @param high    The upper bound, inclusive.
+   * @return        The current {@link Query} object, for chaining.
+   */
+  public Query whereBetween(
+    final String column,
+    final Object low,
+    final Object high
+  ) {
+    this.grammar.addWhereBetween(column, low, high, false, "and");
+
+    return this;
+  }
+
+  /**
+   * Add a `where is null` statement to the query.
+   *
+   * @param column  The column to check.
+   * @return        The current {@link Query} object, for chaining.
+   */
+  public Query whereNull(final String column) {
+    this.grammar.addWhereNull(column, false, "and");
+
+    return this;
+  }
+
+  /**
+   * Add a `where is not null` statement to the query.
+   *
+   * @param column  The column to check.
+   * @return        The current {@link Query} object, for chaining.
+   */
+  public Query whereNotNull(final String column) {
+    this.grammar.addWhereNull(column, true, "and");
+
+    return this;
+  }
+
+  /**
+   * Add a `where exists` statement to the query.
+   *
+   * <p>
+   * The subquery is compiled right away, so it must be fully built before
+   * being passed.
+   *
+   * @param query The subquery.
+   * @return      The current {@link Query} object, for chaining.
+   */
+  public Query whereExists(final Query query) {
+    this.grammar.addWhereExists(
+      query.grammar.compileSelect(),
+      query.grammar.compileSelectValues(),
+      false,
+      "and"
+    );
+
+    return this;
+  }
+
+  /**
+   * Add a `where not exists` statement to the query.
+   *
+   * @param query The subquery.
+   * @return      The current {@link Query} object, for chaining.
+   */
+  public Query whereNotExists(final Query query) {
+    this.grammar.addWhereExists(
+      query.grammar.compileSelect(),
+      query.grammar.compileSelectValues(),
+      true,
+      "and"
+    );
+
+    return this;
+  }
+
   /**
    * Add an `order by` statement to the query.
    *
@@ -293,6 +692,43 @@ public final class Query {
     return this.orderBy(column, "asc");
   }
 
+  /**
+   * Remove all `order by` statements from the query.
+   *
+   * @return The current {@link Query} object, for chaining.
+   */
+  Query clearOrders() {
+    this.grammar.clearOrders();
+
+    return this;
+  }
+
+  /**
+   * Continue the query after a given value of a column, i.e. keyset
+   * pagination.
+   *
+   * <p>
+   * Adds <code>where column &gt; lastValue order by column</code>, applying
+   * to all `where` statements added so far. The ordering comes after any
+   * orderings added so far, so the query should have none for the pages to
+   * follow each other. Combined with {@link #limit(int)},
+   * each page is read using an index seek on the column, whereas
+   * {@link #offset(int)} has to skip all rows of the previous pages.
+   *
+   * @param column    The column to paginate by; should be unique.
+   * @param lastValue The last value of the previous page, or null for the
+   *                  first page.
+   * @return          The current {@link Query} object, for chaining.
+   */
+  public Query after(final String column, final Object lastValue) {
+    if (lastValue != null) {
+      this.grammar.groupWheres();
+      this.where(column, ">", lastValue);
+    }
+
+    return this.orderBy(column);
+  }
+
   /**
    * Add a `limit` statement to the query.
    *
@@ -326,10 +762,161 @@ public final class Query {
    */
   public List<Row> get() throws SQLException {
     return this.db.execute(
-      this.grammar.compileSelect(), this.grammar.compileSelectValues()
+      this.db.cache().compileSelect(this.grammar),
+      this.grammar.compileSelectValues()
     );
   }
 
+  /**
+   * Execute a select query against the database and return the rows as arrays
+   * of column values, in the order in which the columns were selected.
+   *
+   * @return A list of column value arrays.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  public List<Object[]> fetch() throws SQLException {
+    return this.db.fetch(
+      this.db.cache().compileSelect(this.grammar),
+      this.grammar.compileSelectValues()
+    );
+  }
+
+  /**
+   * Publish the result of the select query to subscribers as they request
+   * rows.
+   *
+   * <p>
+   * In contrast to {@link #get()}, the result is never held in memory in its
+   * entirety; rows are read from the database in batches as subscribers
+   * request them. The query is executed once per subscriber.
+   *
+   * @return A publisher of database rows.
+   */
+  public Flow.Publisher<Row> publish() {
+    return this.publish((cursor) -> cursor.nextRow());
+  }
+
+  /**
+   * Publish the result of the select query to subscribers, reading items
+   * using a custom reader.
+   *
+   * @param <T>     The type of item to publish.
+   * @param reader  The reader that turns the rows of a cursor into items.
+   * @return        A publisher of items.
+   */
+  <T> Flow.Publisher<T> publish(final CursorPublisher.Reader<T> reader) {
+    return new CursorPublisher<>(
+      this.db,
+      this.db.cache().compileSelect(this.grammar),
+      this.grammar.compileSelectValues(),
+      reader
+    );
+  }
+
+  /**
+   * Prepare the select query for repeated execution.
+   *
+   * <p>
+   * The values of any `where` statements become the parameter slots of the
+   * returned {@link PreparedQuery}.
+   *
+   * @return A prepared select query.
+   */
+  public PreparedQuery prepare() {
+    return new PreparedQuery(
+      this.db,
+      this.db.cache().compileSelect(this.grammar),
+      this.grammar.compileSelectValues()
+    );
+  }
+
+  /**
+   * Prepare an insert query for repeated execution.
+   *
+   * <p>
+   * Each of the columns becomes a parameter slot of the returned
+   * {@link PreparedQuery}.
+   *
+   * @param columns The columns to insert into the table.
+   * @return        A prepared insert query.
+   */
+  public PreparedQuery prepareInsert(final String... columns) {
+    Grammar grammar = this.writeGrammar();
+
+    for (String column: columns) {
+      grammar.addColumn(column);
+      grammar.addValue(null);
+    }
+
+    return new PreparedQuery(
+      this.db,
+      this.db.cache().compileInsert(grammar),
+      grammar.compileInsertValues()
+    );
+  }
+
+  /**
+   * Prepare an update query for repeated execution.
+   *
+   * <p>
+   * Each of the columns becomes a parameter slot of the returned
+   * {@link PreparedQuery}, followed by the values of any `where` statements.
+   *
+   * @param columns The columns to update in the table.
+   * @return        A prepared update query.
+   */
+  public PreparedQuery prepareUpdate(final String... columns) {
+    Grammar grammar = this.writeGrammar();
+
+    for (String column: columns) {
+      grammar.addColumn(column);
+      grammar.addValue(null);
+    }
+
+    return new PreparedQuery(
+      this.db,
+      this.db.cache().compileUpdate(grammar),
+      grammar.compileUpdateValues()
+    );
+  }
+
+  /**
+   * Prepare a delete query for repeated execution.
+   *
+   * <p>
+   * The values of any `where` statements become the parameter slots of the
+   * returned {@link PreparedQuery}.
+   *
+   * @return A prepared delete query.
+   */
+  public PreparedQuery prepareDelete() {
+    return new PreparedQuery(
+      this.db,
+      this.db.cache().compileDelete(this.grammar),
+      this.grammar.compileDeleteValues()
+    );
+  }
+
+  /**
+   * Execute a select query against the database asynchronously.
+   *
+   * @return A future of the database rows.
+   */
+  public CompletableFuture<List<Row>> getAsync() {
+    return this.db.async(() -> this.get());
+  }
+
+  /**
+   * Insert a row into the database asynchronously.
+   *
+   * @param row The row to insert.
+   * @return    A future of the generated keys.
+   */
+  public CompletableFuture<List<Row>> insertAsync(final Row row) {
+    return this.db.async(() -> this.insert(row));
+  }
+
   /**
    * Execute a select query against the database and grab the first result.
    *
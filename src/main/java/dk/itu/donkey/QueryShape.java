@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The Query Shape class describes the structure of a statement built by a
+ * {@link Grammar}, leaving out its values.
+ *
+ * <p>
+ * Two grammars with equal shapes compile to the exact same SQL which makes
+ * shapes suitable as keys for caching compiled SQL.
+ *
+ * @see SqlCache
+ *
+ * @since 1.1.0 Compiled-SQL caching.
+ */
+final class QueryShape {
+  /**
+   * The type of statement, e.g. "select".
+   */
+  private final String statement;
+
+  /**
+   * The table of the statement.
+   */
+  private final String table;
+
+  /**
+   * The arguments of the clauses of the statement, excluding values.
+   */
+  private final List<Object> clauses;
+
+  /**
+   * The number of values of the statement.
+   */
+  private final int values;
+
+  /**
+   * The limit of the statement.
+   */
+  private final int limit;
+
+  /**
+   * The offset of the statement.
+   */
+  private final int offset;
+
+  /**
+   * The precomputed hash code of the shape.
+   */
+  private final int hash;
+
+  /**
+   * Initialize a query shape.
+   *
+   * <p>
+   * The clauses are not copied. Use {@link #snapshot()} to get a shape that is
+   * safe to keep around after the grammar has changed.
+   *
+   * @param statement The type of statement.
+   * @param table     The table of the statement.
+   * @param clauses   The arguments of the clauses of the statement.
+   * @param hash      The hash code of the list of arguments.
+   * @param values    The number of values of the statement.
+   * @param limit     The limit of the statement.
+   * @param offset    The offset of the statement.
+   */
+  QueryShape(
+    final String statement,
+    final String table,
+    final List<Object> clauses,
+    final int hash,
+    final int values,
+    final int limit,
+    final int offset
+  ) {
+    this.statement = statement;
+    this.table = table;
+    this.clauses = clauses;
+    this.values = values;
+    this.limit = limit;
+    this.offset = offset;
+
+    // Avoid boxing the numbers, as the hash is computed for every lookup.
+    int shapeHash = statement.hashCode();
+    shapeHash = 31 * shapeHash + Objects.hashCode(table);
+    shapeHash = 31 * shapeHash + hash;
+    shapeHash = 31 * shapeHash + values;
+    shapeHash = 31 * shapeHash + limit;
+    this.hash = 31 * shapeHash + offset;
+  }
+
+  /**
+   * Get a copy of the shape that doesn't share any state with its grammar.
+   *
+   * @return A copy of the shape.
+   */
+  QueryShape snapshot() {
+    List<Object> clauses = new ArrayList<>(this.clauses);
+
+    return new QueryShape(
+      this.statement,
+      this.table,
+      clauses,
+      clauses.hashCode(),
+      this.values,
+      this.limit,
+      this.offset
+    );
+  }
+
+  /**
+   * Check if the shape is equal to another object.
+   *
+   * @param object  The object to compare against.
+   * @return        Whether or not the shape is equal to the object.
+   */
+  @Override
+  public boolean equals(final Object object) {
+    if (this == object) {
+      return true;
+    }
+
+    if (!(object instanceof QueryShape)) {
+      return false;
+    }
+
+    QueryShape shape = (QueryShape) object;
+
+    return this.hash == shape.hash
+        && this.values == shape.values
+        && this.limit == shape.limit
+        && this.offset == shape.offset
+        && this.statement.equals(shape.statement)
+        && Objects.equals(this.table, shape.table)
+        && this.clauses.equals(shape.clauses);
+  }
+
+  /**
+   * Get the hash code of the shape.
+   *
+   * @return The hash code of the shape.
+   */
+  @Override
+  public int hashCode() {
+    return this.hash;
+  }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// SQL utilities
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// Concurrency utilities
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Reader Pool class keeps a fixed number of read-only connections to a
+ * database open for executing reads.
+ *
+ * <p>
+ * In WAL mode, SQLite lets any number of readers proceed alongside a single
+ * writer. Keeping the readers on their own connections means that reads
+ * neither wait on writes nor pay for opening a connection each.
+ *
+ * <p>
+ * Connections are opened lazily, up to the size of the pool. Once all of them
+ * are in use, further reads wait for a connection to be released.
+ *
+ * @since 1.1.0 Concurrent reader pool.
+ */
+final class ReaderPool {
+  /**
+   * The database to read from.
+   */
+  private final Database db;
+
+  /**
+   * The maximum number of connections of the pool.
+   */
+  private final int size;
+
+  /**
+   * The connections that are not currently in use.
+   */
+  private final BlockingQueue<Connection> idle;
+
+  /**
+   * The number of connections that have been opened.
+   */
+  private final AtomicInteger opened = new AtomicInteger();
+
+  /**
+   * Whether or not the database is known to exist.
+   */
+  private volatile boolean created;
+
+  /**
+   * Whether or not the pool has been closed.
+   */
+  private volatile boolean closed;
+
+  /**
+   * Initialize a reader pool.
+   *
+   * @param db    The database to read from.
+   * @param size  The maximum number of connections of the pool.
+   */
+  ReaderPool(final Database db, final int size) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Pool size must be at least 1");
+    }
+
+    this.db = db;
+    this.size = size;
+    this.idle = new ArrayBlockingQueue<>(size);
+  }
+
+  /**
+   * Acquire a connection from the pool, waiting for one if all are in use.
+   *
+   * @return A read-only connection.
+   *
+   * @throws SQLException In case of a connection error.
+   */
+  Connection acquire() throws SQLException {
+    if (this.closed) {
+      throw new SQLException("The reader pool has been closed");
+    }
+
+    Connection connection = this.idle.poll();
+
+    if (connection != null) {
+      return connection;
+    }
+
+    // Open a new connection if the pool hasn't reached its size yet...
+    int count = this.opened.get();
+
+    while (count < this.size) {
+      if (this.opened.compareAndSet(count, count + 1)) {
+        try {
+          if (!this.created) {
+            this.create();
+          }
+
+          return this.db.connectReader();
+        }
+        catch (SQLException ex) {
+          this.opened.decrementAndGet();
+
+          throw ex;
+        }
+      }
+
+      count = this.opened.get();
+    }
+
+    // ...otherwise, wait for a connection to be released.
+    try {
+      return this.idle.take();
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+
+      throw new SQLException("Interrupted while waiting for a reader", ex);
+    }
+  }
+
+  /**
+   * Make sure that the database exists, creating it if needed.
+   *
+   * <p>
+   * Read-only connections cannot create the database, so this is done once
+   * before opening any of them. Threads opening connections meanwhile wait
+   * for it to be done.
+   *
+   * @throws SQLException In case of a connection error.
+   */
+  private synchronized void create() throws SQLException {
+    if (this.created) {
+      return;
+    }
+
+    this.db.connect().close();
+    this.created = true;
+  }
+
+  /**
+   * Release a connection back to the pool.
+   *
+   * @param connection The connection to release.
+   *
+   * @throws SQLException In case of a connection error.
+   */
+  void release(final Connection connection) throws SQLException {
+    if (this.closed || !this.idle.offer(connection)) {
+      this.opened.decrementAndGet();
+      connection.close();
+    }
+  }
+
+  /**
+   * Close all idle connections of the pool. Connections that are in use are
+   * closed when released.
+   */
+  void close() {
+    this.closed = true;
+
+    Connection connection;
+
+    while ((connection = this.idle.poll()) != null) {
+      try {
+        connection.close();
+      }
+      catch (SQLException ex) {
+        // The connection is being thrown away regardless.
+        continue;
+      }
+    }
+  }
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+// SQL utilities
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// Concurrency utilities
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Replica Set class balances reads across the read replicas of a
+ * database.
+ *
+ * <p>
+ * Replicas are picked either in turn ("round_robin") or by the fewest reads
+ * currently in progress ("least_outstanding"). As replicas lag behind the
+ * primary, reads can be pinned to the primary for a while after each write so
+ * that a write is always visible to the reads that follow it.
+ *
+ * @since 1.1.0 Read-replica routing.
+ */
+final class ReplicaSet {
+  /**
+   * The database driver to use.
+   */
+  private final Driver driver;
+
+  /**
+   * The connection properties of each replica.
+   */
+  private final List<Properties> replicas;
+
+  /**
+   * The number of reads in progress on each replica.
+   */
+  private final AtomicInteger[] outstanding;
+
+  /**
+   * Counter used for picking replicas in turn.
+   */
+  private final AtomicInteger next = new AtomicInteger();
+
+  /**
+   * Whether or not to pick the replica with the fewest reads in progress.
+   */
+  private final boolean leastOutstanding;
+
+  /**
+   * Nanoseconds to pin reads to the primary after a write.
+   */
+  private final long pin;
+
+  /**
+   * The time, in nanoseconds, until which reads are pinned to the primary.
+   */
+  private volatile long pinnedUntil;
+
+  /**
+   * Whether or not reads have ever been pinned to the primary.
+   */
+  private volatile boolean pinned;
+
+  /**
+   * Initialize a replica set.
+   *
+   * <p>
+   * The properties of each replica default to those of the primary, so a
+   * replica usually only needs its own URL.
+   *
+   * <p>
+   * Available properties of the primary:
+   *
+   * <pre>
+   * replica_balancing - "round_robin" or "least_outstanding".
+   *                     Default: round_robin
+   * replica_pin       - Milliseconds to pin reads to the primary after a
+   *                     write. Default: 0
+   * </pre>
+   *
+   * @param driver    The database driver to use.
+   * @param primary   The connection properties of the primary.
+   * @param replicas  The connection properties of each replica.
+   */
+  ReplicaSet(
+    final Driver driver,
+    final Properties primary,
+    final List<Properties> replicas
+  ) {
+    this.driver = driver;
+    this.replicas = new ArrayList<>(replicas.size());
+    this.outstanding = new AtomicInteger[replicas.size()];
+
+    for (int i = 0; i < replicas.size(); i++) {
+      Properties properties = new Properties();
+      properties.putAll(primary);
+      properties.putAll(replicas.get(i));
+
+      this.replicas.add(properties);
+      this.outstanding[i] = new AtomicInteger();
+    }
+
+    String balancing = primary.getProperty("replica_balancing", "round_robin");
+
+    switch (balancing) {
+      case "round_robin":
+        this.leastOutstanding = false;
+        break;
+      case "least_outstanding":
+        this.leastOutstanding = true;
+        break;
+      default:
+        throw new IllegalArgumentException(
+          "Unknown replica balancing: " + balancing
+        );
+    }
+
+    this.pin = TimeUnit.MILLISECONDS.toNanos(
+      Long.parseLong(primary.getProperty("replica_pin", "0"))
+    );
+  }
+
+  /**
+   * Pick the replica to execute a read on.
+   *
+   * @return The index of the replica, or -1 if the read is pinned to the
+   *         primary.
+   */
+  int choose() {
+    if (this.pinned && System.nanoTime() - this.pinnedUntil < 0) {
+      return -1;
+    }
+
+    if (!this.leastOutstanding) {
+      return (this.next.getAndIncrement() & Integer.MAX_VALUE)
+        % this.outstanding.length;
+    }
+
+    // Start the search at a rotating offset so that ties are spread out.
+    int start = this.next.getAndIncrement() & Integer.MAX_VALUE;
+    int best = -1;
+    int fewest = Integer.MAX_VALUE;
+
+    for (int i = 0; i < this.outstanding.length; i++) {
+      int replica = (start + i) % this.outstanding.length;
+      int count = this.outstanding[replica].get();
+
+      if (count < fewest) {
+        best = replica;
+        fewest = count;
+      }
+    }
+
+    return best;
+  }
+
+  /**
+   * Initialize a connection to a replica.
+   *
+   * @param replica The index of the replica.
+   * @return        A connection to the replica.
+   *
+   * @throws SQLException In case of a connection error.
+   */
+  Connection connect(final int replica) throws SQLException {
+    this.outstanding[replica].incrementAndGet();
+
+    try {
+      return this.driver.connect(this.replicas.get(replica));
+    }
+    catch (SQLException ex) {
+      this.outstanding[replica].decrementAndGet();
+
+      throw ex;
+    }
+  }
+
+  /**
+   * Mark a read on a replica as done.
+   *
+   * @param replica The index of the replica.
+   */
+  void release(final int replica) {
+    this.outstanding[replica].decrementAndGet();
+  }
+
+  /**
+   * Pin reads to the primary following a write.
+   */
+  void wrote() {
+    if (this.pin > 0) {
+      this.pinnedUntil = System.nanoTime() + this.pin;
+      this.pinned = true;
+    }
+  }
+}
@@ -165,6 +165,20 @@ public final class Schema {
     return this;
   }
 
+  /**
+   * Add a binary column to the schema.
+   *
+   * @param column  The name of the column.
+   * @return        The current {@link Schema} object, for chaining.
+   *
+   * @since 1.1.0 Binary columns.
+   */
+  public Schema binary(final String column) {
+    this.grammar.addDataType(column, this.grammar.binaryType(), true);
+
+    return this;
+  }
+
   /**
    * Add a date column to the schema.
    *
@@ -230,4 +244,19 @@ public final class Schema {
 
     return this;
   }
+
+  /**
+   * Add a unique key to the schema.
+   *
+   * @param columns The names of the columns whose combined values must be
+   *                unique.
+   * @return        The current {@link Schema} object, for chaining.
+   *
+   * @since 1.1.0 Unique keys.
+   */
+  public Schema uniqueKey(final String... columns) {
+    this.grammar.addUniqueKey(columns);
+
+    return this;
+  }
 }
@@ -0,0 +1,244 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.Map;
+
+// Concurrency utilities
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The SQL Cache class maps the shapes of queries to their compiled SQL.
+ *
+ * <p>
+ * Queries of the same shape, i.e. built from the same clauses with the same
+ * arguments apart from their values, always compile to the same SQL. Only
+ * the first query of a given shape is therefore compiled by its
+ * {@link Grammar}; any later queries of the same shape reuse the compiled SQL
+ * and only collect their values. Shapes are compared by the arguments of
+ * their clauses, which are mostly string literals, rather than by the
+ * formatted clauses, so looking up a shape is cheaper than compiling it.
+ *
+ * <p>
+ * The cache holds at most a fixed number of shapes. Once full, queries of new
+ * shapes are simply compiled without being cached. A cache of size 0 thereby
+ * compiles every query.
+ *
+ * @since 1.1.0 Compiled-SQL caching.
+ */
+public final class SqlCache {
+  /**
+   * The default maximum number of shapes to cache.
+   */
+  public static final int DEFAULT_SIZE = 1024;
+
+  /**
+   * The maximum number of shapes to cache.
+   */
+  private final int size;
+
+  /**
+   * Compiled SQL mapped by query shape.
+   */
+  private final Map<QueryShape, String> statements = new ConcurrentHashMap<>();
+
+  /**
+   * The number of shapes cached or about to be, which never exceeds the size.
+   */
+  private final AtomicInteger count = new AtomicInteger();
+
+  /**
+   * The number of cache hits.
+   */
+  private final AtomicLong hits = new AtomicLong();
+
+  /**
+   * The number of cache misses.
+   */
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Initialize a SQL cache.
+   *
+   * @param size The maximum number of shapes to cache.
+   */
+  public SqlCache(final int size) {
+    this.size = size;
+  }
+
+  /**
+   * Initialize a SQL cache with the default size.
+   */
+  public SqlCache() {
+    this(SqlCache.DEFAULT_SIZE);
+  }
+
+  /**
+   * Look up the compiled SQL of a query shape.
+   *
+   * @param shape The shape to look up.
+   * @return      The compiled SQL if cached, otherwise null.
+   */
+  private String lookup(final QueryShape shape) {
+    String sql = this.statements.get(shape);
+
+    if (sql != null) {
+      this.hits.incrementAndGet();
+    }
+    else {
+      this.misses.incrementAndGet();
+    }
+
+    return sql;
+  }
+
+  /**
+   * Remember the compiled SQL of a query shape.
+   *
+   * @param shape The shape of the query.
+   * @param sql   The compiled SQL of the query.
+   * @return      The compiled SQL.
+   */
+  private String store(final QueryShape shape, final String sql) {
+    if (!this.reserve()) {
+      return sql;
+    }
+
+    if (this.statements.putIfAbsent(shape.snapshot(), sql) != null) {
+      this.count.decrementAndGet();
+    }
+
+    return sql;
+  }
+
+  /**
+   * Reserve room for a shape, unless the cache is full.
+   *
+   * @return Whether or not room was reserved.
+   */
+  private boolean reserve() {
+    int count;
+
+    do {
+      count = this.count.get();
+
+      if (count >= this.size) {
+        return false;
+      }
+    }
+    while (!this.count.compareAndSet(count, count + 1));
+
+    return true;
+  }
+
+  /**
+   * Compile a select statement using the cache.
+   *
+   * @param grammar The grammar to compile.
+   * @return        The full select statement.
+   */
+  public String compileSelect(final Grammar grammar) {
+    QueryShape shape = grammar.shape("select");
+    String sql = this.lookup(shape);
+
+    return (sql != null) ? sql : this.store(shape, grammar.compileSelect());
+  }
+
+  /**
+   * Compile an insert statement using the cache.
+   *
+   * @param grammar The grammar to compile.
+   * @return        The full insert statement.
+   */
+  public String compileInsert(final Grammar grammar) {
+    QueryShape shape = grammar.shape("insert");
+    String sql = this.lookup(shape);
+
+    return (sql != null) ? sql : this.store(shape, grammar.compileInsert());
+  }
+
+  /**
+   * Compile an update statement using the cache.
+   *
+   * @param grammar The grammar to compile.
+   * @return        The full update statement.
+   */
+  public String compileUpdate(final Grammar grammar) {
+    QueryShape shape = grammar.shape("update");
+    String sql = this.lookup(shape);
+
+    return (sql != null) ? sql : this.store(shape, grammar.compileUpdate());
+  }
+
+  /**
+   * Compile a delete statement using the cache.
+   *
+   * @param grammar The grammar to compile.
+   * @return        The full delete statement.
+   */
+  public String compileDelete(final Grammar grammar) {
+    QueryShape shape = grammar.shape("delete");
+    String sql = this.lookup(shape);
+
+    return (sql != null) ? sql : this.store(shape, grammar.compileDelete());
+  }
+
+  /**
+   * Get the number of cached shapes.
+   *
+   * @return The number of cached shapes.
+   */
+  public int size() {
+    return this.statements.size();
+  }
+
+  /**
+   * Get the number of cache hits.
+   *
+   * @return The number of cache hits.
+   */
+  public long hits() {
+    return this.hits.get();
+  }
+
+  /**
+   * Get the number of cache misses.
+   *
+   * @return The number of cache misses.
+   */
+  public long misses() {
+    return this.misses.get();
+  }
+
+  /**
+   * Get the ratio of cache hits to cache lookups.
+   *
+   * @return The hit ratio between 0 and 1, or 0 if nothing has been looked up.
+   */
+  public double hitRatio() {
+    long hits = this.hits.get();
+    long lookups = hits + this.misses.get();
+
+    return (lookups > 0) ? (double) hits / lookups : 0;
+  }
+
+  /**
+   * Remove all cached shapes and reset the statistics.
+   */
+  public void clear() {
+    // Free the room of each shape as it is removed, so that shapes stored in
+    // the meantime are still counted.
+    for (QueryShape shape: this.statements.keySet()) {
+      if (this.statements.remove(shape) != null) {
+        this.count.decrementAndGet();
+      }
+    }
+
+    this.hits.set(0);
+    this.misses.set(0);
+  }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// Annotation utilities
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The Unique Key annotation makes the database reject any two models whose
+ * values of a set of fields are all the same.
+ *
+ * <p>
+ * The annotation is put on the model class and names the fields of the key,
+ * e.g. a ticket of which there can only be one per seat of a showtime:
+ *
+ * <pre>
+ * &#64;UniqueKey({"showtime", "row", "seat"})
+ * public final class Ticket extends Model {
+ * </pre>
+ *
+ * <p>
+ * The key is added to the table when it is created. Inserting a model that
+ * would violate the key throws a {@link java.sql.SQLException} and leaves
+ * the table untouched, which makes the key suitable for settling races
+ * between concurrent inserts.
+ *
+ * @see Model#insert()
+ *
+ * @since 1.1.0 Unique keys.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface UniqueKey {
+  /**
+   * The names of the fields of the key.
+   */
+  String[] value();
+}
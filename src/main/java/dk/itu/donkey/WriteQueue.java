@@ -0,0 +1,326 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.ArrayList;
+import java.util.List;
+
+// SQL utilities
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.sql.SQLException;
+
+// Concurrency utilities
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The Write Queue class funnels all writes to a database through a single
+ * writer thread.
+ *
+ * <p>
+ * SQLite only allows a single writer at a time, so concurrent writes on
+ * separate connections end up waiting on, or failing with, SQLITE_BUSY while
+ * paying for a commit each. The writer thread instead drains every write that
+ * is waiting in the queue and commits them together in a single transaction,
+ * i.e. a group commit. The more writes that queue up while a commit is in
+ * progress, the more writes share the next commit.
+ *
+ * <p>
+ * Each write runs within its own savepoint so that a failing write is rolled
+ * back without affecting the other writes of the group.
+ *
+ * @since 1.1.0 Single-writer group commit.
+ */
+final class WriteQueue {
+  /**
+   * Marker that tells the writer thread to stop.
+   */
+  private static final Write STOP = new Write(null, null);
+
+  /**
+   * The database to write to.
+   */
+  private final Database db;
+
+  /**
+   * The maximum number of writes to commit in a single transaction.
+   */
+  private final int batchSize;
+
+  /**
+   * The writes waiting to be committed.
+   */
+  private final BlockingQueue<Write> queue = new LinkedBlockingQueue<>();
+
+  /**
+   * The writer thread.
+   */
+  private final Thread thread;
+
+  /**
+   * The connection of the writer thread, if open.
+   */
+  private Connection connection;
+
+  /**
+   * Whether or not the queue has been closed.
+   */
+  private volatile boolean closed;
+
+  /**
+   * Initialize a write queue and start its writer thread.
+   *
+   * @param db        The database to write to.
+   * @param batchSize The maximum number of writes per transaction.
+   */
+  WriteQueue(final Database db, final int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be at least 1");
+    }
+
+    this.db = db;
+    this.batchSize = batchSize;
+    this.thread = new Thread(() -> this.run(), "donkey-writer");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Submit a write to the queue.
+   *
+   * @param sql     The SQL to execute, without any values.
+   * @param values  Any values to add to the precompiled SQL statement.
+   * @return        A future of the query result, completed once committed.
+   */
+  CompletableFuture<List<Row>> submit(
+    final String sql,
+    final List<Object> values
+  ) {
+    Write write = new Write(sql, values);
+
+    if (this.closed) {
+      write.future.completeExceptionally(
+        new SQLException("The write queue has been closed")
+      );
+    }
+    else {
+      this.queue.add(write);
+
+      // The writer thread may have died while the write was being added, in
+      // which case nothing will take it off the queue.
+      if (this.closed && this.queue.remove(write)) {
+        write.future.completeExceptionally(
+          new SQLException("The write queue has been closed")
+        );
+      }
+    }
+
+    return write.future;
+  }
+
+  /**
+   * Commit any pending writes and stop the writer thread.
+   */
+  void close() {
+    if (this.closed) {
+      return;
+    }
+
+    this.closed = true;
+    this.queue.add(WriteQueue.STOP);
+
+    try {
+      this.thread.join();
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+
+    // Fail any writes that snuck in behind the stop marker.
+    for (Write write: this.queue) {
+      if (write != WriteQueue.STOP) {
+        write.future.completeExceptionally(
+          new SQLException("The write queue has been closed")
+        );
+      }
+    }
+  }
+
+  /**
+   * Run the writer thread until stopped.
+   *
+   * <p>
+   * Should the writer thread die, the queue is closed and any writes waiting
+   * in it are failed rather than left waiting forever.
+   */
+  private void run() {
+    try {
+      this.drain();
+    }
+    finally {
+      this.closed = true;
+      this.disconnect();
+
+      Write write;
+
+      while ((write = this.queue.poll()) != null) {
+        write.future.completeExceptionally(
+          new SQLException("The write queue has been closed")
+        );
+      }
+    }
+  }
+
+  /**
+   * Take writes off the queue and commit them in groups until stopped.
+   */
+  private void drain() {
+    List<Write> batch = new ArrayList<>(this.batchSize);
+
+    boolean stop = false;
+
+    while (!stop) {
+      try {
+        batch.add(this.queue.take());
+      }
+      catch (InterruptedException ex) {
+        break;
+      }
+
+      // Grab whatever else is waiting in the queue.
+      this.queue.drainTo(batch, this.batchSize - 1);
+
+      stop = batch.remove(WriteQueue.STOP);
+
+      try {
+        this.commit(batch);
+      }
+      finally {
+        // Futures can only be completed once, so this only fails the writes
+        // of a group that was cut short, e.g. by an error.
+        for (Write write: batch) {
+          write.future.completeExceptionally(
+            new SQLException("The write was not committed")
+          );
+        }
+
+        batch.clear();
+      }
+    }
+  }
+
+  /**
+   * Execute and commit a group of writes in a single transaction.
+   *
+   * @param batch The writes to commit.
+   */
+  private void commit(final List<Write> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    List<Write> committed = new ArrayList<>(batch.size());
+
+    try {
+      if (this.connection == null) {
+        this.connection = this.db.connect();
+        this.connection.setAutoCommit(false);
+      }
+
+      for (Write write: batch) {
+        Savepoint savepoint = this.connection.setSavepoint();
+
+        try {
+          write.result = this.db.execute(
+            this.connection, write.sql, write.values
+          );
+
+          this.connection.releaseSavepoint(savepoint);
+          committed.add(write);
+        }
+        catch (SQLException | RuntimeException ex) {
+          this.connection.rollback(savepoint);
+          write.future.completeExceptionally(ex);
+        }
+      }
+
+      this.connection.commit();
+    }
+    catch (SQLException | RuntimeException ex) {
+      // The transaction itself failed, so none of the writes made it.
+      for (Write write: batch) {
+        write.future.completeExceptionally(ex);
+      }
+
+      this.disconnect();
+
+      return;
+    }
+
+    for (Write write: committed) {
+      write.future.complete(write.result);
+    }
+  }
+
+  /**
+   * Close the connection of the writer thread, if open.
+   */
+  private void disconnect() {
+    if (this.connection == null) {
+      return;
+    }
+
+    Connection connection = this.connection;
+    this.connection = null;
+
+    try {
+      connection.rollback();
+      connection.close();
+    }
+    catch (SQLException ex) {
+      // The connection is being thrown away regardless.
+      return;
+    }
+  }
+
+  /**
+   * The Write class describes a single write waiting in the queue.
+   */
+  private static final class Write {
+    /**
+     * The SQL to execute, without any values.
+     */
+    private final String sql;
+
+    /**
+     * Any values to add to the precompiled SQL statement.
+     */
+    private final List<Object> values;
+
+    /**
+     * The future to complete once the write has been committed.
+     */
+    private final CompletableFuture<List<Row>> future =
+      new CompletableFuture<>();
+
+    /**
+     * The result of the write, once executed.
+     */
+    private List<Row> result;
+
+    /**
+     * Initialize a write.
+     *
+     * @param sql     The SQL to execute, without any values.
+     * @param values  Any values to add to the precompiled SQL statement.
+     */
+    private Write(final String sql, final List<Object> values) {
+      this.sql = sql;
+      this.values = values;
+    }
+  }
+}
@@ -42,4 +42,14 @@ public final class SqliteGrammar extends Grammar {
   public void addAutoIncrement(final String column) {
     this.addColumn(this.buildAutoIncrement(column));
   }
+
+  /**
+   * Return the data type of binary columns.
+   *
+   * @return The data type of binary columns.
+   */
+  @Override
+  public String binaryType() {
+    return "blob";
+  }
 }
@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager and Sigrið Gyldenkærne Dalsgarð.
+ */
+package dk.itu.bookie.model;
+
+// General utilities
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// SQL utilities
+import java.sql.SQLException;
+
+// Donkey utilities
+import dk.itu.donkey.Model;
+
+// JUnit assertions
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// JUnit annotations
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * SeatAllocator class unit tests.
+ *
+ * @version 1.1.0
+ */
+public final class SeatAllocatorTest {
+  /**
+   * The showtime whose seats to hold.
+   */
+  private static Showtime showtime;
+
+  /**
+   * Create the tables and showtime in an in-memory database.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @BeforeClass
+  public static void beforeClass() throws SQLException {
+    System.setProperty("bookie.database", ":memory:");
+
+    Auditorium auditorium = new Auditorium();
+    auditorium.name.set("Sal 1");
+    auditorium.rows.set(2);
+    auditorium.seats.set(70);
+    auditorium.insert();
+
+    Movie movie = new Movie();
+    movie.name.set("Interstellar");
+    movie.insert();
+
+    SeatAllocatorTest.showtime = new Showtime();
+    SeatAllocatorTest.showtime.movie.set(movie);
+    SeatAllocatorTest.showtime.auditorium.set(auditorium);
+    SeatAllocatorTest.showtime.insert();
+
+    new Hold().createTable();
+  }
+
+  /**
+   * Test that a hold that expires releases its seats for other holds.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testHoldExpiry() throws SQLException {
+    TimingWheel wheel = new TimingWheel(
+      1, TimeUnit.HOURS, 8, (task) -> task.run(), false
+    );
+
+    // Holds are due as soon as they're renewed, but only expire once the
+    // wheel is turned.
+    SeatAllocator allocator = new SeatAllocator(wheel, 0);
+
+    AtomicInteger expired = new AtomicInteger();
+
+    Hold a = allocator.hold(
+      SeatAllocatorTest.showtime, () -> expired.incrementAndGet()
+    );
+    Hold b = allocator.hold(SeatAllocatorTest.showtime, () -> { });
+
+    allocator.hold(a, 1, 64);
+
+    try {
+      allocator.hold(b, 1, 64);
+      fail("A seat can't be held by two holds");
+    }
+    catch (SeatsTakenException ex) {
+      assertTrue(ex.seats().get(1, 64));
+    }
+
+    wheel.turn();
+
+    assertEquals(1, expired.get());
+    assertTrue(a.held().isEmpty());
+
+    // The claim of the expired hold is gone, so the seat can be held again.
+    allocator.hold(b, 1, 64);
+
+    assertTrue(b.held().get(1, 64));
+
+    // An expired hold can't hold seats anymore.
+    allocator.hold(a, 0, 0);
+
+    assertTrue(a.held().isEmpty());
+
+    allocator.release(b);
+  }
+
+  /**
+   * Test that a reservation is only replaced if the seats of the new one can
+   * be reserved.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testReplaceReservation() throws SQLException {
+    SeatAllocator allocator = new SeatAllocator();
+
+    Reservation other = allocator.allocate(
+      SeatAllocatorTest.showtime, 12345678, false, this.seats(0, 1)
+    );
+
+    Reservation replaced = allocator.allocate(
+      SeatAllocatorTest.showtime, 87654321, false, this.seats(0, 0)
+    );
+
+    try {
+      allocator.allocate(
+        SeatAllocatorTest.showtime,
+        87654321,
+        false,
+        this.seats(0, 0, 0, 1),
+        null,
+        replaced
+      );
+      fail("A seat of another reservation can't be reserved");
+    }
+    catch (SeatsTakenException ex) {
+      // Only the seat of the other reservation counts as taken.
+      assertEquals(1, ex.seats().count());
+      assertTrue(ex.seats().get(0, 1));
+    }
+
+    // The replaced reservation is left as is.
+    assertNotNull(replaced.id());
+    assertEquals(1, Model.find(Reservation.class)
+      .where("id", replaced.id())
+      .get()
+      .size());
+    assertTrue(SeatAllocatorTest.showtime.fetchTakenSeats().get(0, 0));
+
+    Reservation reservation = allocator.allocate(
+      SeatAllocatorTest.showtime,
+      87654321,
+      false,
+      this.seats(0, 0, 0, 2),
+      null,
+      replaced
+    );
+
+    assertNull(replaced.id());
+    assertEquals(2, reservation.tickets.size());
+
+    SeatMap taken = SeatAllocatorTest.showtime.fetchTakenSeats();
+
+    assertEquals(3, taken.count());
+    assertTrue(taken.get(0, 0));
+    assertTrue(taken.get(0, 1));
+    assertTrue(taken.get(0, 2));
+
+    reservation.delete();
+    other.delete();
+  }
+
+  /**
+   * Create a seat map of the showtime with some seats set.
+   *
+   * @param seats The rows and seat numbers of the seats to set.
+   * @return      The seat map.
+   */
+  private SeatMap seats(final int... seats) {
+    SeatMap map = new SeatMap(2, 70);
+
+    for (int i = 0; i < seats.length; i += 2) {
+      map.set(seats[i], seats[i + 1]);
+    }
+
+    return map;
+  }
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager and Sigrið Gyldenkærne Dalsgarð.
+ */
+package dk.itu.bookie.model;
+
+// JUnit assertions
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// JUnit annotations
+import org.junit.Test;
+
+/**
+ * SeatFinder class unit tests.
+ *
+ * @version 1.1.0
+ */
+public final class SeatFinderTest {
+  /**
+   * Test finding a block of free seats that straddles a word boundary.
+   */
+  @Test
+  public void testBlockAcrossWords() {
+    SeatMap taken = this.taken(1, 128);
+
+    this.free(taken, 0, 60, 70);
+
+    SeatMap found = SeatFinder.find(taken, 10);
+
+    assertEquals(10, found.count());
+    this.assertBlock(found, 0, 60, 70);
+
+    // With the last seat of the block taken, a smaller party still fits.
+    taken.set(0, 69);
+
+    assertTrue(SeatFinder.find(taken, 10).isEmpty());
+
+    found = SeatFinder.find(taken, 9);
+
+    assertEquals(9, found.count());
+    this.assertBlock(found, 0, 60, 69);
+  }
+
+  /**
+   * Test finding seats in rows that end exactly at a word boundary.
+   */
+  @Test
+  public void testRowsOfWholeWords() {
+    SeatMap taken = new SeatMap(1, 64);
+
+    SeatMap found = SeatFinder.find(taken, 64);
+
+    assertEquals(64, found.count());
+
+    found = SeatFinder.find(taken, 2);
+
+    this.assertBlock(found, 0, 31, 33);
+
+    // A block that ends at the last seat of the row.
+    taken = this.taken(2, 128);
+    this.free(taken, 1, 124, 128);
+
+    found = SeatFinder.find(taken, 4);
+
+    this.assertBlock(found, 1, 124, 128);
+  }
+
+  /**
+   * Test that blocks don't run past the last seat of a row that ends within
+   * a word.
+   */
+  @Test
+  public void testRowsWithTail() {
+    SeatMap taken = this.taken(2, 70);
+
+    this.free(taken, 0, 67, 70);
+    this.free(taken, 1, 0, 1);
+
+    SeatMap found = SeatFinder.find(taken, 4);
+
+    // There is no block of 4 seats, so the party is split into a block of 3
+    // and a single seat.
+    assertEquals(4, found.count());
+    this.assertBlock(found, 0, 67, 70);
+    assertTrue(found.get(1, 0));
+  }
+
+  /**
+   * Test splitting a party that is larger than a row.
+   */
+  @Test
+  public void testPartyLargerThanRow() {
+    SeatMap taken = new SeatMap(3, 10);
+
+    SeatMap found = SeatFinder.find(taken, 15);
+
+    assertEquals(15, found.count());
+
+    // The center row is filled and the rest of the party placed as close to
+    // its center as possible.
+    this.assertBlock(found, 1, 0, 10);
+    this.assertBlock(found, 0, 2, 7);
+  }
+
+  /**
+   * Test that no seats are found if there aren't enough free seats.
+   */
+  @Test
+  public void testFullAuditorium() {
+    SeatMap taken = this.taken(3, 70);
+
+    assertTrue(SeatFinder.find(taken, 1).isEmpty());
+
+    this.free(taken, 1, 10, 12);
+
+    assertTrue(SeatFinder.find(taken, 3).isEmpty());
+    assertEquals(2, SeatFinder.find(taken, 2).count());
+  }
+
+  /**
+   * Test that the first of two equally central blocks is found.
+   */
+  @Test
+  public void testTies() {
+    // The center of the row lies between seats 4 and 5, so the blocks
+    // starting at seats 3 and 4 are equally central.
+    SeatMap found = SeatFinder.find(new SeatMap(1, 10), 3);
+
+    assertEquals(3, found.count());
+    this.assertBlock(found, 0, 3, 6);
+
+    // The center of the auditorium lies between rows 0 and 1.
+    found = SeatFinder.find(new SeatMap(2, 10), 2);
+
+    assertEquals(2, found.count());
+    this.assertBlock(found, 0, 4, 6);
+  }
+
+  /**
+   * Test that a party needs at least one seat.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyParty() {
+    SeatFinder.find(new SeatMap(1, 10), 0);
+  }
+
+  /**
+   * Create a seat map with all seats taken.
+   *
+   * @param rows  The number of rows.
+   * @param seats The number of seats per row.
+   * @return      The seat map.
+   */
+  private SeatMap taken(final int rows, final int seats) {
+    SeatMap taken = new SeatMap(rows, seats);
+
+    for (int row = 0; row < rows; row++) {
+      for (int seat = 0; seat < seats; seat++) {
+        taken.set(row, seat);
+      }
+    }
+
+    return taken;
+  }
+
+  /**
+   * Free a block of seats.
+   *
+   * @param taken The seats that are taken.
+   * @param row   The row of the block.
+   * @param from  The first seat of the block.
+   * @param to    The seat after the last seat of the block.
+   */
+  private void free(
+    final SeatMap taken,
+    final int row,
+    final int from,
+    final int to
+  ) {
+    for (int seat = from; seat < to; seat++) {
+      taken.clear(row, seat);
+    }
+  }
+
+  /**
+   * Assert that a block of seats has been found.
+   *
+   * @param found The seats found.
+   * @param row   The row of the block.
+   * @param from  The first seat of the block.
+   * @param to    The seat after the last seat of the block.
+   */
+  private void assertBlock(
+    final SeatMap found,
+    final int row,
+    final int from,
+    final int to
+  ) {
+    for (int seat = from; seat < to; seat++) {
+      assertTrue("Seat " + seat + " of row " + row, found.get(row, seat));
+    }
+  }
+}
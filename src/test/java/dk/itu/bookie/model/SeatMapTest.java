@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager and Sigrið Gyldenkærne Dalsgarð.
+ */
+package dk.itu.bookie.model;
+
+// JUnit assertions
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// JUnit annotations
+import org.junit.Test;
+
+/**
+ * SeatMap class unit tests.
+ *
+ * @version 1.1.0
+ */
+public final class SeatMapTest {
+  /**
+   * Test setting, clearing, and counting seats on both sides of a word
+   * boundary.
+   */
+  @Test
+  public void testSeatsAcrossWords() {
+    SeatMap map = new SeatMap(2, 100);
+
+    map.set(0, 63);
+    map.set(0, 64);
+    map.set(1, 99);
+
+    assertTrue(map.get(0, 63));
+    assertTrue(map.get(0, 64));
+    assertFalse(map.get(0, 0));
+    assertFalse(map.get(1, 35));
+    assertTrue(map.get(1, 99));
+    assertEquals(3, map.count());
+
+    map.clear(0, 64);
+
+    assertTrue(map.get(0, 63));
+    assertFalse(map.get(0, 64));
+    assertEquals(2, map.count());
+  }
+
+  /**
+   * Test that seats outside of the seat map can't be touched.
+   */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testSeatOutOfBounds() {
+    new SeatMap(2, 64).set(0, 64);
+  }
+
+  /**
+   * Test the stored layout of a seat map: the little-endian bytes of its
+   * words, with each row starting at a new word.
+   */
+  @Test
+  public void testToBytes() {
+    SeatMap map = new SeatMap(2, 70);
+
+    map.set(0, 0);
+    map.set(0, 9);
+    map.set(0, 64);
+    map.set(1, 69);
+
+    byte[] bytes = map.toBytes();
+
+    // Two words per row.
+    assertEquals(32, bytes.length);
+    assertEquals(0x01, bytes[0]);
+    assertEquals(0x02, bytes[1]);
+    assertEquals(0x01, bytes[8]);
+    assertEquals(0x20, bytes[24]);
+    assertEquals(4, this.countBits(bytes));
+  }
+
+  /**
+   * Test that a seat map survives a round trip through its bytes.
+   */
+  @Test
+  public void testRoundTrip() {
+    for (int seats: new int[] {1, 63, 64, 65, 128, 130}) {
+      SeatMap map = new SeatMap(3, seats);
+
+      for (int row = 0; row < 3; row++) {
+        for (int seat = row; seat < seats; seat += 3) {
+          map.set(row, seat);
+        }
+      }
+
+      SeatMap copy = SeatMap.fromBytes(3, seats, map.toBytes());
+
+      assertArrayEquals(map.toArray(), copy.toArray());
+      assertEquals(map.count(), copy.count());
+    }
+  }
+
+  /**
+   * Test that missing bytes are read as empty seats and that extra bytes are
+   * ignored.
+   */
+  @Test
+  public void testFromShortBytes() {
+    assertTrue(SeatMap.fromBytes(2, 70, null).isEmpty());
+    assertTrue(SeatMap.fromBytes(2, 70, new byte[0]).isEmpty());
+
+    SeatMap map = SeatMap.fromBytes(2, 70, new byte[] {0x05});
+
+    assertTrue(map.get(0, 0));
+    assertTrue(map.get(0, 2));
+    assertEquals(2, map.count());
+
+    // A seat map of 1 x 8 seats only reads the first byte of its word.
+    byte[] bytes = new byte[16];
+    bytes[0] = 0x01;
+    bytes[8] = 0x01;
+
+    assertEquals(1, SeatMap.fromBytes(1, 8, bytes).count());
+  }
+
+  /**
+   * Test combining seat maps.
+   */
+  @Test
+  public void testCombining() {
+    SeatMap a = new SeatMap(1, 100);
+    a.set(0, 1);
+    a.set(0, 70);
+
+    SeatMap b = new SeatMap(1, 100);
+    b.set(0, 70);
+    b.set(0, 99);
+
+    SeatMap or = a.copy().or(b);
+    assertEquals(3, or.count());
+
+    SeatMap and = a.copy().and(b);
+    assertEquals(1, and.count());
+    assertTrue(and.get(0, 70));
+
+    SeatMap andNot = a.copy().andNot(b);
+    assertEquals(1, andNot.count());
+    assertTrue(andNot.get(0, 1));
+
+    // Combining works on copies, leaving the original be.
+    assertEquals(2, a.count());
+  }
+
+  /**
+   * Test that only seat maps of the same size can be combined.
+   */
+  @Test
+  public void testCombiningSizes() {
+    SeatMap map = new SeatMap(2, 10);
+
+    SeatMap[] others = new SeatMap[] {
+      new SeatMap(3, 10),
+      new SeatMap(2, 11),
+      // Same number of words, but a different number of seats.
+      new SeatMap(2, 12)
+    };
+
+    for (SeatMap other: others) {
+      try {
+        map.or(other);
+        fail("Seat maps of different sizes can't be or'ed");
+      }
+      catch (IllegalArgumentException ex) {
+        assertEquals("Seat maps differ in size", ex.getMessage());
+      }
+
+      try {
+        map.and(other);
+        fail("Seat maps of different sizes can't be and'ed");
+      }
+      catch (IllegalArgumentException ex) {
+        assertEquals("Seat maps differ in size", ex.getMessage());
+      }
+
+      try {
+        map.andNot(other);
+        fail("Seat maps of different sizes can't be and-not'ed");
+      }
+      catch (IllegalArgumentException ex) {
+        assertEquals("Seat maps differ in size", ex.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Count the bits set in an array of bytes.
+   *
+   * @param bytes The bytes.
+   * @return      The number of bits set.
+   */
+  private int countBits(final byte[] bytes) {
+    int count = 0;
+
+    for (byte b: bytes) {
+      count += Integer.bitCount(b & 0xFF);
+    }
+
+    return count;
+  }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager and Sigrið Gyldenkærne Dalsgarð.
+ */
+package dk.itu.bookie.model;
+
+// General utilities
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// JUnit assertions
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// JUnit annotations
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * TimingWheel class unit tests.
+ *
+ * <p>
+ * Unless noted otherwise, the wheels are turned by hand and run their tasks
+ * on the turning thread. A tick lasts an hour so that no test runs long
+ * enough for time, rather than the number of turns, to decide when a task is
+ * due.
+ *
+ * @version 1.1.0
+ */
+public final class TimingWheelTest {
+  /**
+   * The number of ticks per turn of the wheel.
+   */
+  private static final int SIZE = 8;
+
+  /**
+   * The wheel to test.
+   */
+  private TimingWheel wheel;
+
+  /**
+   * The number of tasks that have been run.
+   */
+  private AtomicInteger runs;
+
+  /**
+   * Create a wheel that is turned by hand.
+   */
+  @Before
+  public void before() {
+    this.wheel = new TimingWheel(
+      1, TimeUnit.HOURS, TimingWheelTest.SIZE, (task) -> task.run(), false
+    );
+    this.runs = new AtomicInteger();
+  }
+
+  /**
+   * Test that a task without a delay is run on the next tick.
+   */
+  @Test
+  public void testNoDelay() {
+    TimingWheel.Timeout timeout = this.wheel.schedule(
+      () -> this.runs.incrementAndGet(), 0, TimeUnit.HOURS
+    );
+
+    assertEquals(0, this.runs.get());
+
+    this.wheel.turn();
+
+    assertEquals(1, this.runs.get());
+    assertTrue(timeout.isExpired());
+
+    this.turn(TimingWheelTest.SIZE * 2);
+
+    // The task is only run once.
+    assertEquals(1, this.runs.get());
+  }
+
+  /**
+   * Test that a task delayed by a full turn of the wheel waits for the
+   * bucket it lands in to come around again.
+   */
+  @Test
+  public void testDelayOfWheelSize() {
+    TimingWheel.Timeout timeout = this.wheel.schedule(
+      () -> this.runs.incrementAndGet(), TimingWheelTest.SIZE, TimeUnit.HOURS
+    );
+
+    this.turn(TimingWheelTest.SIZE - 1);
+
+    assertEquals(0, this.runs.get());
+    assertFalse(timeout.isExpired());
+
+    this.turn(2);
+
+    assertEquals(1, this.runs.get());
+    assertTrue(timeout.isExpired());
+  }
+
+  /**
+   * Test that a task cancelled before it's due is never run.
+   */
+  @Test
+  public void testCancelBeforeExpiry() {
+    TimingWheel.Timeout timeout = this.wheel.schedule(
+      () -> this.runs.incrementAndGet(), 2, TimeUnit.HOURS
+    );
+
+    this.wheel.turn();
+
+    assertTrue(timeout.cancel());
+
+    this.turn(TimingWheelTest.SIZE * 2);
+
+    assertEquals(0, this.runs.get());
+    assertFalse(timeout.isExpired());
+  }
+
+  /**
+   * Test that a task can't be cancelled once it has been run.
+   */
+  @Test
+  public void testCancelAfterExpiry() {
+    TimingWheel.Timeout timeout = this.wheel.schedule(
+      () -> this.runs.incrementAndGet(), 0, TimeUnit.HOURS
+    );
+
+    this.wheel.turn();
+
+    assertFalse(timeout.cancel());
+    assertTrue(timeout.isExpired());
+    assertEquals(1, this.runs.get());
+  }
+
+  /**
+   * Test that a wheel that turns by itself counts deadlines from when it
+   * starts turning rather than from when it was created.
+   *
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  @Test
+  public void testIdleBeforeTurning() throws InterruptedException {
+    TimingWheel wheel = new TimingWheel(
+      10, TimeUnit.MILLISECONDS, 8, (task) -> task.run()
+    );
+
+    // Leave the wheel idle for many turns before scheduling anything.
+    Thread.sleep(1000);
+
+    CountDownLatch latch = new CountDownLatch(1);
+
+    long scheduled = System.nanoTime();
+
+    wheel.schedule(() -> latch.countDown(), 50, TimeUnit.MILLISECONDS);
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(
+      System.nanoTime() - scheduled
+    );
+
+    // Leave plenty of room for a slow machine, while still ruling out the
+    // second of idling.
+    assertTrue("Ran after " + elapsed + " ms", elapsed >= 50);
+    assertTrue("Ran after " + elapsed + " ms", elapsed < 500);
+  }
+
+  /**
+   * Turn the wheel a number of times.
+   *
+   * @param turns The number of times to turn the wheel.
+   */
+  private void turn(final int turns) {
+    for (int i = 0; i < turns; i++) {
+      this.wheel.turn();
+    }
+  }
+}
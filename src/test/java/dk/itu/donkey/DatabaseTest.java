@@ -4,16 +4,29 @@
 package dk.itu.donkey;
 
 // General utilities
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
 
+// IO utilities
+import java.io.File;
+
 // SQL utilities
 import java.sql.Connection;
 import java.sql.SQLException;
 
+// Concurrency utilities
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
 // JUnit assertions
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 // JUnit annotations
 import org.junit.After;
@@ -124,6 +137,611 @@ public final class DatabaseTest {
     (new Database(Driver.SQLITE, new Properties())).connect();
   }
 
+  /**
+   * Test that SQLite connections are opened with the tuning pragmas.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testSqliteTuning() throws SQLException {
+    Properties config = new Properties();
+    config.put("database", "test");
+    config.put("synchronous", "OFF");
+    config.put("cache_size", "-4096");
+
+    Database db = new Database(Driver.SQLITE, config);
+
+    assertEquals("wal", db.execute("pragma journal_mode").get(0).get(
+      "journal_mode"
+    ));
+    assertEquals(0, db.execute("pragma synchronous").get(0).get(
+      "synchronous"
+    ));
+    assertEquals(-4096, db.execute("pragma cache_size").get(0).get(
+      "cache_size"
+    ));
+    assertEquals(5000, db.execute("pragma busy_timeout").get(0).get(
+      "timeout"
+    ));
+  }
+
+  /**
+   * Test funneling concurrent SQLite writes through the write queue.
+   *
+   * @throws Exception In case of an error.
+   */
+  @Test
+  public void testSqliteWriteQueue() throws Exception {
+    Properties config = new Properties();
+    config.put("database", "test");
+    config.put("write_queue", "true");
+
+    Database db = new Database(Driver.SQLITE, config);
+    db.execute("create table test (test integer unique)");
+
+    List<CompletableFuture<List<Row>>> writes = new ArrayList<>();
+
+    for (int i = 0; i < 100; i++) {
+      List<Object> values = new ArrayList<>();
+      values.add(i % 50);
+
+      writes.add(db.submit("insert into test (test) values (?)", values));
+    }
+
+    int failed = 0;
+
+    for (CompletableFuture<List<Row>> write: writes) {
+      try {
+        // Each successful insert returns its generated key.
+        assertEquals(1, write.get().size());
+      }
+      catch (ExecutionException ex) {
+        assertTrue(ex.getCause() instanceof SQLException);
+        failed++;
+      }
+    }
+
+    // Failing writes don't affect the rest of their group.
+    assertEquals(50, failed);
+    assertEquals(50, db.execute("select test from test").size());
+
+    db.execute("drop table test");
+    db.close();
+
+    try {
+      db.execute("drop table if exists test");
+      fail("Writes should fail once the queue has been closed");
+    }
+    catch (SQLException ex) {
+      assertEquals("The write queue has been closed", ex.getMessage());
+    }
+  }
+
+  /**
+   * Test that a write throwing a runtime exception neither affects the rest
+   * of its group nor stops the write queue.
+   *
+   * @throws Exception In case of an error.
+   */
+  @Test
+  public void testSqliteWriteQueueRuntimeException() throws Exception {
+    Properties config = new Properties();
+    config.put("database", "test");
+    config.put("write_queue", "true");
+
+    Database db = new Database(Driver.SQLITE, config);
+    db.execute("create table test (test integer)");
+
+    List<Object> broken = new AbstractList<Object>() {
+      @Override
+      public Object get(final int index) {
+        throw new IllegalStateException("broken");
+      }
+
+      @Override
+      public int size() {
+        return 1;
+      }
+    };
+
+    List<Object> values = new ArrayList<>();
+    values.add(1);
+
+    CompletableFuture<List<Row>> write1 = db.submit(
+      "insert into test (test) values (?)", broken
+    );
+    CompletableFuture<List<Row>> write2 = db.submit(
+      "insert into test (test) values (?)", values
+    );
+
+    try {
+      write1.get();
+      fail("The broken write should fail");
+    }
+    catch (ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof IllegalStateException);
+    }
+
+    assertEquals(1, write2.get().size());
+
+    // The writer thread is still around to take later writes.
+    db.execute("insert into test (test) values (?)", values);
+    assertEquals(2, db.execute("select test from test").size());
+
+    db.execute("drop table test");
+    db.close();
+  }
+
+  /**
+   * Test counting the rows changed by a write on a database with a write
+   * queue, which executes the write outside of the queue.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testSqliteWriteQueueUpdateCount() throws SQLException {
+    Properties config = new Properties();
+    config.put("database", "test");
+    config.put("write_queue", "true");
+
+    Database db = new Database(Driver.SQLITE, config);
+    db.execute("create table test (test integer)");
+
+    List<Object> values = new ArrayList<>();
+    values.add(1);
+
+    db.execute("insert into test (test) values (?)", values);
+    db.execute("insert into test (test) values (?)", values);
+
+    String sql = "delete from test where test = ?";
+
+    assertEquals(2, db.executeUpdate(sql, values));
+    assertEquals(0, db.executeUpdate(sql, values));
+
+    db.execute("drop table test");
+    db.close();
+  }
+
+  /**
+   * Test routing SQLite reads to the reader pool.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testSqliteReaderPool() throws SQLException {
+    Properties config = new Properties();
+    config.put("database", "test");
+    config.put("read_pool", "2");
+
+    Database db = new Database(Driver.SQLITE, config);
+    db.execute("create table test (test integer)");
+
+    List<Object> values = new ArrayList<>();
+    values.add(1);
+
+    // Writes go to a regular connection...
+    db.execute("insert into test (test) values (?)", values);
+
+    // ...while reads go to a read-only connection.
+    assertEquals(1, db.execute("pragma query_only").get(0).get(
+      "query_only"
+    ));
+    assertEquals(1, db.execute("select test from test").size());
+    assertEquals(1, db.table("test").count());
+
+    db.execute("drop table test");
+    db.close();
+  }
+
+  /**
+   * Test that concurrent first reads of a database that doesn't exist yet
+   * all wait for it to be created.
+   *
+   * @throws Exception In case of an error.
+   */
+  @Test
+  public void testSqliteReaderPoolCreation() throws Exception {
+    File directory = new File(System.getProperty("java.io.tmpdir"));
+    File file = new File(directory, "donkey-readers.sqlite");
+    file.delete();
+
+    Properties config = new Properties();
+    config.put("database", "test");
+    config.put("directory", directory.getPath());
+    config.put("file", "donkey-readers.sqlite");
+    config.put("read_pool", "4");
+
+    Database db = new Database(Driver.SQLITE, config);
+
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicReference<Exception> error = new AtomicReference<>();
+    List<Thread> threads = new ArrayList<>();
+
+    for (int i = 0; i < 4; i++) {
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+          db.execute("select 1");
+        }
+        catch (Exception ex) {
+          error.compareAndSet(null, ex);
+        }
+      });
+
+      thread.start();
+      threads.add(thread);
+    }
+
+    start.countDown();
+
+    for (Thread thread: threads) {
+      thread.join();
+    }
+
+    db.close();
+    file.delete();
+
+    if (error.get() != null) {
+      throw error.get();
+    }
+  }
+
+  /**
+   * Test in-memory SQLite databases.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testSqliteMemory() throws SQLException {
+    Properties config = new Properties();
+    config.put("database", ":memory:");
+
+    Database db1 = new Database(Driver.SQLITE, config);
+    Database db2 = new Database(Driver.SQLITE, config);
+
+    // The database outlives the connection that created the table...
+    db1.execute("create table test (test integer)");
+    assertEquals(0, db1.execute("select test from test").size());
+
+    // ...but isn't shared with other databases.
+    assertEquals(0, db2.execute(
+      "select name from sqlite_master where name = 'test'"
+    ).size());
+
+    db1.close();
+    db2.close();
+
+    Properties shared = new Properties();
+    shared.put("database", "file::memory:?cache=shared");
+    shared.put("read_pool", "1");
+
+    Database db3 = new Database(Driver.SQLITE, shared);
+    db3.execute("create table test (test integer)");
+    db3.execute("insert into test (test) values (1)");
+    assertEquals(1, db3.execute("select test from test").size());
+    db3.close();
+  }
+
+  /**
+   * Test placing SQLite database files in a given directory.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testSqliteDirectory() throws SQLException {
+    File directory = new File(System.getProperty("java.io.tmpdir"));
+    File file = new File(directory, "donkey-test.sqlite");
+    file.delete();
+
+    Properties config = new Properties();
+    config.put("database", "test");
+    config.put("directory", directory.getPath());
+    config.put("file", "donkey-test.sqlite");
+
+    (new Database(Driver.SQLITE, config)).connect().close();
+
+    assertTrue(file.exists());
+    file.delete();
+  }
+
+  /**
+   * Test balancing reads across read replicas.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testReplicaRouting() throws SQLException {
+    Properties primary = new Properties();
+    primary.put("database", "test");
+    primary.put("replica_pin", "60000");
+
+    List<Properties> replicas = new ArrayList<>();
+
+    for (int i = 1; i <= 2; i++) {
+      Properties replica = new Properties();
+      replica.put("database", "test_replica" + i);
+      replicas.add(replica);
+
+      // Seed each replica with a different number of rows.
+      Database db = new Database(Driver.SQLITE, replica);
+      db.execute("drop table if exists test");
+      db.execute("create table test (test integer)");
+
+      for (int j = 0; j < i; j++) {
+        db.execute("insert into test (test) values (1)");
+      }
+    }
+
+    Database db = new Database(Driver.SQLITE, primary, replicas);
+
+    // Reads take turns between the replicas...
+    assertEquals(1, db.execute("select test from test").size());
+    assertEquals(2, db.execute("select test from test").size());
+    assertEquals(1, db.execute("select test from test").size());
+
+    // ...until a write pins them to the primary.
+    db.execute("create table test (test integer)");
+    assertEquals(0, db.execute("select test from test").size());
+
+    for (Properties replica: replicas) {
+      (new Database(Driver.SQLITE, replica)).execute("drop table test");
+    }
+  }
+
+  /**
+   * Test bulk loading rows into a table.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testBulkLoad() throws SQLException {
+    for (Database db: this.databases) {
+      db.execute("create table test (test1 varchar(255), test2 integer)");
+
+      List<Row> rows = new ArrayList<>();
+
+      for (int i = 0; i < 1234; i++) {
+        Row row = new Row();
+        row.put("test1", "tab\tand\nnewline " + i);
+        row.put("test2", (i % 2 == 0) ? i : null);
+        rows.add(row);
+      }
+
+      List<String> columns = new ArrayList<>();
+      columns.add("test1");
+      columns.add("test2");
+
+      assertEquals(1234, db.bulkLoad("test", columns, rows.iterator()));
+
+      List<Row> res = db.execute("select test1, test2 from test");
+      assertEquals(1234, res.size());
+      assertEquals("tab\tand\nnewline 2", res.get(2).get("test1"));
+      assertEquals(2, res.get(2).get("test2"));
+      assertEquals(617, db.execute(
+        "select test1 from test where test2 is null"
+      ).size());
+
+      db.execute("drop table test");
+    }
+  }
+
+  /**
+   * Test that a bulk load failing halfway through loads none of the rows.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testBulkLoadFailure() throws SQLException {
+    for (Database db: this.databases) {
+      db.execute("create table test (test1 varchar(255), test2 integer)");
+
+      List<String> columns = new ArrayList<>();
+      columns.add("test1");
+      columns.add("test2");
+
+      // Fail after several full batches have been inserted.
+      Iterator<Row> rows = new Iterator<Row>() {
+        private int i;
+
+        @Override
+        public boolean hasNext() {
+          return true;
+        }
+
+        @Override
+        public Row next() {
+          if (this.i == 1500) {
+            throw new IllegalStateException("broken");
+          }
+
+          Row row = new Row();
+          row.put("test1", "test " + this.i);
+          row.put("test2", this.i++);
+
+          return row;
+        }
+      };
+
+      try {
+        db.bulkLoad("test", columns, rows);
+        fail("The bulk load should fail");
+      }
+      catch (IllegalStateException ex) {
+        assertEquals("broken", ex.getMessage());
+      }
+
+      assertEquals(0, db.execute("select test1 from test").size());
+
+      db.execute("drop table test");
+    }
+  }
+
+  /**
+   * Test executing SQL asynchronously on a custom executor.
+   *
+   * @throws Exception In case of an error.
+   */
+  @Test
+  public void testAsyncExecution() throws Exception {
+    for (Database db: this.databases) {
+      List<Thread> threads = new ArrayList<>();
+
+      db.executor((task) -> {
+        Thread thread = new Thread(task);
+        threads.add(thread);
+        thread.start();
+      });
+
+      List<Object> none = new ArrayList<>();
+
+      db.executeAsync("create table test (test varchar(255))", none).get();
+
+      List<Object> values = new ArrayList<>();
+      values.add("test");
+
+      db.executeAsync("insert into test (test) values (?)", values).get();
+
+      List<Row> res = db.executeAsync("select test from test", none).get();
+      assertEquals(1, res.size());
+      assertEquals("test", res.get(0).get("test"));
+      assertEquals(3, threads.size());
+
+      // Failing SQL completes the future exceptionally with the SQL error.
+      try {
+        db.executeAsync("select nothing from nowhere", none).get();
+        fail();
+      }
+      catch (ExecutionException ex) {
+        assertTrue(ex.getCause() instanceof SQLException);
+      }
+
+      db.execute("drop table test");
+    }
+  }
+
+  /**
+   * Test committing and rolling back transactions.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testTransaction() throws SQLException {
+    for (Database db: this.databases) {
+      db.execute("create table test (test varchar(255))");
+
+      List<Object> values = new ArrayList<>();
+      values.add("test");
+
+      // A transaction that returns is committed, along with any transaction
+      // nested within it.
+      assertEquals("done", db.transaction(() -> {
+        db.execute("insert into test (test) values (?)", values);
+
+        db.transaction(() -> {
+          return db.execute("insert into test (test) values (?)", values);
+        });
+
+        // Reads within the transaction see its writes.
+        assertEquals(2, db.execute("select test from test").size());
+
+        return "done";
+      }));
+
+      assertEquals(2, db.execute("select test from test").size());
+
+      // A transaction that throws is rolled back, including any rows loaded
+      // in bulk within it.
+      try {
+        db.transaction(() -> {
+          db.execute("insert into test (test) values (?)", values);
+
+          Row row = new Row();
+          row.put("test", "bulk");
+
+          List<String> columns = new ArrayList<>();
+          columns.add("test");
+
+          List<Row> rows = new ArrayList<>();
+          rows.add(row);
+
+          db.bulkLoad("test", columns, rows.iterator());
+
+          throw new IllegalStateException("Rollback");
+        });
+
+        fail();
+      }
+      catch (IllegalStateException ex) {
+        assertEquals("Rollback", ex.getMessage());
+      }
+
+      assertEquals(2, db.execute("select test from test").size());
+
+      // Checked exceptions other than SQL errors are wrapped.
+      try {
+        db.transaction(() -> {
+          throw new Exception("Checked");
+        });
+
+        fail();
+      }
+      catch (SQLException ex) {
+        assertEquals("Checked", ex.getCause().getMessage());
+      }
+
+      db.execute("drop table test");
+    }
+  }
+
+  /**
+   * Test running tasks once a transaction commits.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testAfterCommit() throws SQLException {
+    for (Database db: this.databases) {
+      List<String> commits = new ArrayList<>();
+
+      // Outside of a transaction, tasks run right away.
+      db.afterCommit(() -> commits.add("now"));
+      assertEquals(1, commits.size());
+
+      // Tasks added within nested transactions wait for the outermost one.
+      db.transaction(() -> {
+        db.afterCommit(() -> commits.add("outer"));
+
+        db.transaction(() -> {
+          db.afterCommit(() -> commits.add("inner"));
+
+          return null;
+        });
+
+        assertEquals(1, commits.size());
+
+        return null;
+      });
+
+      assertEquals("now", commits.get(0));
+      assertEquals("outer", commits.get(1));
+      assertEquals("inner", commits.get(2));
+
+      // Tasks of a transaction that is rolled back are dropped.
+      try {
+        db.transaction(() -> {
+          db.afterCommit(() -> commits.add("rollback"));
+
+          throw new IllegalStateException("Rollback");
+        });
+
+        fail();
+      }
+      catch (IllegalStateException ex) {
+        assertEquals(3, commits.size());
+      }
+    }
+  }
+
   /**
    * Test the connection of each database.
    *
@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.Properties;
+
+// JUnit assertions
+import static org.junit.Assert.assertEquals;
+
+// JUnit annotations
+import org.junit.Test;
+
+/**
+ * Driver class unit tests.
+ *
+ * @version 1.1.0
+ */
+public final class DriverTest {
+  /**
+   * Test mapping connection properties to URL parameters.
+   */
+  @Test
+  public void testParameters() {
+    String[][] parameters = {
+      {"first_parameter", "firstParameter", "true"},
+      {"second_parameter", "secondParameter", null},
+      {"third_parameter", "thirdParameter", null}
+    };
+
+    Properties p = new Properties();
+
+    assertEquals("?firstParameter=true", Driver.parameters(p, parameters));
+
+    p.put("first_parameter", "false");
+    p.put("third_parameter", "a b&c");
+
+    assertEquals(
+      "?firstParameter=false&thirdParameter=a+b%26c",
+      Driver.parameters(p, parameters)
+    );
+
+    assertEquals("", Driver.parameters(p, new String[0][]));
+  }
+}
@@ -53,6 +53,15 @@ public final class GrammarTest {
      */
     public void addAutoIncrement(final String column) {
     }
+
+    /**
+     * Abstract method; return null.
+     *
+     * @return Null. Always.
+     */
+    public String binaryType() {
+      return null;
+    }
   }
 
   /**
@@ -267,6 +276,17 @@ public final class GrammarTest {
     );
   }
 
+  /**
+   * Test unique key building.
+   */
+  @Test
+  public void testBuildUniqueKey() {
+    assertEquals("unique(test1)", this.g.buildUniqueKey("test1"));
+    assertEquals(
+      "unique(test1, test2)", this.g.buildUniqueKey("test1", "test2")
+    );
+  }
+
   /**
    * Test select-statement compilation.
    */
@@ -338,6 +358,174 @@ public final class GrammarTest {
     );
   }
 
+  /**
+   * Test select-statement compilation with groups, havings and aggregates.
+   */
+  @Test
+  public void testCompileSelectWithGroupBy() {
+    this.g.addTable("test");
+
+    this.g.addColumn("column1");
+    this.g.addAggregate("count", "*", "total");
+    this.g.addAggregate("sum", "column2", null);
+
+    this.g.addWhere("column3", "=", "value1", "and");
+
+    this.g.addGroup("column1");
+
+    this.g.addHaving("count(*)", ">", 1, "and");
+    this.g.addHaving("sum(column2)", "<", 100, "or");
+
+    this.g.addOrder("total", "desc");
+
+    assertEquals(
+      "select column1, count(*) as total, sum(column2) from test"
+    + " where column3 = ?"
+    + " group by column1"
+    + " having count(*) > ? or sum(column2) < ?"
+    + " order by total desc",
+      this.g.compileSelect()
+    );
+
+    List<Object> values = new ArrayList<>();
+    values.add("value1");
+    values.add(1);
+    values.add(100);
+
+    assertEquals(values, this.g.compileSelectValues());
+  }
+
+  /**
+   * Test select-statement compilation with where in, between, null and
+   * exists clauses.
+   */
+  @Test
+  public void testCompileSelectWithWhereTypes() {
+    this.g.addTable("test");
+
+    List<Object> in = new ArrayList<>();
+    in.add(1);
+    in.add(2);
+    in.add(3);
+
+    List<Object> exists = new ArrayList<>();
+    exists.add("value1");
+
+    this.g.addWhereIn("column1", in, false, "and");
+    this.g.addWhereBetween("column2", 4, 5, false, "and");
+    this.g.addWhereNull("column3", true, "or");
+    this.g.addWhereColumn("column4", "<", "column5", "and");
+    this.g.addWhereExists(
+      "select * from test2 where column1 = ?", exists, true, "and"
+    );
+    this.g.addWhereIn("column6", new ArrayList<Object>(), false, "and");
+
+    assertEquals(
+      "select * from test"
+    + " where column1 in (?, ?, ?, ?)"
+    + " and column2 between ? and ?"
+    + " or column3 is not null"
+    + " and column4 < column5"
+    + " and not exists (select * from test2 where column1 = ?)"
+    + " and 1 = 0",
+      this.g.compileSelect()
+    );
+
+    List<Object> values = new ArrayList<>();
+    values.add(1);
+    values.add(2);
+    values.add(3);
+    values.add(3);
+    values.add(4);
+    values.add(5);
+    values.add("value1");
+
+    assertEquals(values, this.g.compileSelectValues());
+  }
+
+  /**
+   * Test select-statement compilation with subqueries, merging their values
+   * in the order in which they appear.
+   */
+  @Test
+  public void testCompileSelectWithSubqueries() {
+    List<Object> column = new ArrayList<>();
+    column.add("column");
+
+    List<Object> table = new ArrayList<>();
+    table.add("table");
+
+    List<Object> where = new ArrayList<>();
+    where.add("where");
+
+    this.g.addSubqueryTable("select * from test1 where a = ?", table, "t");
+    this.g.addColumn("t.a");
+    this.g.addSubqueryColumn(
+      "select max(b) from test2 where c = ?", column, "m"
+    );
+    this.g.addWhere("t.d", "=", 1, "and");
+    this.g.addWhereSubquery(
+      "t.e", "in", "select e from test3 where f = ?", where, "or"
+    );
+    this.g.addHaving("count(*)", ">", 2, "and");
+
+    assertEquals(
+      "select t.a, (select max(b) from test2 where c = ?) as m"
+    + " from (select * from test1 where a = ?) as t"
+    + " where t.d = ? or t.e in (select e from test3 where f = ?)"
+    + " having count(*) > ?",
+      this.g.compileSelect()
+    );
+
+    List<Object> values = new ArrayList<>();
+    values.add("column");
+    values.add("table");
+    values.add(1);
+    values.add("where");
+    values.add(2);
+
+    assertEquals(values, this.g.compileSelectValues());
+  }
+
+  /**
+   * Test padding lists of values to power-of-two buckets.
+   */
+  @Test
+  public void testBucket() {
+    assertEquals(0, Grammar.bucket(0));
+    assertEquals(1, Grammar.bucket(1));
+    assertEquals(2, Grammar.bucket(2));
+    assertEquals(4, Grammar.bucket(3));
+    assertEquals(4, Grammar.bucket(4));
+    assertEquals(8, Grammar.bucket(5));
+    assertEquals(256, Grammar.bucket(200));
+  }
+
+  /**
+   * Test grouping where clauses ahead of further where clauses.
+   */
+  @Test
+  public void testGroupWheres() {
+    this.g.addTable("table");
+
+    this.g.addWhere("column1", "=", 1, "and");
+    this.g.addWhere("column2", "=", 2, "or");
+    this.g.groupWheres();
+    this.g.addWhere("column3", ">", 3, "and");
+
+    assertEquals(
+      "select * from table where (column1 = ? or column2 = ?) and column3 > ?",
+      this.g.compileSelect()
+    );
+
+    List<Object> values = new ArrayList<>();
+    values.add(1);
+    values.add(2);
+    values.add(3);
+
+    assertEquals(values, this.g.compileSelectValues());
+  }
+
   /**
    * Test insert-statement compilation.
    */
@@ -365,6 +553,25 @@ public final class GrammarTest {
     assertEquals(values, this.g.compileInsertValues());
   }
 
+  /**
+   * Test multi-row insert-statement compilation.
+   */
+  @Test
+  public void testCompileMultiRowInsert() {
+    this.g.addTable("test");
+    this.g.addColumn("column1");
+    this.g.addColumn("column2");
+
+    assertEquals(
+      "insert into test (column1, column2) values (?, ?)",
+      this.g.compileInsert(1)
+    );
+    assertEquals(
+      "insert into test (column1, column2) values (?, ?), (?, ?), (?, ?)",
+      this.g.compileInsert(3)
+    );
+  }
+
   /**
    * Test update-statement compilation.
    */
@@ -400,6 +607,30 @@ public final class GrammarTest {
     assertEquals(values, this.g.compileUpdateValues());
   }
 
+  /**
+   * Test compilation of update statements that increment columns.
+   */
+  @Test
+  public void testCompileIncrement() {
+    this.g.addTable("test");
+    this.g.addColumn("column1");
+    this.g.addValue("value1");
+    this.g.addIncrement("column2", -2);
+    this.g.addWhere("id", "=", 1, "and");
+
+    assertEquals(
+      "update test set column1 = ?, column2 = column2 + ? where id = ?",
+      this.g.compileUpdate()
+    );
+
+    List<Object> values = new ArrayList<>();
+    values.add("value1");
+    values.add(-2);
+    values.add(1);
+
+    assertEquals(values, this.g.compileUpdateValues());
+  }
+
   /**
    * Test delete-statement compilation.
    */
@@ -443,7 +674,7 @@ public final class GrammarTest {
       "create table if not exists test ("
     + "test1 varchar(123) not null,"
     + " test2 integer(321) not null,"
-    + " test3 date null ,"
+    + " test3 date null,"
     + " foreign key(test2) references table1(column1)"
     + " on update cascade on delete cascade,"
     + " foreign key(test3) references table2(column2)"
@@ -453,6 +684,31 @@ public final class GrammarTest {
     );
   }
 
+  /**
+   * Test create-statement compilation with unique keys.
+   */
+  @Test
+  public void testCompileCreateWithUniqueKeys() {
+    this.g.addTable("test");
+
+    this.g.addDataType("test1", "integer", true);
+    this.g.addDataType("test2", "integer", true);
+
+    this.g.addForeignKey("test1", "table1", "column1");
+    this.g.addUniqueKey("test1", "test2");
+
+    assertEquals(
+      "create table if not exists test ("
+    + "test1 integer not null,"
+    + " test2 integer not null,"
+    + " foreign key(test1) references table1(column1)"
+    + " on update cascade on delete cascade,"
+    + " unique(test1, test2)"
+    + ")",
+      this.g.compileCreate()
+    );
+  }
+
   /**
    * Test drop-statement compilation.
    */
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// JUnit assertions
+import static org.junit.Assert.assertEquals;
+
+// JUnit annotations
+import org.junit.Test;
+
+/**
+ * IntIndexMap class unit tests.
+ *
+ * @version 1.1.0
+ */
+public final class IntIndexMapTest {
+  /**
+   * Test mapping keys to indices.
+   */
+  @Test
+  public void testPutIfAbsent() {
+    IntIndexMap map = new IntIndexMap(2);
+
+    assertEquals(-1, map.putIfAbsent(5, 0));
+    assertEquals(-1, map.putIfAbsent(7, 1));
+    assertEquals(0, map.putIfAbsent(5, 2));
+    assertEquals(1, map.get(7));
+    assertEquals(-1, map.get(6));
+    assertEquals(2, map.size());
+  }
+
+  /**
+   * Test that the map keeps its keys when growing.
+   */
+  @Test
+  public void testGrowth() {
+    IntIndexMap map = new IntIndexMap(1);
+
+    for (int i = 1; i <= 1000; i++) {
+      assertEquals(-1, map.putIfAbsent(i * 31, i));
+    }
+
+    assertEquals(1000, map.size());
+
+    for (int i = 1; i <= 1000; i++) {
+      assertEquals(i, map.get(i * 31));
+    }
+  }
+
+  /**
+   * Test that 0 cannot be used as a key.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroKey() {
+    new IntIndexMap(1).putIfAbsent(0, 0);
+  }
+}
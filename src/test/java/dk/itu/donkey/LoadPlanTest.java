@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// JUnit assertions
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+// JUnit annotations
+import org.junit.Test;
+
+// Model fixtures
+import dk.itu.donkey.fixture.ConcreteModel1;
+import dk.itu.donkey.fixture.ConcreteModel2;
+
+/**
+ * LoadPlan class unit tests.
+ *
+ * @version 1.1.0
+ */
+public final class LoadPlanTest {
+  /**
+   * Test that load plans are computed once per model type.
+   */
+  @Test
+  public void testReuse() {
+    assertSame(LoadPlan.of(ConcreteModel2.class), LoadPlan.of(
+      ConcreteModel2.class
+    ));
+  }
+
+  /**
+   * Test the relation nodes of a load plan.
+   */
+  @Test
+  public void testNodes() {
+    LoadPlan.Node root = LoadPlan.of(ConcreteModel2.class).root();
+
+    // ConcreteModel2 belongs to a single ConcreteModel1...
+    assertEquals(1, root.relations());
+    assertEquals("model", root.relation(0).getName());
+    assertFalse(root.isList(0));
+    assertNotNull(root.node(0));
+
+    // ...which has a list of ConcreteModel2 that refers back to the root.
+    LoadPlan.Node node = root.node(0);
+    assertEquals(1, node.relations());
+    assertEquals("models", node.relation(0).getName());
+    assertTrue(node.isList(0));
+    assertNull(node.node(0));
+  }
+
+  /**
+   * Test that only plans with reverse joins join lists of relations.
+   */
+  @Test
+  public void testJoinsLists() {
+    // ConcreteModel2 joins its single ConcreteModel1...
+    assertFalse(LoadPlan.of(ConcreteModel2.class).joinsLists());
+
+    // ...while ConcreteModel1 joins its list of ConcreteModel2.
+    assertTrue(LoadPlan.of(ConcreteModel1.class).joinsLists());
+  }
+
+  /**
+   * Test hydrating models from positional rows.
+   */
+  @Test
+  public void testInstantiate() {
+    LoadPlan.Node root = LoadPlan.of(ConcreteModel2.class).root();
+
+    // test1_id, test1_string, test1_intwrapped, test1_intprimitive,
+    // test1_doublewrapped, test1_doubleprimitive, test2_id, ...
+    Object[] row = new Object[13];
+    row[0] = 2;
+    row[1] = "test";
+    row[3] = 200;
+
+    assertEquals(2, root.id(row));
+
+    ConcreteModel2 model = root.instantiate(row, root.id(row));
+    assertTrue(2 == model.id());
+    assertEquals("test", model.string);
+    assertNull(model.intWrapped);
+    assertEquals(200, model.intPrimitive);
+
+    // The ConcreteModel1 columns are all null.
+    assertEquals(0, root.node(0).id(row));
+
+    ConcreteModel1 relation = root.node(0).instantiate(row, 1);
+    assertTrue(1 == relation.id());
+    assertNull(relation.floatWrapped);
+  }
+}
@@ -4,6 +4,7 @@
 package dk.itu.donkey;
 
 // General utilities
+import java.util.ArrayList;
 import java.util.List;
 
 // SQL utilities
@@ -27,6 +28,8 @@ import dk.itu.donkey.fixture.ConcreteModel2;
 import dk.itu.donkey.fixture.ConcreteModel3;
 import dk.itu.donkey.fixture.ConcreteModel4;
 import dk.itu.donkey.fixture.ConcreteModel5;
+import dk.itu.donkey.fixture.ConcreteModel6;
+import dk.itu.donkey.fixture.ConcreteModel7;
 
 /**
  * Model class unit tests.
@@ -71,6 +74,8 @@ public final class ModelTest {
     for (Database db: this.databases) {
       db.execute("drop table if exists test1");
       db.execute("drop table if exists test2");
+      db.execute("drop table if exists test4");
+      db.execute("drop table if exists test3");
     }
   }
 
@@ -87,6 +92,26 @@ public final class ModelTest {
     }
   }
 
+  /**
+   * Test creating the table of a model before inserting into it.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testCreateTable() throws SQLException {
+    for (Database db: this.databases) {
+      // Set the database being tested.
+      ModelTest.db = db;
+
+      new ConcreteModel1().createTable();
+
+      // Creating an existing table is a no-op.
+      new ConcreteModel1().createTable();
+
+      assertEquals(0, db.execute("select * from test2").size());
+    }
+  }
+
   /**
    * Test model initialization from a database row.
    */
@@ -413,4 +438,328 @@ public final class ModelTest {
       assertEquals(model4, model6.model);
     }
   }
+
+  /**
+   * Test model querying with where in and exists clauses.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testModelQueryingWithWhereTypes() throws SQLException {
+    for (Database db: this.databases) {
+      // Set the database being tested.
+      ModelTest.db = db;
+
+      List<Object> ids = new ArrayList<>();
+
+      for (int i = 0; i < 3; i++) {
+        ConcreteModel4 model1 = new ConcreteModel4();
+        model1.field = "Model" + i;
+        model1.insert();
+        ids.add(model1.id());
+
+        if (i > 0) {
+          ConcreteModel5 model2 = new ConcreteModel5();
+          model2.field = "Model" + i + "0";
+          model2.model = model1;
+          model2.insert();
+        }
+      }
+
+      ModelQuery<ConcreteModel4> query1 = Model.find(ConcreteModel4.class);
+      query1.whereIn("id", ids.subList(0, 2));
+
+      assertEquals(2, query1.get().size());
+
+      // Models without any related models.
+      ModelQuery<ConcreteModel4> query2 = Model.find(ConcreteModel4.class);
+      query2.whereNotExists(db.table("test1 related")
+        .whereColumn("related.model", "=", "test2.id")
+      );
+
+      List<ConcreteModel4> models = query2.get();
+
+      assertEquals(1, models.size());
+      assertEquals("Model0", models.get(0).field);
+    }
+  }
+
+  /**
+   * Test bulk model insertion.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testModelBulkInsertion() throws SQLException {
+    for (Database db: this.databases) {
+      // Set the database being tested.
+      ModelTest.db = db;
+
+      List<ConcreteModel3> models = new ArrayList<>();
+
+      for (int i = 0; i < 10; i++) {
+        ConcreteModel3 model = new ConcreteModel3();
+        model.field = "Model" + i;
+        models.add(model);
+      }
+
+      assertEquals(10, Model.insertAll(models));
+
+      List<ConcreteModel3> found = Model.find(ConcreteModel3.class)
+        .where("field", "Model7")
+        .get();
+
+      assertEquals(1, found.size());
+      assertNotNull(found.get(0).id());
+    }
+  }
+
+  /**
+   * Test publishing models as requested by a subscriber.
+   *
+   * @throws Exception In case of an error.
+   */
+  @Test
+  public void testModelPublishing() throws Exception {
+    for (Database db: this.databases) {
+      // Set the database being tested.
+      ModelTest.db = db;
+
+      for (int i = 0; i < 3; i++) {
+        ConcreteModel4 model1 = new ConcreteModel4();
+        model1.field = "Model" + i;
+        model1.insert();
+
+        for (int j = 0; j <= i; j++) {
+          ConcreteModel5 model2 = new ConcreteModel5();
+          model2.field = "Model" + i + j;
+          model2.model = model1;
+          model2.insert();
+        }
+      }
+
+      QueryTest.Collector<ConcreteModel4> collector =
+        new QueryTest.Collector<>(1, Integer.MAX_VALUE);
+
+      Model.find(ConcreteModel4.class).publish().subscribe(collector);
+
+      List<ConcreteModel4> models = collector.await();
+
+      assertEquals(3, models.size());
+
+      for (int i = 0; i < 3; i++) {
+        ConcreteModel4 model = models.get(i);
+        assertEquals("Model" + i, model.field);
+        assertEquals(i + 1, model.models.size());
+        assertEquals(model, model.models.get(i).model);
+      }
+    }
+  }
+
+  /**
+   * Test performing model queries in chunks paged by ID.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testModelChunking() throws SQLException {
+    for (Database db: this.databases) {
+      // Set the database being tested.
+      ModelTest.db = db;
+
+      for (int i = 0; i < 5; i++) {
+        ConcreteModel4 model1 = new ConcreteModel4();
+        model1.field = "Model" + i;
+        model1.insert();
+
+        // The last model spans more rows than fit in a chunk.
+        for (int j = 0; j < ((i == 4) ? 4 : 1); j++) {
+          ConcreteModel5 model2 = new ConcreteModel5();
+          model2.field = "Model" + i + j;
+          model2.model = model1;
+          model2.insert();
+        }
+      }
+
+      List<List<ConcreteModel4>> chunks = new ArrayList<>();
+
+      ModelQuery<ConcreteModel4> query = Model.find(ConcreteModel4.class);
+
+      query.where("field", "!=", "Model1");
+      query.chunkById(3, (chunk) -> chunks.add(chunk));
+
+      // ConcreteModel4 has a list of relations, so a full chunk leaves its
+      // last model for the next chunk as its rows might continue past the
+      // limit.
+      assertEquals(3, chunks.size());
+      assertEquals(2, chunks.get(0).size());
+      assertEquals("Model0", chunks.get(0).get(0).field);
+      assertEquals("Model2", chunks.get(0).get(1).field);
+      assertEquals(1, chunks.get(1).size());
+      assertEquals("Model3", chunks.get(1).get(0).field);
+      assertEquals(1, chunks.get(2).size());
+      assertEquals(4, chunks.get(2).get(0).models.size());
+    }
+  }
+
+  /**
+   * Test that chunks of models without lists of relations are full.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testModelChunkingWithoutLists() throws SQLException {
+    for (Database db: this.databases) {
+      // Set the database being tested.
+      ModelTest.db = db;
+
+      ConcreteModel4 model1 = new ConcreteModel4();
+      model1.field = "Model";
+      model1.insert();
+
+      for (int i = 0; i < 5; i++) {
+        ConcreteModel5 model2 = new ConcreteModel5();
+        model2.field = "Model" + i;
+        model2.model = model1;
+        model2.insert();
+      }
+
+      List<List<ConcreteModel5>> chunks = new ArrayList<>();
+
+      Model.find(ConcreteModel5.class).chunkById(
+        2, (chunk) -> chunks.add(chunk)
+      );
+
+      assertEquals(3, chunks.size());
+      assertEquals(2, chunks.get(0).size());
+      assertEquals("Model0", chunks.get(0).get(0).field);
+      assertEquals("Model1", chunks.get(0).get(1).field);
+      assertEquals(2, chunks.get(1).size());
+      assertEquals("Model2", chunks.get(1).get(0).field);
+      assertEquals(1, chunks.get(2).size());
+      assertEquals("Model4", chunks.get(2).get(0).field);
+    }
+  }
+
+  /**
+   * Test that chunking by ID ignores any other ordering of the query.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testModelChunkingWithOrder() throws SQLException {
+    for (Database db: this.databases) {
+      // Set the database being tested.
+      ModelTest.db = db;
+
+      for (int i = 0; i < 5; i++) {
+        ConcreteModel4 model = new ConcreteModel4();
+        model.field = "Model" + i;
+        model.insert();
+      }
+
+      // The models have no relations, but the table of them is still joined.
+      // It references the table of the models, which must exist by now.
+      new ConcreteModel5().createTable();
+
+      List<ConcreteModel4> models = new ArrayList<>();
+
+      ModelQuery<ConcreteModel4> query = Model.find(ConcreteModel4.class);
+
+      query.orderBy("field", "desc");
+      query.chunkById(2, (chunk) -> models.addAll(chunk));
+
+      assertEquals(5, models.size());
+
+      for (int i = 0; i < 5; i++) {
+        assertEquals("Model" + i, models.get(i).field);
+      }
+    }
+  }
+
+  /**
+   * Test keeping counter caches up to date on insertion and deletion.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testCounterCaches() throws SQLException {
+    for (Database db: this.databases) {
+      // Set the database being tested.
+      ModelTest.db = db;
+
+      ConcreteModel6 parent = new ConcreteModel6();
+      parent.field = "Parent";
+      parent.insert();
+
+      List<ConcreteModel7> children = new ArrayList<>();
+
+      for (int i = 0; i < 3; i++) {
+        ConcreteModel7 child = new ConcreteModel7();
+        child.field = "Child" + i;
+        child.model = parent;
+        child.insert();
+
+        children.add(child);
+      }
+
+      assertEquals(3, parent.children);
+
+      children.get(0).delete();
+      assertEquals(2, parent.children);
+
+      List<ConcreteModel7> more = new ArrayList<>();
+
+      for (int i = 0; i < 4; i++) {
+        ConcreteModel7 child = new ConcreteModel7();
+        child.field = "More" + i;
+        child.model = parent;
+
+        more.add(child);
+      }
+
+      assertEquals(4, Model.insertAll(more));
+      assertEquals(6, parent.children);
+
+      ConcreteModel6 found = Model.findAll(ConcreteModel6.class).get(0);
+      assertEquals(6, found.children);
+      assertEquals(6, found.models.size());
+    }
+  }
+
+  /**
+   * Test that deleting a model that was already deleted elsewhere leaves
+   * counter caches be.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testCounterCachesOnStaleDelete() throws SQLException {
+    for (Database db: this.databases) {
+      // Set the database being tested.
+      ModelTest.db = db;
+
+      ConcreteModel6 parent = new ConcreteModel6();
+      parent.field = "Parent";
+      parent.insert();
+
+      for (int i = 0; i < 2; i++) {
+        ConcreteModel7 child = new ConcreteModel7();
+        child.field = "Child" + i;
+        child.model = parent;
+        child.insert();
+      }
+
+      // Two copies of the same child, e.g. on two terminals.
+      ConcreteModel7 child = Model.findAll(ConcreteModel7.class).get(0);
+      ConcreteModel7 stale = Model.findAll(ConcreteModel7.class).get(0);
+
+      assertTrue(child.delete());
+      assertFalse(stale.delete());
+      assertNull(stale.id());
+
+      ConcreteModel6 found = Model.findAll(ConcreteModel6.class).get(0);
+      assertEquals(1, found.children);
+    }
+  }
 }
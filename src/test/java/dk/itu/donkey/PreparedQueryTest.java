@@ -0,0 +1,195 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.List;
+
+// SQL utilities
+import java.sql.SQLException;
+
+// JUnit assertions
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+// JUnit annotations
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * PreparedQuery class unit tests.
+ *
+ * @version 1.1.0
+ */
+public final class PreparedQueryTest {
+  /**
+   * List of databases to test against.
+   */
+  private List<Database> databases;
+
+  /**
+   * Initialize databases before each test and create some test data.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Before
+  public void before() throws SQLException {
+    this.databases = DatabaseTest.initializeDatabases();
+
+    for (Database db: this.databases) {
+      db.execute(
+        "create table if not exists test ("
+      + " text_col text,"
+      + " integer_col integer"
+      + ")"
+      );
+    }
+  }
+
+  /**
+   * Clean up databases after each test.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @After
+  public void after() throws SQLException {
+    for (Database db: this.databases) {
+      db.execute("drop table if exists test");
+    }
+  }
+
+  /**
+   * Test compilation of prepared queries.
+   */
+  @Test
+  public void testCompilation() {
+    for (Database db: this.databases) {
+      PreparedQuery query = db.table("test")
+                              .select("text_col")
+                              .where("integer_col", ">", 10)
+                              .where("text_col", "test")
+                              .prepare();
+
+      assertEquals(
+        "select text_col from test where integer_col > ? and text_col = ?",
+        query.sql()
+      );
+      assertEquals(2, query.parameters());
+      assertEquals(10, query.values().get(0));
+      assertEquals("test", query.values().get(1));
+    }
+  }
+
+  /**
+   * Test that the default values of a prepared query cannot be changed.
+   */
+  @Test(expected = UnsupportedOperationException.class)
+  public void testImmutability() {
+    for (Database db: this.databases) {
+      db.table("test").where("text_col", "test").prepare().values().clear();
+    }
+  }
+
+  /**
+   * Test repeated execution of prepared queries.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testExecution() throws SQLException {
+    for (Database db: this.databases) {
+      PreparedQuery insert = db.table("test")
+                               .prepareInsert("text_col", "integer_col");
+
+      assertEquals(
+        "insert into test (text_col, integer_col) values (?, ?)", insert.sql()
+      );
+
+      insert.execute("kasper", 20);
+      insert.execute("karsten", 34);
+      insert.execute("sigrid", 21);
+
+      PreparedQuery select = db.table("test")
+                               .select("integer_col")
+                               .where("text_col", "kasper")
+                               .prepare();
+
+      // Test execution with the default values.
+      assertEquals(20, select.first().get("integer_col"));
+
+      // Test execution with new values.
+      assertEquals(34, select.first("karsten").get("integer_col"));
+      assertEquals(21, select.first("sigrid").get("integer_col"));
+      assertNull(select.first("nobody"));
+
+      PreparedQuery update = db.table("test")
+                               .where("text_col", "kasper")
+                               .prepareUpdate("integer_col");
+
+      assertEquals(
+        "update test set integer_col = ? where text_col = ?", update.sql()
+      );
+
+      update.execute(30, "kasper");
+      assertEquals(30, select.first("kasper").get("integer_col"));
+
+      PreparedQuery delete = db.table("test")
+                               .where("text_col", "kasper")
+                               .prepareDelete();
+
+      delete.execute("karsten");
+      assertEquals(2, db.table("test").get().size());
+
+      delete.execute();
+      assertEquals(1, db.table("test").get().size());
+    }
+  }
+
+  /**
+   * Test that a query can be prepared for writing more than once.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testRepeatedPreparation() throws SQLException {
+    for (Database db: this.databases) {
+      Query query = db.table("test").where("text_col", "kasper");
+
+      Row row = new Row();
+      row.put("text_col", "kasper");
+
+      query.insert(row);
+
+      assertEquals(
+        "insert into test (text_col) values (?)",
+        query.prepareInsert("text_col").sql()
+      );
+      assertEquals(
+        "insert into test (integer_col) values (?)",
+        query.prepareInsert("integer_col").sql()
+      );
+      assertEquals(
+        "update test set integer_col = ? where text_col = ?",
+        query.prepareUpdate("integer_col").sql()
+      );
+      assertEquals(
+        "update test set integer_col = ? where text_col = ?",
+        query.prepareUpdate("integer_col").sql()
+      );
+    }
+  }
+
+  /**
+   * Test execution of a prepared query with the wrong number of values.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testExecutionWithWrongNumberOfValues() throws SQLException {
+    for (Database db: this.databases) {
+      db.table("test").where("text_col", "test").prepare().get("a", "b");
+    }
+  }
+}
@@ -10,6 +10,10 @@ import java.util.List;
 // SQL utilities
 import java.sql.SQLException;
 
+// Concurrency utilities
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 // JUnit assertions
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
@@ -390,6 +394,218 @@ public final class QueryTest {
     }
   }
 
+  /**
+   * Test select statement building with where in, between, null and exists
+   * clauses.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testSelectWithWhereTypes() throws SQLException {
+    for (Database db: this.databases) {
+      for (int i = 0; i < 6; i++) {
+        List<Object> values = new ArrayList<>();
+        values.add((i == 5) ? null : "text" + i);
+        values.add(i);
+
+        db.execute(
+          "insert into test (text_col, integer_col) values (?, ?)", values
+        );
+      }
+
+      List<Object> in = new ArrayList<>();
+      in.add(1);
+      in.add(3);
+      in.add(4);
+
+      assertEquals(3, db.table("test").whereIn("integer_col", in).get().size());
+      assertEquals(
+        3, db.table("test").whereNotIn("integer_col", in).get().size()
+      );
+      assertEquals(0, db.table("test")
+        .whereIn("integer_col", new ArrayList<Object>())
+        .get()
+        .size()
+      );
+
+      List<Row> rows1 = db.table("test")
+        .whereBetween("integer_col", 2, 4)
+        .orderBy("integer_col")
+        .get();
+
+      assertEquals(3, rows1.size());
+      assertEquals(2, rows1.get(0).get("integer_col"));
+
+      List<Row> rows2 = db.table("test").whereNull("text_col").get();
+      assertEquals(1, rows2.size());
+      assertEquals(5, rows2.get(0).get("integer_col"));
+
+      assertEquals(5, db.table("test").whereNotNull("text_col").get().size());
+
+      // Rows that have another row with a larger integer.
+      Query larger = db.table("test t2")
+        .select("t2.integer_col")
+        .whereColumn("t2.integer_col", ">", "test.integer_col")
+        .where("t2.integer_col", ">", 0);
+
+      assertEquals(5, db.table("test").whereExists(larger).get().size());
+      assertEquals(1, db.table("test").whereNotExists(larger).get().size());
+    }
+  }
+
+  /**
+   * Test select statement building with subqueries in the selected columns,
+   * the from clause, and where clauses.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testSelectWithSubqueries() throws SQLException {
+    for (Database db: this.databases) {
+      for (int i = 0; i < 6; i++) {
+        List<Object> values = new ArrayList<>();
+        values.add((i % 2 == 0) ? "even" : "odd");
+        values.add(i);
+
+        db.execute(
+          "insert into test (text_col, integer_col) values (?, ?)", values
+        );
+      }
+
+      // Rows with the largest integer of their kind.
+      List<Row> rows1 = db.table("test")
+        .where("integer_col", "=", db.table("test t2")
+          .selectAggregate("max", "t2.integer_col", null)
+          .whereColumn("t2.text_col", "=", "test.text_col")
+        )
+        .orderBy("integer_col")
+        .get();
+
+      assertEquals(2, rows1.size());
+      assertEquals(4, rows1.get(0).get("integer_col"));
+      assertEquals(5, rows1.get(1).get("integer_col"));
+
+      // Rows along with the number of rows of their kind below them.
+      List<Row> rows2 = db.table("test")
+        .select("integer_col")
+        .select(db.table("test t2")
+          .selectAggregate("count", "*", null)
+          .whereColumn("t2.text_col", "=", "test.text_col")
+          .whereColumn("t2.integer_col", "<", "test.integer_col"), "below"
+        )
+        .where("integer_col", ">", 1)
+        .whereIn("integer_col", db.table("test t3")
+          .select("t3.integer_col")
+          .where("t3.text_col", "odd")
+        )
+        .orderBy("integer_col")
+        .get();
+
+      assertEquals(2, rows2.size());
+      assertEquals(3, rows2.get(0).get("integer_col"));
+      assertEquals(1, ((Number) rows2.get(0).get("below")).intValue());
+      assertEquals(2, ((Number) rows2.get(1).get("below")).intValue());
+
+      // Kinds of rows with more than two rows above 0.
+      List<Row> rows3 = db.table("test")
+        .from(db.table("test").where("integer_col", ">", 0), "positive")
+        .select("positive.text_col")
+        .groupBy("positive.text_col")
+        .having("count(*)", ">", 2)
+        .get();
+
+      assertEquals(1, rows3.size());
+      assertEquals("odd", rows3.get(0).get("text_col"));
+    }
+  }
+
+  /**
+   * Test grouping rows with several aggregates and a having clause.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testSelectWithGroupBy() throws SQLException {
+    for (Database db: this.databases) {
+      for (int i = 0; i < 6; i++) {
+        List<Object> values = new ArrayList<>();
+        values.add((i < 4) ? "a" : (i < 5) ? "b" : "c");
+        values.add(i);
+
+        db.execute(
+          "insert into test (text_col, integer_col) values (?, ?)", values
+        );
+      }
+
+      List<Row> rows = db.table("test")
+        .select("text_col")
+        .selectAggregate("count", "*", "total")
+        .selectAggregate("max", "integer_col", "highest")
+        .where("integer_col", ">", 0)
+        .groupBy("text_col")
+        .having("count(*)", "<", 3)
+        .orHaving("max(integer_col)", "=", 3)
+        .orderBy("text_col")
+        .get();
+
+      assertEquals(3, rows.size());
+      assertEquals("a", rows.get(0).get("text_col"));
+      assertEquals(3, ((Number) rows.get(0).get("total")).intValue());
+      assertEquals(3, ((Number) rows.get(0).get("highest")).intValue());
+      assertEquals("b", rows.get(1).get("text_col"));
+      assertEquals(1, ((Number) rows.get(1).get("total")).intValue());
+      assertEquals(5, ((Number) rows.get(2).get("highest")).intValue());
+    }
+  }
+
+  /**
+   * Test keyset pagination after a value of a column.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testSelectAfter() throws SQLException {
+    for (Database db: this.databases) {
+      for (int i = 0; i < 6; i++) {
+        List<Object> values = new ArrayList<>();
+        values.add(i);
+        values.add((i % 2 == 0) ? "even" : "odd");
+
+        db.execute(
+          "insert into test (integer_col, text_col) values (?, ?)", values
+        );
+      }
+
+      List<Row> rows1 = db.table("test")
+        .after("integer_col", null)
+        .limit(2)
+        .get();
+
+      assertEquals(2, rows1.size());
+      assertEquals(1, rows1.get(1).get("integer_col"));
+
+      List<Row> rows2 = db.table("test")
+        .after("integer_col", 1)
+        .limit(2)
+        .get();
+
+      assertEquals(2, rows2.size());
+      assertEquals(2, rows2.get(0).get("integer_col"));
+      assertEquals(3, rows2.get(1).get("integer_col"));
+
+      // The keyset applies to all previous where clauses, including `or`.
+      List<Row> rows3 = db.table("test")
+        .where("integer_col", 0)
+        .orWhere("text_col", "odd")
+        .after("integer_col", 2)
+        .get();
+
+      assertEquals(2, rows3.size());
+      assertEquals(3, rows3.get(0).get("integer_col"));
+      assertEquals(5, rows3.get(1).get("integer_col"));
+    }
+  }
+
   /**
    * Test select statement building with a count on the result.
    *
@@ -624,5 +840,201 @@ public final class QueryTest {
       assertEquals("Kasper", rows.get(0).get("text_col"));
     }
   }
-}
 
+  /**
+   * Test counting the rows removed by a delete.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testDeleteCount() throws SQLException {
+    for (Database db : this.databases) {
+      for (String name: new String[] {"Kasper", "Sigrid", "Sigrid"}) {
+        List<Object> values = new ArrayList<>();
+        values.add(name);
+
+        db.execute("insert into test (text_col) values (?)", values);
+      }
+
+      Query query = db.table("test").where("text_col", "Sigrid");
+
+      assertEquals(2, query.deleteCount());
+      assertEquals(0, query.deleteCount());
+      assertEquals(1, db.table("test").deleteCount());
+    }
+  }
+
+  /**
+   * Test publishing query results as requested by a subscriber.
+   *
+   * @throws Exception In case of an error.
+   */
+  @Test
+  public void testPublish() throws Exception {
+    for (Database db : this.databases) {
+      for (int i = 0; i < 10; i++) {
+        List<Object> values = new ArrayList<>();
+        values.add(i);
+
+        db.execute("insert into test (integer_col) values (?)", values);
+      }
+
+      // Take 5 rows, 2 at a time, then cancel.
+      Collector<Row> collector = new Collector<>(2, 5);
+
+      db.table("test")
+        .select("integer_col")
+        .orderBy("integer_col")
+        .publish()
+        .subscribe(collector);
+
+      List<Row> rows = collector.await();
+      assertEquals(5, rows.size());
+      assertEquals(4, rows.get(4).get("integer_col"));
+      assertNull(collector.error);
+
+      // Take all rows until completion.
+      Collector<Row> all = new Collector<>(3, Integer.MAX_VALUE);
+
+      db.table("test").publish().subscribe(all);
+
+      assertEquals(10, all.await().size());
+      assertTrue(all.completed);
+
+      // Invalid requests terminate the subscription with an error.
+      Collector<Row> invalid = new Collector<>(0, 1);
+
+      db.table("test").publish().subscribe(invalid);
+
+      assertEquals(0, invalid.await().size());
+      assertTrue(invalid.error instanceof IllegalArgumentException);
+    }
+  }
+
+  /**
+   * The Collector class is a subscriber that collects items in batches until
+   * it has collected enough of them.
+   *
+   * @param <T> The type of item to collect.
+   */
+  static final class Collector<T> implements Flow.Subscriber<T> {
+    /**
+     * The number of items to request at a time.
+     */
+    private final int batch;
+
+    /**
+     * The number of items to collect before cancelling.
+     */
+    private final int limit;
+
+    /**
+     * The collected items.
+     */
+    private final List<T> items = new ArrayList<>();
+
+    /**
+     * Latch released once the collector is done.
+     */
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    /**
+     * The subscription of the collector.
+     */
+    private Flow.Subscription subscription;
+
+    /**
+     * The number of items left of the current batch.
+     */
+    private int pending;
+
+    /**
+     * Whether or not the subscription completed.
+     */
+    private volatile boolean completed;
+
+    /**
+     * The error that terminated the subscription, if any.
+     */
+    private volatile Throwable error;
+
+    /**
+     * Initialize a collector.
+     *
+     * @param batch The number of items to request at a time.
+     * @param limit The number of items to collect before cancelling.
+     */
+    Collector(final int batch, final int limit) {
+      this.batch = batch;
+      this.limit = limit;
+    }
+
+    /**
+     * Wait for the collector to be done.
+     *
+     * @return The collected items.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    List<T> await() throws InterruptedException {
+      assertTrue(this.done.await(10, TimeUnit.SECONDS));
+
+      return this.items;
+    }
+
+    /**
+     * Request the first batch of items.
+     *
+     * @param subscription The subscription.
+     */
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+      this.subscription = subscription;
+      this.pending = this.batch;
+
+      subscription.request(this.batch);
+    }
+
+    /**
+     * Collect an item.
+     *
+     * @param item The item.
+     */
+    @Override
+    public void onNext(final T item) {
+      this.items.add(item);
+
+      if (this.items.size() == this.limit) {
+        this.subscription.cancel();
+        this.done.countDown();
+        return;
+      }
+
+      // Request the next batch once the current one has arrived.
+      if (--this.pending == 0) {
+        this.pending = this.batch;
+        this.subscription.request(this.batch);
+      }
+    }
+
+    /**
+     * Record the error that terminated the subscription.
+     *
+     * @param throwable The error.
+     */
+    @Override
+    public void onError(final Throwable throwable) {
+      this.error = throwable;
+      this.done.countDown();
+    }
+
+    /**
+     * Record the completion of the subscription.
+     */
+    @Override
+    public void onComplete() {
+      this.completed = true;
+      this.done.countDown();
+    }
+  }
+}
@@ -4,13 +4,17 @@
 package dk.itu.donkey;
 
 // General utilities
+import java.util.ArrayList;
 import java.util.List;
 
 // SQL utilities
 import java.sql.SQLException;
 
 // JUnit assertions
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
 
 // JUnit annotations
 import org.junit.After;
@@ -87,6 +91,7 @@ public final class SchemaTest {
         .date("dateCol")
         .time("timeCol")
         .timestamp("timestampCol")
+        .binary("binaryCol")
         .increments("incrementsCol")
 
         // Run the schema.
@@ -95,12 +100,45 @@ public final class SchemaTest {
       // Verify that the table and all columns were created.
       db.execute(
         "select textCol, integerCol, doubleCol, floatCol, longCol, realCol,"
-      + " numericCol, boolCol, dateCol, timeCol, timestampCol, incrementsCol"
-      + " from test"
+      + " numericCol, boolCol, dateCol, timeCol, timestampCol, binaryCol,"
+      + " incrementsCol from test"
       );
     }
   }
 
+  /**
+   * Test storing and reading binary columns.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testBinary() throws SQLException {
+    for (Database db: this.databases) {
+      db.schema().create("test")
+        .binary("binarycol")
+        .run();
+
+      byte[] bytes = new byte[] {0, 1, -1, 127, -128, '\t', '\\'};
+
+      Row row = new Row();
+      row.put("binarycol", bytes);
+
+      db.table("test").insert(row);
+
+      List<String> columns = new ArrayList<>();
+      columns.add("binarycol");
+
+      List<Row> rows = new ArrayList<>();
+      rows.add(row);
+
+      db.bulkLoad("test", columns, rows.iterator());
+
+      for (Row result: db.execute("select binarycol from test")) {
+        assertArrayEquals(bytes, (byte[]) result.get("binarycol"));
+      }
+    }
+  }
+
   /**
    * Test schema table creation with foreign keys.
    *
@@ -129,6 +167,41 @@ public final class SchemaTest {
     }
   }
 
+  /**
+   * Test schema table creation with unique keys.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testCreateWithUniqueKeys() throws SQLException {
+    for (Database db: this.databases) {
+      // Clean up after earlier tests if they failed.
+      db.execute("drop table if exists test");
+
+      db.schema().create("test")
+        .integer("column1")
+        .integer("column2")
+        .uniqueKey("column1", "column2")
+        .run();
+
+      db.execute("insert into test (column1, column2) values (1, 1)");
+      db.execute("insert into test (column1, column2) values (1, 2)");
+
+      try {
+        db.execute("insert into test (column1, column2) values (1, 1)");
+
+        fail();
+      }
+      catch (SQLException ex) {
+        // The duplicate row was rejected.
+      }
+
+      assertEquals(2, db.execute("select column1 from test").size());
+
+      db.execute("drop table test");
+    }
+  }
+
   /**
    * Test schema table dropping.
    *
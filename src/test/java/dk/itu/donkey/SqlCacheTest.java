@@ -0,0 +1,292 @@
+/**
+ * Copyright (C) 2014 Kasper Kronborg Isager.
+ */
+package dk.itu.donkey;
+
+// General utilities
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+// Concurrency utilities
+import java.util.concurrent.CountDownLatch;
+
+// SQL utilities
+import java.sql.SQLException;
+
+// JUnit assertions
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// JUnit annotations
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+// SQL grammars
+import dk.itu.donkey.grammar.SqliteGrammar;
+
+/**
+ * SqlCache class unit tests.
+ *
+ * @version 1.1.0
+ */
+public final class SqlCacheTest {
+  /**
+   * List of databases to test against.
+   */
+  private List<Database> databases;
+
+  /**
+   * Initialize databases before each test.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Before
+  public void before() throws SQLException {
+    this.databases = DatabaseTest.initializeDatabases();
+
+    for (Database db: this.databases) {
+      db.execute("create table if not exists test (text_col text)");
+    }
+  }
+
+  /**
+   * Clean up databases after each test.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @After
+  public void after() throws SQLException {
+    for (Database db: this.databases) {
+      db.execute("drop table if exists test");
+    }
+  }
+
+  /**
+   * Build a grammar for a select statement.
+   *
+   * @param column  The column to compare in the where clause.
+   * @param value   The value to compare against.
+   * @return        The grammar.
+   */
+  private Grammar grammar(final String column, final Object value) {
+    Grammar grammar = new SqliteGrammar();
+    grammar.addTable("test");
+    grammar.addColumn("column1");
+    grammar.addWhere(column, "=", value, "and");
+
+    return grammar;
+  }
+
+  /**
+   * Test that queries of the same shape share compiled SQL.
+   */
+  @Test
+  public void testShapes() {
+    SqlCache cache = new SqlCache();
+
+    assertEquals(
+      "select column1 from test where column2 = ?",
+      cache.compileSelect(this.grammar("column2", "value1"))
+    );
+    assertEquals(
+      "select column1 from test where column2 = ?",
+      cache.compileSelect(this.grammar("column2", "value2"))
+    );
+    assertEquals(
+      "select column1 from test where column3 = ?",
+      cache.compileSelect(this.grammar("column3", "value1"))
+    );
+    assertEquals(
+      "delete from test where column3 = ?",
+      cache.compileDelete(this.grammar("column3", "value1"))
+    );
+
+    assertEquals(3, cache.size());
+    assertEquals(1, cache.hits());
+    assertEquals(3, cache.misses());
+    assertEquals(0.25, cache.hitRatio(), 0);
+
+    cache.clear();
+
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.hitRatio(), 0);
+  }
+
+  /**
+   * Test that the limit and offset are part of the shape.
+   */
+  @Test
+  public void testLimitAndOffset() {
+    SqlCache cache = new SqlCache();
+
+    Grammar grammar1 = this.grammar("column2", "value1");
+    grammar1.addLimit(10);
+
+    Grammar grammar2 = this.grammar("column2", "value1");
+    grammar2.addLimit(20);
+    grammar2.addOffset(20);
+
+    assertEquals(
+      "select column1 from test where column2 = ? limit 10",
+      cache.compileSelect(grammar1)
+    );
+    assertEquals(
+      "select column1 from test where column2 = ? limit 20 offset 20",
+      cache.compileSelect(grammar2)
+    );
+    assertEquals(0, cache.hits());
+  }
+
+  /**
+   * Test that the cache stops growing once full.
+   */
+  @Test
+  public void testSize() {
+    SqlCache cache = new SqlCache(1);
+
+    cache.compileSelect(this.grammar("column2", "value1"));
+    cache.compileSelect(this.grammar("column3", "value1"));
+
+    assertEquals(1, cache.size());
+    assertEquals(
+      "select column1 from test where column3 = ?",
+      cache.compileSelect(this.grammar("column3", "value1"))
+    );
+  }
+
+  /**
+   * Test that shapes are compared by the arguments of their clauses rather
+   * than by reference.
+   */
+  @Test
+  public void testEqualArguments() {
+    SqlCache cache = new SqlCache();
+
+    cache.compileSelect(this.grammar("column2", "value1"));
+    cache.compileSelect(this.grammar(new String("column2"), "value2"));
+
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.hits());
+  }
+
+  /**
+   * Test that grouping where clauses is part of the shape.
+   */
+  @Test
+  public void testGroupedWheres() {
+    SqlCache cache = new SqlCache();
+
+    Grammar grammar1 = this.grammar("column2", "value1");
+    grammar1.addWhere("column3", "=", "value1", "or");
+    grammar1.addWhere("column4", "=", "value1", "and");
+
+    Grammar grammar2 = this.grammar("column2", "value1");
+    grammar2.addWhere("column3", "=", "value1", "or");
+    grammar2.groupWheres();
+    grammar2.addWhere("column4", "=", "value1", "and");
+
+    assertEquals(
+      "select column1 from test where column2 = ? or column3 = ? and "
+    + "column4 = ?",
+      cache.compileSelect(grammar1)
+    );
+    assertEquals(
+      "select column1 from test where (column2 = ? or column3 = ?) and "
+    + "column4 = ?",
+      cache.compileSelect(grammar2)
+    );
+  }
+
+  /**
+   * Test that the cache never grows past its size when shapes are stored
+   * concurrently.
+   *
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  @Test
+  public void testConcurrentSize() throws InterruptedException {
+    SqlCache cache = new SqlCache(8);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+
+    for (int i = 0; i < 8; i++) {
+      int thread = i;
+
+      threads.add(new Thread(() -> {
+        try {
+          start.await();
+        }
+        catch (InterruptedException ex) {
+          return;
+        }
+
+        for (int j = 0; j < 100; j++) {
+          cache.compileSelect(this.grammar("column" + thread + "_" + j, 1));
+        }
+      }));
+    }
+
+    for (Thread thread: threads) {
+      thread.start();
+    }
+
+    start.countDown();
+
+    for (Thread thread: threads) {
+      thread.join();
+    }
+
+    assertEquals(8, cache.size());
+
+    cache.clear();
+    cache.compileSelect(this.grammar("column2", "value1"));
+
+    assertEquals(1, cache.size());
+  }
+
+  /**
+   * Test that a database can be configured not to cache any shapes.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testDisabledCache() throws SQLException {
+    Properties config = new Properties();
+    config.put("database", ":memory:");
+    config.put("sql_cache", "0");
+
+    Database db = new Database(Driver.SQLITE, config);
+
+    try {
+      db.execute("create table test (text_col text)");
+      db.table("test").where("text_col", "test").get();
+      db.table("test").where("text_col", "test").get();
+
+      assertEquals(0, db.cache().size());
+      assertEquals(0, db.cache().hits());
+      assertTrue(db.cache().misses() > 0);
+    }
+    finally {
+      db.close();
+    }
+  }
+
+  /**
+   * Test that queries against a database go through its cache.
+   *
+   * @throws SQLException In case of a SQL error.
+   */
+  @Test
+  public void testDatabaseCache() throws SQLException {
+    for (Database db: this.databases) {
+      for (int i = 0; i < 4; i++) {
+        db.table("test").where("text_col", "test" + i).get();
+      }
+
+      assertEquals(1, db.cache().size());
+      assertEquals(0.75, db.cache().hitRatio(), 0);
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package dk.itu.donkey.fixture;
+
+import java.util.List;
+
+import dk.itu.donkey.Model;
+import dk.itu.donkey.ModelTest;
+
+/**
+ * Concrete model class for testing.
+ */
+public class ConcreteModel6 extends Model {
+  /**
+   * String field.
+   */
+  public String field;
+
+  /**
+   * Counter field.
+   */
+  public int children;
+
+  /**
+   * Inverse model relation.
+   */
+  public List<ConcreteModel7> models;
+
+  /**
+   * Initialize a model.
+   */
+  public ConcreteModel6() {
+    super("test3", ModelTest.db());
+  }
+}
@@ -0,0 +1,28 @@
+package dk.itu.donkey.fixture;
+
+import dk.itu.donkey.CounterCache;
+import dk.itu.donkey.Model;
+import dk.itu.donkey.ModelTest;
+
+/**
+ * Concrete model class for testing.
+ */
+public class ConcreteModel7 extends Model {
+  /**
+   * String field.
+   */
+  public String field;
+
+  /**
+   * Counted model relation.
+   */
+  @CounterCache("children")
+  public ConcreteModel6 model;
+
+  /**
+   * Initialize a model.
+   */
+  public ConcreteModel7() {
+    super("test4", ModelTest.db());
+  }
+}